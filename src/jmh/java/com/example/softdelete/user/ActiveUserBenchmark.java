@@ -0,0 +1,60 @@
+package com.example.softdelete.user;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActiveUserBenchmark {
+
+	@Param({ "1", "5" })
+	int emails;
+
+	ActiveUser primaryFirst;
+
+	ActiveUser primaryLast;
+
+	@Setup
+	public void setUp() {
+		this.primaryFirst = activeUser(0);
+		this.primaryLast = activeUser(this.emails - 1);
+	}
+
+	private ActiveUser activeUser(int primaryIndex) {
+		List<Email> emails = new ArrayList<>();
+		for (int i = 0; i < this.emails; i++) {
+			emails.add(new Email("user" + i + "@example.com", i == primaryIndex));
+		}
+		return new ActiveUser(1, new UserProfile("user", "User"), emails, false);
+	}
+
+	/**
+	 * The mappers return the primary email first, so this is the common case.
+	 */
+	@Benchmark
+	public String primaryEmailFirst() {
+		return this.primaryFirst.primaryEmail();
+	}
+
+	@Benchmark
+	public String primaryEmailLast() {
+		return this.primaryLast.primaryEmail();
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.example.softdelete.user;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.lang.Nullable;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * Migrated PostgreSQL database seeded with the given number of active users.
+ * <p>
+ * A Testcontainers database is started unless {@code benchmark.jdbc-url} (with
+ * {@code benchmark.username} and {@code benchmark.password}) points to an existing scratch
+ * database. Seeding only adds the users that are missing, so an existing database can be
+ * reused across runs. The migrations are applied with the same placeholders as in the
+ * application, with the read model filled and maintained only when requested.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+
+	@Nullable
+	private final PostgreSQLContainer<?> container;
+
+	private final HikariDataSource dataSource;
+
+	private BenchmarkDatabase(@Nullable PostgreSQLContainer<?> container, HikariDataSource dataSource) {
+		this.container = container;
+		this.dataSource = dataSource;
+	}
+
+	static BenchmarkDatabase start(int users, boolean readModel) {
+		PostgreSQLContainer<?> container = null;
+		HikariDataSource dataSource = new HikariDataSource();
+		String jdbcUrl = System.getProperty("benchmark.jdbc-url");
+		if (jdbcUrl == null) {
+			container = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
+			container.start();
+			dataSource.setJdbcUrl(container.getJdbcUrl());
+			dataSource.setUsername(container.getUsername());
+			dataSource.setPassword(container.getPassword());
+		}
+		else {
+			dataSource.setJdbcUrl(jdbcUrl);
+			dataSource.setUsername(System.getProperty("benchmark.username"));
+			dataSource.setPassword(System.getProperty("benchmark.password"));
+		}
+		Flyway.configure()
+			.dataSource(dataSource)
+			.placeholders(Map.of("ott_token_storage", "logged", "user_read_model", String.valueOf(readModel)))
+			.load()
+			.migrate();
+		seed(dataSource, users, readModel);
+		return new BenchmarkDatabase(container, dataSource);
+	}
+
+	/**
+	 * Inserts active users with one or two email addresses, every 100th of them an admin.
+	 * Triggers are disabled while seeding, and the read model, if enabled, and the user
+	 * state counts are filled in one go afterwards, which is much faster than maintaining
+	 * them row by row. Enabling the read model later rebuilds it in the migration.
+	 */
+	private static void seed(DataSource dataSource, int users, boolean readModel) {
+		try (Connection connection = dataSource.getConnection()) {
+			connection.setAutoCommit(false);
+			JdbcClient jdbcClient = JdbcClient.create(new SingleConnectionDataSource(connection, true));
+			long existing = jdbcClient.sql("SELECT count(*) FROM active_users").query(Long.class).single();
+			if (existing >= users) {
+				return;
+			}
+			long first = jdbcClient.sql("SELECT COALESCE(MAX(user_id), 0) + 1 FROM users").query(Long.class).single();
+			long last = first + users - existing - 1;
+			jdbcClient.sql("SET LOCAL session_replication_role = replica").update();
+			for (String sql : new String[] { """
+					INSERT INTO users (user_id) SELECT g FROM generate_series(:first, :last) g
+					""", """
+					INSERT INTO user_profiles (user_id, username, display_name)
+					SELECT g, 'bench' || g, 'Bench User ' || g FROM generate_series(:first, :last) g
+					""", """
+					INSERT INTO user_emails (email, user_id)
+					SELECT 'bench' || g || '@example.com', g FROM generate_series(:first, :last) g
+					UNION ALL
+					SELECT 'bench' || g || '@example.org', g FROM generate_series(:first, :last) g WHERE g % 2 = 0
+					""", """
+					INSERT INTO user_primary_emails (user_id, email)
+					SELECT g, 'bench' || g || '@example.com' FROM generate_series(:first, :last) g
+					""", """
+					INSERT INTO active_users (user_id) SELECT g FROM generate_series(:first, :last) g
+					""", """
+					INSERT INTO admin_users (user_id) SELECT g FROM generate_series(:first, :last) g WHERE g % 100 = 0
+					""" }) {
+				jdbcClient.sql(sql).param("first", first).param("last", last).update();
+			}
+			if (readModel) {
+				jdbcClient.sql("""
+						INSERT INTO user_read_model (user_id, type, is_admin, username, display_name, activation_token,
+						                             expires_at, deleted_at, emails)
+						SELECT * FROM user_read_model_source WHERE user_id BETWEEN :first AND :last
+						""").param("first", first).param("last", last).update();
+			}
+			jdbcClient.sql("SELECT recount_user_states()").query().listOfRows();
+			jdbcClient.sql("SELECT setval(pg_get_serial_sequence('users', 'user_id'), :last)")
+				.param("last", last)
+				.query()
+				.singleValue();
+			connection.commit();
+			try (Statement statement = connection.createStatement()) {
+				connection.setAutoCommit(true);
+				statement.execute("ANALYZE");
+			}
+		}
+		catch (SQLException e) {
+			throw new IllegalStateException("Failed to seed the benchmark database", e);
+		}
+	}
+
+	DataSource dataSource() {
+		return this.dataSource;
+	}
+
+	@Override
+	public void close() {
+		this.dataSource.close();
+		if (this.container != null) {
+			this.container.stop();
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.example.softdelete.user;
+
+import am.ik.pagination.CursorPage;
+import am.ik.pagination.CursorPageRequest;
+import am.ik.pagination.CursorPageRequest.Navigation;
+import com.example.softdelete.user.UserMapperProps.EmailsFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.simple.JdbcClient;
+
+/**
+ * Measures the hot read queries of {@link UserMapper} end to end, including the round
+ * trip to PostgreSQL, for the aggregating queries in both email formats and for the read
+ * model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UserMapperBenchmark {
+
+	@Param("100000")
+	int users;
+
+	/**
+	 * {@code json} and {@code array} aggregate the normalized tables with the respective
+	 * {@link UserMapperProps.EmailsFormat}, {@code read-model} reads the read model.
+	 */
+	@Param({ "json", "array", "read-model" })
+	String source;
+
+	@Param("20")
+	int pageSize;
+
+	BenchmarkDatabase database;
+
+	UserMapper userMapper;
+
+	long maxUserId;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.database = BenchmarkDatabase.start(this.users, this.source.equals("read-model"));
+		JdbcClient jdbcClient = JdbcClient.create(this.database.dataSource());
+		this.userMapper = new UserMapper(jdbcClient, Jackson2ObjectMapperBuilder.json().build(),
+				this.source.equals("read-model") ? new UserMapperProps(true, EmailsFormat.JSON)
+						: new UserMapperProps(false, EmailsFormat.valueOf(this.source.toUpperCase(Locale.ROOT))));
+		this.maxUserId = jdbcClient.sql("SELECT MAX(user_id) FROM active_users").query(Long.class).single();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.database.close();
+	}
+
+	@Benchmark
+	public Optional<User> findUser() {
+		return this.userMapper.findUser(randomUserId());
+	}
+
+	@Benchmark
+	public CursorPage<ActiveUser, Long> findActiveUsersFirstPage() {
+		return this.userMapper.findActiveUsers(new CursorPageRequest<>(null, this.pageSize, Navigation.NEXT));
+	}
+
+	@Benchmark
+	public CursorPage<ActiveUser, Long> findActiveUsersRandomPage() {
+		return this.userMapper
+			.findActiveUsers(new CursorPageRequest<>(randomUserId(), this.pageSize, Navigation.NEXT));
+	}
+
+	@Benchmark
+	public CursorPage<ActiveUser, Long> findActiveUsersBySearch() {
+		// Substring of the seeded usernames and email addresses of a random user
+		return this.userMapper.findActiveUsers(new CursorPageRequest<>(null, this.pageSize, Navigation.NEXT),
+				"ench" + randomUserId());
+	}
+
+	private long randomUserId() {
+		return ThreadLocalRandom.current().nextLong(1, this.maxUserId + 1);
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.example.softdelete.user;
+
+import com.example.softdelete.user.UserMapperProps.EmailsFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.simple.JdbcClient;
+
+/**
+ * Measures {@link UserMapper#userRowMapper()} in isolation from I/O. Rows are loaded from
+ * the read model once, with the emails in both formats, and replayed from memory, so the
+ * result is dominated by decoding the emails into {@code List<Email>}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserRowMapperBenchmark {
+
+	@Param("1000")
+	int rows;
+
+	@Param({ "JSON", "ARRAY" })
+	EmailsFormat emailsFormat;
+
+	CachedRowSet rowSet;
+
+	RowMapper<User> userRowMapper;
+
+	@Setup
+	public void setUp() throws SQLException {
+		// Reads the rows from the read model
+		try (BenchmarkDatabase database = BenchmarkDatabase.start(this.rows, true);
+				Connection connection = database.dataSource().getConnection();
+				Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery("""
+						SELECT
+						    *,
+						    ARRAY(SELECT e ->> 'email' FROM jsonb_array_elements(emails) e) AS email_addresses,
+						    ARRAY(SELECT (e ->> 'isPrimary')::boolean FROM jsonb_array_elements(emails) e)
+						        AS email_primary_flags
+						FROM user_read_model
+						WHERE type = 'active'
+						ORDER BY user_id
+						LIMIT %d
+						""".formatted(this.rows))) {
+			this.rowSet = RowSetProvider.newFactory().createCachedRowSet();
+			this.rowSet.populate(resultSet);
+			ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+			this.userRowMapper = new UserMapper(JdbcClient.create(database.dataSource()), objectMapper,
+					new UserMapperProps(false, this.emailsFormat))
+				.userRowMapper();
+		}
+	}
+
+	@Benchmark
+	public void mapRows(Blackhole blackhole) throws SQLException {
+		this.rowSet.beforeFirst();
+		int rowNum = 0;
+		while (this.rowSet.next()) {
+			blackhole.consume(this.userRowMapper.mapRow(this.rowSet, rowNum++));
+		}
+	}
+
+}
@@ -4,38 +4,75 @@ import am.ik.pagination.CursorPage;
 import am.ik.pagination.CursorPageRequest;
 import com.example.softdelete.security.ActiveUserDetails;
 import com.example.softdelete.user.ActiveUser;
+import com.example.softdelete.user.BulkUserProgress;
+import com.example.softdelete.user.BulkUserService;
 import com.example.softdelete.user.DeletedUser;
 import com.example.softdelete.user.PendingUser;
 import com.example.softdelete.user.User;
+import com.example.softdelete.user.UserCache;
 import com.example.softdelete.user.UserMapper;
 import com.example.softdelete.user.UserService;
+import com.example.softdelete.user.UserStateCounter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 @Controller
 @RequestMapping("/admin")
 public class AdminController {
 
+	private static final Pattern USER_ID_SEPARATOR = Pattern.compile("[\\s,;]+");
+
 	private final UserMapper userMapper;
 
+	private final UserCache userCache;
+
 	private final UserService userService;
 
-	public AdminController(UserMapper userMapper, UserService userService) {
+	private final UserStateCounter userStateCounter;
+
+	private final BulkUserService bulkUserService;
+
+	private final ObjectMapper objectMapper;
+
+	public AdminController(UserMapper userMapper, UserCache userCache, UserService userService,
+			UserStateCounter userStateCounter, BulkUserService bulkUserService, ObjectMapper objectMapper) {
 		this.userMapper = userMapper;
+		this.userCache = userCache;
 		this.userService = userService;
+		this.userStateCounter = userStateCounter;
+		this.bulkUserService = bulkUserService;
+		this.objectMapper = objectMapper;
 	}
 
 	@GetMapping
-	public String showDashboardActiveUser(CursorPageRequest<Long> pageRequest, Model model) {
-		CursorPage<ActiveUser, Long> cursorPage = this.userMapper.findActiveUsers(pageRequest);
+	public String showDashboardActiveUser(CursorPageRequest<Long> pageRequest,
+			@RequestParam(name = "q", required = false) String query, Model model) {
+		String search = search(query, model);
+		CursorPage<ActiveUser, Long> cursorPage = this.userMapper.findActiveUsers(pageRequest, search);
 		List<ActiveUser> users = cursorPage.content();
 		AdminDashboard dashboard = new AdminDashboard(users, List.of(), List.of());
 		model.addAttribute("dashboard", dashboard);
@@ -43,6 +80,7 @@ public class AdminController {
 		model.addAttribute("isPendingTab", false);
 		model.addAttribute("isDeletedTab", false);
 		model.addAttribute("size", cursorPage.size());
+		model.addAttribute("counts", this.userStateCounter.counts());
 		if (!users.isEmpty()) {
 			if (cursorPage.hasPrevious()) {
 				model.addAttribute("firstUserId", users.getFirst().userId());
@@ -55,8 +93,10 @@ public class AdminController {
 	}
 
 	@GetMapping(params = "tab=pending")
-	public String showDashboardPendingUser(CursorPageRequest<Long> pageRequest, Model model) {
-		CursorPage<PendingUser, Long> cursorPage = this.userMapper.findPendingUsers(pageRequest);
+	public String showDashboardPendingUser(CursorPageRequest<Long> pageRequest,
+			@RequestParam(name = "q", required = false) String query, Model model) {
+		String search = search(query, model);
+		CursorPage<PendingUser, Long> cursorPage = this.userMapper.findPendingUsers(pageRequest, search);
 		List<PendingUser> users = cursorPage.content();
 		AdminDashboard dashboard = new AdminDashboard(List.of(), users, List.of());
 		model.addAttribute("dashboard", dashboard);
@@ -64,6 +104,7 @@ public class AdminController {
 		model.addAttribute("isPendingTab", true);
 		model.addAttribute("isDeletedTab", false);
 		model.addAttribute("size", cursorPage.size());
+		model.addAttribute("counts", this.userStateCounter.counts());
 		if (!users.isEmpty()) {
 			if (cursorPage.hasPrevious()) {
 				model.addAttribute("firstUserId", users.getFirst().userId());
@@ -85,6 +126,7 @@ public class AdminController {
 		model.addAttribute("isPendingTab", false);
 		model.addAttribute("isDeletedTab", true);
 		model.addAttribute("size", cursorPage.size());
+		model.addAttribute("counts", this.userStateCounter.counts());
 		if (!users.isEmpty()) {
 			if (cursorPage.hasPrevious()) {
 				model.addAttribute("firstUserId", users.getFirst().userId());
@@ -98,7 +140,7 @@ public class AdminController {
 
 	@GetMapping("/users/{userId}/ban")
 	public String showBanForm(@PathVariable long userId, Model model) {
-		User user = this.userMapper.findUser(userId)
+		User user = this.userCache.findUser(userId)
 			.orElseThrow(() -> new IllegalArgumentException("User not found: " + userId));
 
 		if (!(user instanceof ActiveUser activeUser)) {
@@ -113,7 +155,7 @@ public class AdminController {
 	public String banUser(@PathVariable long userId, BanRequest banRequest,
 			@AuthenticationPrincipal ActiveUserDetails adminDetails, RedirectAttributes redirectAttributes) {
 		try {
-			this.userService.banUser(userId, adminDetails.getActiveUser().userId(), banRequest.reason());
+			this.userService.banUser(userId, adminDetails.getUserId(), banRequest.reason());
 			redirectAttributes.addFlashAttribute("message", "User has been banned successfully.");
 		}
 		catch (Exception e) {
@@ -122,10 +164,79 @@ public class AdminController {
 		return "redirect:/admin?tab=active";
 	}
 
+	/**
+	 * Bans or deletes the users selected on the dashboard and the users whose ids were
+	 * pasted as a comma or whitespace separated list.
+	 */
+	@PostMapping("/users/bulk")
+	public String bulkUpdateUsers(@RequestParam(name = "userId", required = false) List<Long> selectedUserIds,
+			@RequestParam(name = "userIds", required = false) String userIdList, @RequestParam BulkAction action,
+			@RequestParam(required = false) String reason, @AuthenticationPrincipal ActiveUserDetails adminDetails,
+			RedirectAttributes redirectAttributes) {
+		try {
+			List<Long> userIds = new ArrayList<>(parseUserIds(userIdList));
+			if (selectedUserIds != null) {
+				userIds.addAll(selectedUserIds);
+			}
+			if (userIds.isEmpty()) {
+				redirectAttributes.addFlashAttribute("error", "No users selected.");
+				return "redirect:/admin?tab=active";
+			}
+			BulkUserProgress result = this.bulkUpdateUsers(action, userIds, reason, adminDetails, progress -> {
+			});
+			redirectAttributes.addFlashAttribute("message", "%s %d of %d users, skipped %d users that are not active."
+				.formatted(action.pastTense, result.changed(), result.requested(), result.skipped()));
+		}
+		catch (Exception e) {
+			redirectAttributes.addFlashAttribute("error",
+					"Failed to %s users: %s".formatted(action.name().toLowerCase(Locale.ROOT), e.getMessage()));
+		}
+		return "redirect:/admin?tab=active";
+	}
+
+	/**
+	 * Bans or deletes the users whose ids are posted as a comma, whitespace or line
+	 * separated list, e.g. a single column CSV file, and streams the progress as one JSON
+	 * line per chunk.
+	 */
+	@PostMapping(path = "/users/bulk", consumes = { "text/csv", MediaType.TEXT_PLAIN_VALUE },
+			produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public void bulkUpdateUsers(@RequestBody String userIdList, @RequestParam BulkAction action,
+			@RequestParam(required = false) String reason, @AuthenticationPrincipal ActiveUserDetails adminDetails,
+			HttpServletResponse response) throws IOException {
+		List<Long> userIds;
+		try {
+			userIds = parseUserIds(userIdList);
+		}
+		catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+		}
+		response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		PrintWriter writer = response.getWriter();
+		this.bulkUpdateUsers(action, userIds, reason, adminDetails, progress -> {
+			try {
+				writer.println(this.objectMapper.writeValueAsString(progress));
+				writer.flush();
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	private BulkUserProgress bulkUpdateUsers(BulkAction action, List<Long> userIds, @Nullable String reason,
+			ActiveUserDetails adminDetails, Consumer<BulkUserProgress> progressListener) {
+		return switch (action) {
+			case BAN -> this.bulkUserService.banUsers(userIds, adminDetails.getUserId(), reason, progressListener);
+			case DELETE -> this.bulkUserService.deleteUsers(userIds, progressListener);
+		};
+	}
+
 	@GetMapping("/users/{userId}/promote")
 	public String showPromoteForm(@PathVariable long userId, @RequestParam(required = false) String confirm,
 			Model model) {
-		User user = this.userMapper.findUser(userId)
+		User user = this.userCache.findUser(userId)
 			.orElseThrow(() -> new IllegalArgumentException("User not found: " + userId));
 
 		if (!(user instanceof ActiveUser activeUser)) {
@@ -162,6 +273,54 @@ public class AdminController {
 		return "redirect:/admin?tab=active";
 	}
 
+	/**
+	 * Returns the search term to apply, or {@code null} if the query is blank or too
+	 * short to be served by the trigram indexes, in which case all users are shown.
+	 */
+	@Nullable
+	private static String search(@Nullable String query, Model model) {
+		String search = query == null ? "" : query.strip();
+		model.addAttribute("query", search);
+		if (search.isEmpty()) {
+			return null;
+		}
+		if (search.length() < UserMapper.MIN_SEARCH_LENGTH) {
+			model.addAttribute("error",
+					"Search term must have at least " + UserMapper.MIN_SEARCH_LENGTH + " characters.");
+			return null;
+		}
+		model.addAttribute("searchQuery", URLEncoder.encode(search, StandardCharsets.UTF_8));
+		return search;
+	}
+
+	static List<Long> parseUserIds(@Nullable String userIdList) {
+		if (userIdList == null || userIdList.isBlank()) {
+			return List.of();
+		}
+		List<Long> userIds = new ArrayList<>();
+		for (String userId : USER_ID_SEPARATOR.split(userIdList.strip())) {
+			try {
+				userIds.add(Long.parseLong(userId));
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid user id: " + userId, e);
+			}
+		}
+		return userIds;
+	}
+
+	enum BulkAction {
+
+		BAN("Banned"), DELETE("Deleted");
+
+		private final String pastTense;
+
+		BulkAction(String pastTense) {
+			this.pastTense = pastTense;
+		}
+
+	}
+
 	record AdminDashboard(List<ActiveUser> activeUsers, List<PendingUser> pendingUsers,
 			List<DeletedUser> deletedUsers) {
 	}
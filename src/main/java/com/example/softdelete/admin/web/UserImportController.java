@@ -0,0 +1,97 @@
+package com.example.softdelete.admin.web;
+
+import com.example.softdelete.user.UserImportFormat;
+import com.example.softdelete.user.UserImportResult;
+import com.example.softdelete.user.UserImporter;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Imports users from a file, either uploaded with the form on the admin dashboard or
+ * posted as the request body. The response is the report of the rejected records, the
+ * numbers of imported users are returned as headers.
+ * <p>
+ * A script posts the file with the content type {@code text/csv} or
+ * {@code application/x-ndjson} and, like every other request, with the session cookie of
+ * an admin and the CSRF token in the {@code X-CSRF-TOKEN} header, e.g. taken from the
+ * {@code _csrf} field of the dashboard.
+ */
+@Controller
+@RequestMapping("/admin")
+public class UserImportController {
+
+	private final UserImporter userImporter;
+
+	public UserImportController(UserImporter userImporter) {
+		this.userImporter = userImporter;
+	}
+
+	@PostMapping(path = "/users/import", consumes = "text/csv", produces = "text/csv")
+	public void importCsv(InputStream body, UriComponentsBuilder uriBuilder, HttpServletResponse response)
+			throws IOException {
+		this.importUsers(body, UserImportFormat.CSV, uriBuilder, response);
+	}
+
+	@PostMapping(path = "/users/import", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = "text/csv")
+	public void importNdjson(InputStream body, UriComponentsBuilder uriBuilder, HttpServletResponse response)
+			throws IOException {
+		this.importUsers(body, UserImportFormat.NDJSON, uriBuilder, response);
+	}
+
+	@PostMapping(path = "/users/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = "text/csv")
+	public void importFile(@RequestParam MultipartFile file, @RequestParam UserImportFormat format,
+			UriComponentsBuilder uriBuilder, HttpServletResponse response) throws IOException {
+		if (file.isEmpty()) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No file uploaded");
+		}
+		// Lets the browser save the report instead of leaving the dashboard
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+				ContentDisposition.attachment().filename("user-import-report.csv").build().toString());
+		try (InputStream input = file.getInputStream()) {
+			this.importUsers(input, format, uriBuilder, response);
+		}
+	}
+
+	private void importUsers(InputStream body, UserImportFormat format, UriComponentsBuilder uriBuilder,
+			HttpServletResponse response) throws IOException {
+		// The report is buffered in a file, since the counts must be sent before it
+		Path report = Files.createTempFile("user-import-", ".csv");
+		try {
+			UserImportResult result;
+			try (Writer writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+				result = this.userImporter.importUsers(body, format,
+						uriBuilder.replacePath("").replaceQuery(null).fragment(null).build().toUri(), writer);
+			}
+			catch (IllegalArgumentException e) {
+				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+			}
+			response.setContentType("text/csv");
+			response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+			response.setHeader("X-Import-Records", Long.toString(result.records()));
+			response.setHeader("X-Import-Active", Long.toString(result.activeUsers()));
+			response.setHeader("X-Import-Pending", Long.toString(result.pendingUsers()));
+			response.setHeader("X-Import-Rejected", Long.toString(result.rejected()));
+			Files.copy(report, response.getOutputStream());
+		}
+		finally {
+			Files.deleteIfExists(report);
+		}
+	}
+
+}
@@ -1,17 +1,27 @@
 package com.example.softdelete.config;
 
+import com.example.softdelete.ott.authentication.TooManyOneTimeTokensFilter;
+import com.example.softdelete.ott.token.CaffeineOneTimeTokenService;
+import com.example.softdelete.ott.token.OneTimeTokenProps;
+import com.example.softdelete.ott.token.PostgresOneTimeTokenService;
+import com.example.softdelete.security.ActiveUserDetailsRefreshFilter;
+import com.example.softdelete.security.CurrentUser;
+import java.time.Clock;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.security.authentication.ott.JdbcOneTimeTokenService;
+import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
+import org.springframework.security.web.authentication.ott.GenerateOneTimeTokenFilter;
+import org.springframework.util.IdGenerator;
 
 @Configuration(proxyBeanMethods = false)
 public class SecurityConfig {
 
 	@Bean
-	SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+	SecurityFilterChain filterChain(HttpSecurity http, CurrentUser currentUser) throws Exception {
 		return http
 			.authorizeHttpRequests(authz -> authz
 				.requestMatchers("/login", "/login/ott", "/logout", "/ott/sent", "/signup", "/activation", "/error",
@@ -23,12 +33,23 @@ public class SecurityConfig {
 				.authenticated())
 			.formLogin(form -> form.loginPage("/login").defaultSuccessUrl("/"))
 			.oneTimeTokenLogin(ott -> ott.loginPage("/login").showDefaultSubmitPage(false))
+			.addFilterBefore(new TooManyOneTimeTokensFilter(), GenerateOneTimeTokenFilter.class)
+			.addFilterBefore(new ActiveUserDetailsRefreshFilter(currentUser), AuthorizationFilter.class)
 			.build();
 	}
 
 	@Bean
-	JdbcOneTimeTokenService jdbcOneTimeTokenService(JdbcTemplate jdbcTemplate) {
-		return new JdbcOneTimeTokenService(jdbcTemplate);
+	@ConditionalOnProperty(prefix = "ott.token", name = "store", havingValue = "jdbc", matchIfMissing = true)
+	PostgresOneTimeTokenService postgresOneTimeTokenService(JdbcClient jdbcClient, IdGenerator idGenerator,
+			OneTimeTokenProps props, Clock clock) {
+		return new PostgresOneTimeTokenService(jdbcClient, idGenerator, props, clock);
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "ott.token", name = "store", havingValue = "in-memory")
+	CaffeineOneTimeTokenService caffeineOneTimeTokenService(IdGenerator idGenerator, OneTimeTokenProps props,
+			Clock clock) {
+		return new CaffeineOneTimeTokenService(idGenerator, props, clock);
 	}
 
 }
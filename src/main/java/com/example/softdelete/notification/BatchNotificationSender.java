@@ -0,0 +1,21 @@
+package com.example.softdelete.notification;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link NotificationSender} that can deliver several notifications with fewer round
+ * trips than sending them one by one.
+ */
+public interface BatchNotificationSender extends NotificationSender {
+
+	/**
+	 * Sends the given notifications. A failure to send some of them does not prevent the
+	 * others from being sent.
+	 * @param notifications the notifications to send
+	 * @return the cause of each failed notification, keyed by its index in
+	 * {@code notifications}
+	 */
+	Map<Integer, RuntimeException> sendNotifications(List<Notification> notifications);
+
+}
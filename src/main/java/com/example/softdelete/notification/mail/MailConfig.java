@@ -0,0 +1,37 @@
+package com.example.softdelete.notification.mail;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+@Profile("mail")
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(MailProperties.class)
+class MailConfig {
+
+	/**
+	 * Replaces the auto-configured mail sender, applying the same {@code spring.mail.*}
+	 * properties.
+	 */
+	@Bean
+	@ConditionalOnProperty(prefix = "mail.pool", name = "enabled", havingValue = "true")
+	PooledJavaMailSender mailSender(MailProperties mailProperties, MailPoolProps mailPoolProps) {
+		PooledJavaMailSender mailSender = new PooledJavaMailSender(mailPoolProps);
+		mailSender.setHost(mailProperties.getHost());
+		if (mailProperties.getPort() != null) {
+			mailSender.setPort(mailProperties.getPort());
+		}
+		mailSender.setUsername(mailProperties.getUsername());
+		mailSender.setPassword(mailProperties.getPassword());
+		mailSender.setProtocol(mailProperties.getProtocol());
+		if (mailProperties.getDefaultEncoding() != null) {
+			mailSender.setDefaultEncoding(mailProperties.getDefaultEncoding().name());
+		}
+		mailSender.getJavaMailProperties().putAll(mailProperties.getProperties());
+		return mailSender;
+	}
+
+}
@@ -1,15 +1,22 @@
 package com.example.softdelete.notification.mail;
 
+import com.example.softdelete.notification.BatchNotificationSender;
 import com.example.softdelete.notification.Notification;
-import com.example.softdelete.notification.NotificationSender;
+import jakarta.mail.internet.MimeMessage;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import org.springframework.context.annotation.Profile;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMailMessage;
 import org.springframework.stereotype.Component;
 
 @Profile("mail")
 @Component
-public class MailNotificationSender implements NotificationSender {
+public class MailNotificationSender implements BatchNotificationSender {
 
 	private final JavaMailSender mailSender;
 
@@ -19,12 +26,53 @@ public class MailNotificationSender implements NotificationSender {
 
 	@Override
 	public void sendNotification(Notification notification) {
+		this.mailSender.send(toMailMessage(notification));
+	}
+
+	/**
+	 * Sends all notifications over a single SMTP session. The messages are converted to
+	 * {@link MimeMessage}s up front, so that failures are reported per message instance
+	 * and two notifications with the same content cannot be mistaken for one another.
+	 */
+	@Override
+	public Map<Integer, RuntimeException> sendNotifications(List<Notification> notifications) {
+		MimeMessage[] mimeMessages = new MimeMessage[notifications.size()];
+		for (int i = 0; i < mimeMessages.length; i++) {
+			MimeMailMessage mailMessage = new MimeMailMessage(this.mailSender.createMimeMessage());
+			toMailMessage(notifications.get(i)).copyTo(mailMessage);
+			mimeMessages[i] = mailMessage.getMimeMessage();
+		}
+		Map<Integer, RuntimeException> failures = new HashMap<>();
+		try {
+			this.mailSender.send(mimeMessages);
+		}
+		catch (MailSendException e) {
+			Map<Object, Exception> failedMessages = e.getFailedMessages();
+			for (int i = 0; i < mimeMessages.length; i++) {
+				if (failedMessages.isEmpty()) {
+					failures.put(i, e);
+				}
+				else if (failedMessages.containsKey(mimeMessages[i])) {
+					failures.put(i, new MailSendException("Failed to send a mail to " + notifications.get(i).to(),
+							failedMessages.get(mimeMessages[i])));
+				}
+			}
+		}
+		catch (MailException e) {
+			for (int i = 0; i < mimeMessages.length; i++) {
+				failures.put(i, e);
+			}
+		}
+		return failures;
+	}
+
+	private static SimpleMailMessage toMailMessage(Notification notification) {
 		SimpleMailMessage mailMessage = new SimpleMailMessage();
 		mailMessage.setSubject(notification.subject());
 		mailMessage.setTo(notification.to());
 		mailMessage.setText(notification.content());
 		// TODO setFrom
-		this.mailSender.send(mailMessage);
+		return mailMessage;
 	}
 
 }
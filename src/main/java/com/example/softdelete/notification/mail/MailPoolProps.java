@@ -0,0 +1,16 @@
+package com.example.softdelete.notification.mail;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param enabled whether SMTP connections are kept open and reused across sends
+ * @param maxSize maximum number of open SMTP connections
+ * @param maxIdle how long an unused SMTP connection is kept open
+ */
+@ConfigurationProperties(prefix = "mail.pool")
+public record MailPoolProps(@DefaultValue("false") boolean enabled, @DefaultValue("4") int maxSize,
+		@DefaultValue("1m") Duration maxIdle) {
+
+}
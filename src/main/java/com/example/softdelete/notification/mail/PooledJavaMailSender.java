@@ -0,0 +1,177 @@
+package com.example.softdelete.notification.mail;
+
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import java.time.Duration;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+/**
+ * {@link JavaMailSenderImpl} that keeps up to {@link MailPoolProps#maxSize()} SMTP
+ * connections open instead of connecting and authenticating for every send. All messages
+ * of one {@code send} call go through the same connection.
+ * <p>
+ * A pooled connection is checked with {@link Transport#isConnected()}, which sends an
+ * SMTP {@code NOOP}, before it is reused, and closed once it has been idle for longer
+ * than {@link MailPoolProps#maxIdle()}. The most recently returned connection is reused
+ * first, so every borrow and return also closes the expired connections at the other end
+ * of the pool, which a burst left behind and which would otherwise never be reached. A
+ * connection on which a send failed for any reason other than rejected recipients is
+ * discarded.
+ */
+public class PooledJavaMailSender extends JavaMailSenderImpl implements DisposableBean {
+
+	private final BlockingDeque<PooledTransport> idleTransports = new LinkedBlockingDeque<>();
+
+	private final Semaphore permits;
+
+	private final Duration maxIdle;
+
+	public PooledJavaMailSender(MailPoolProps props) {
+		this.permits = new Semaphore(props.maxSize());
+		this.maxIdle = props.maxIdle();
+	}
+
+	@Override
+	protected void doSend(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) throws MailException {
+		Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+		Transport transport;
+		try {
+			transport = this.borrowTransport();
+		}
+		catch (AuthenticationFailedException e) {
+			throw new MailAuthenticationException(e);
+		}
+		catch (MessagingException e) {
+			for (int i = 0; i < mimeMessages.length; i++) {
+				failedMessages.put(originalMessages != null ? originalMessages[i] : mimeMessages[i], e);
+			}
+			throw new MailSendException("Mail server connection failed", e, failedMessages);
+		}
+		boolean reusable = true;
+		try {
+			for (int i = 0; i < mimeMessages.length; i++) {
+				MimeMessage mimeMessage = mimeMessages[i];
+				try {
+					if (mimeMessage.getSentDate() == null) {
+						mimeMessage.setSentDate(new Date());
+					}
+					String messageId = mimeMessage.getMessageID();
+					mimeMessage.saveChanges();
+					if (messageId != null) {
+						// Preserve explicitly specified message id, as it gets reset by
+						// saveChanges
+						mimeMessage.setHeader("Message-ID", messageId);
+					}
+					Address[] addresses = mimeMessage.getAllRecipients();
+					transport.sendMessage(mimeMessage, addresses != null ? addresses : new Address[0]);
+				}
+				catch (SendFailedException e) {
+					failedMessages.put(originalMessages != null ? originalMessages[i] : mimeMessage, e);
+				}
+				catch (MessagingException e) {
+					reusable = false;
+					failedMessages.put(originalMessages != null ? originalMessages[i] : mimeMessage, e);
+				}
+			}
+		}
+		finally {
+			if (reusable) {
+				this.returnTransport(transport);
+			}
+			else {
+				this.discardTransport(transport);
+			}
+		}
+		if (!failedMessages.isEmpty()) {
+			throw new MailSendException(failedMessages);
+		}
+	}
+
+	private Transport borrowTransport() throws MessagingException {
+		try {
+			this.permits.acquire();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted while waiting for an SMTP connection", e);
+		}
+		try {
+			this.closeExpiredTransports();
+			PooledTransport pooled;
+			while ((pooled = this.idleTransports.pollFirst()) != null) {
+				if (!this.isExpired(pooled) && pooled.transport().isConnected()) {
+					return pooled.transport();
+				}
+				closeQuietly(pooled.transport());
+			}
+			return this.connectTransport();
+		}
+		catch (MessagingException | RuntimeException e) {
+			this.permits.release();
+			throw e;
+		}
+	}
+
+	private void returnTransport(Transport transport) {
+		this.closeExpiredTransports();
+		this.idleTransports.offerFirst(new PooledTransport(transport, System.nanoTime()));
+		this.permits.release();
+	}
+
+	private void discardTransport(Transport transport) {
+		closeQuietly(transport);
+		this.permits.release();
+	}
+
+	/**
+	 * Closes the longest idle connections while they are expired. A connection taken by a
+	 * concurrent borrow in between is left to that borrow.
+	 */
+	private void closeExpiredTransports() {
+		PooledTransport pooled;
+		while ((pooled = this.idleTransports.peekLast()) != null && this.isExpired(pooled)) {
+			if (this.idleTransports.removeLastOccurrence(pooled)) {
+				closeQuietly(pooled.transport());
+			}
+		}
+	}
+
+	private boolean isExpired(PooledTransport pooled) {
+		return System.nanoTime() - pooled.returnedAt() >= this.maxIdle.toNanos();
+	}
+
+	@Override
+	public void destroy() {
+		PooledTransport pooled;
+		while ((pooled = this.idleTransports.pollFirst()) != null) {
+			closeQuietly(pooled.transport());
+		}
+	}
+
+	private static void closeQuietly(Transport transport) {
+		try {
+			transport.close();
+		}
+		catch (MessagingException ignored) {
+		}
+	}
+
+	private record PooledTransport(Transport transport, long returnedAt) {
+	}
+
+}
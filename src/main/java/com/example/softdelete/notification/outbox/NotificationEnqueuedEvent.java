@@ -0,0 +1,4 @@
+package com.example.softdelete.notification.outbox;
+
+public record NotificationEnqueuedEvent(long outboxId) {
+}
@@ -0,0 +1,53 @@
+package com.example.softdelete.notification.outbox;
+
+import com.example.softdelete.notification.Notification;
+import java.time.Clock;
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.List;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Enqueues notifications in the current transaction so that they are delivered if and
+ * only if the transaction commits. Delivery is performed asynchronously by
+ * {@link NotificationOutboxDispatcher}.
+ */
+@Component
+public class NotificationOutbox {
+
+	private final NotificationOutboxMapper notificationOutboxMapper;
+
+	private final ApplicationEventPublisher eventPublisher;
+
+	private final Clock clock;
+
+	public NotificationOutbox(NotificationOutboxMapper notificationOutboxMapper,
+			ApplicationEventPublisher eventPublisher, Clock clock) {
+		this.notificationOutboxMapper = notificationOutboxMapper;
+		this.eventPublisher = eventPublisher;
+		this.clock = clock;
+	}
+
+	@Transactional
+	public void enqueue(Notification notification) {
+		long outboxId = this.notificationOutboxMapper.insertNotification(notification, OffsetDateTime.now(this.clock));
+		this.eventPublisher.publishEvent(new NotificationEnqueuedEvent(outboxId));
+	}
+
+	/**
+	 * Enqueues the given notifications with a single statement. The dispatcher is woken
+	 * up once, and drains them in batches.
+	 */
+	@Transactional
+	public void enqueueAll(List<Notification> notifications) {
+		if (notifications.isEmpty()) {
+			return;
+		}
+		List<Long> outboxIds = this.notificationOutboxMapper.insertNotifications(notifications,
+				OffsetDateTime.now(this.clock));
+		this.eventPublisher.publishEvent(new NotificationEnqueuedEvent(Collections.max(outboxIds)));
+	}
+
+}
@@ -0,0 +1,214 @@
+package com.example.softdelete.notification.outbox;
+
+import com.example.softdelete.notification.BatchNotificationSender;
+import com.example.softdelete.notification.NotificationSender;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Drains the notification outbox on every node. Due notifications are claimed with a
+ * lease, sent in one call if the sender is a {@link BatchNotificationSender} or
+ * concurrently on virtual threads otherwise, and deleted once sent. Failed attempts are
+ * retried with exponential backoff, and notifications whose node crashed before finishing
+ * are retried when their lease expires, so delivery is at least once.
+ * <p>
+ * The outbox is drained right after a transaction that enqueued a notification commits on
+ * this node, and polled periodically for everything else. Notifications that were given
+ * up stay in the outbox until {@link NotificationOutboxHouseKeeper} purges them.
+ */
+@Component
+public class NotificationOutboxDispatcher implements SmartLifecycle {
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final NotificationOutboxMapper notificationOutboxMapper;
+
+	private final NotificationSender notificationSender;
+
+	private final NotificationOutboxProps props;
+
+	private final Clock clock;
+
+	private final Counter sentCounter;
+
+	private final Counter failedCounter;
+
+	private final Counter abandonedCounter;
+
+	private final Semaphore wakeUp = new Semaphore(0);
+
+	private volatile boolean running = false;
+
+	private Thread thread;
+
+	public NotificationOutboxDispatcher(NotificationOutboxMapper notificationOutboxMapper,
+			NotificationSender notificationSender, NotificationOutboxProps props, Clock clock,
+			MeterRegistry meterRegistry) {
+		this.notificationOutboxMapper = notificationOutboxMapper;
+		this.notificationSender = notificationSender;
+		this.props = props;
+		this.clock = clock;
+		this.sentCounter = Counter.builder("notification_outbox.sent")
+			.description("Number of notifications sent from the outbox")
+			.register(meterRegistry);
+		this.failedCounter = Counter.builder("notification_outbox.failed")
+			.description("Number of failed attempts to send a notification from the outbox")
+			.register(meterRegistry);
+		this.abandonedCounter = Counter.builder("notification_outbox.abandoned")
+			.description("Number of notifications given up after the maximum number of attempts")
+			.register(meterRegistry);
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	void onNotificationEnqueued(NotificationEnqueuedEvent event) {
+		this.wakeUp.release();
+	}
+
+	@Override
+	public void start() {
+		this.running = true;
+		this.thread = Thread.ofVirtual().name("notification-outbox-dispatcher").start(this::run);
+	}
+
+	@Override
+	public void stop() {
+		this.running = false;
+		this.wakeUp.release();
+	}
+
+	/**
+	 * Lets the sends in flight finish before the shutdown proceeds, so that their
+	 * notifications are deleted from the outbox instead of being sent again once their
+	 * lease expires. A send that outlasts the timeout of the shutdown phase may still be
+	 * repeated by another node.
+	 */
+	@Override
+	public void stop(Runnable callback) {
+		this.stop();
+		Thread thread = this.thread;
+		if (thread == null) {
+			callback.run();
+			return;
+		}
+		Thread.ofVirtual().name("notification-outbox-dispatcher-stop").start(() -> {
+			try {
+				thread.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			finally {
+				callback.run();
+			}
+		});
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	private void run() {
+		while (this.running) {
+			int dispatched = 0;
+			try {
+				dispatched = this.dispatch();
+			}
+			catch (RuntimeException e) {
+				logger.warn("Failed to drain the notification outbox", e);
+			}
+			if (dispatched < this.props.batchSize()) {
+				try {
+					this.wakeUp.tryAcquire(this.props.pollInterval().toMillis(), TimeUnit.MILLISECONDS);
+					this.wakeUp.drainPermits();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	int dispatch() {
+		OffsetDateTime now = OffsetDateTime.now(this.clock);
+		List<OutboxNotification> notifications = this.notificationOutboxMapper.claimNotifications(now,
+				now.plus(this.props.lease()), this.props.batchSize());
+		if (notifications.isEmpty()) {
+			return 0;
+		}
+		if (this.notificationSender instanceof BatchNotificationSender batchNotificationSender) {
+			Map<Integer, RuntimeException> failures = batchNotificationSender
+				.sendNotifications(notifications.stream().map(OutboxNotification::notification).toList());
+			for (int i = 0; i < notifications.size(); i++) {
+				RuntimeException failure = failures.get(i);
+				if (failure == null) {
+					this.sent(notifications.get(i));
+				}
+				else {
+					this.failed(notifications.get(i), failure);
+				}
+			}
+		}
+		else {
+			try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				for (OutboxNotification notification : notifications) {
+					executor.execute(() -> this.send(notification));
+				}
+			}
+		}
+		return notifications.size();
+	}
+
+	private void send(OutboxNotification notification) {
+		try {
+			this.notificationSender.sendNotification(notification.notification());
+		}
+		catch (RuntimeException e) {
+			this.failed(notification, e);
+			return;
+		}
+		this.sent(notification);
+	}
+
+	private void sent(OutboxNotification notification) {
+		this.sentCounter.increment();
+		this.notificationOutboxMapper.deleteNotification(notification.outboxId());
+	}
+
+	private void failed(OutboxNotification notification, RuntimeException e) {
+		this.failedCounter.increment();
+		if (notification.attempts() >= this.props.maxAttempts()) {
+			logger.error("Giving up notification {} after {} attempts", notification.outboxId(),
+					notification.attempts(), e);
+			this.abandonedCounter.increment();
+			this.notificationOutboxMapper.rescheduleNotification(notification.outboxId(), null, e.toString());
+		}
+		else {
+			Duration backoff = this.backoff(notification.attempts());
+			logger.warn("Failed to send notification {}. Retrying in {}", notification.outboxId(), backoff, e);
+			this.notificationOutboxMapper.rescheduleNotification(notification.outboxId(),
+					OffsetDateTime.now(this.clock).plus(backoff), e.toString());
+		}
+	}
+
+	private Duration backoff(int attempts) {
+		Duration backoff = this.props.initialBackoff().multipliedBy(1L << Math.min(attempts - 1, 20));
+		return backoff.compareTo(this.props.maxBackoff()) > 0 ? this.props.maxBackoff() : backoff;
+	}
+
+}
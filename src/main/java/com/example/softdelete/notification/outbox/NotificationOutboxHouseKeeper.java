@@ -0,0 +1,57 @@
+package com.example.softdelete.notification.outbox;
+
+import com.example.softdelete.scheduling.ClusterJobRunner;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.OffsetDateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Purges notifications that {@link NotificationOutboxDispatcher} gave up once their
+ * retention has passed. They are never claimed again, so they would otherwise stay in the
+ * outbox forever.
+ */
+@Component
+public class NotificationOutboxHouseKeeper {
+
+	private final NotificationOutboxMapper notificationOutboxMapper;
+
+	private final ClusterJobRunner clusterJobRunner;
+
+	private final NotificationOutboxProps props;
+
+	private final Clock clock;
+
+	private final Counter purgedCounter;
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	public NotificationOutboxHouseKeeper(NotificationOutboxMapper notificationOutboxMapper,
+			ClusterJobRunner clusterJobRunner, NotificationOutboxProps props, Clock clock,
+			MeterRegistry meterRegistry) {
+		this.notificationOutboxMapper = notificationOutboxMapper;
+		this.clusterJobRunner = clusterJobRunner;
+		this.props = props;
+		this.clock = clock;
+		this.purgedCounter = Counter.builder("notification_outbox.purged")
+			.description("Number of abandoned notifications purged from the outbox")
+			.register(meterRegistry);
+	}
+
+	@Scheduled(cron = "0 30 * * * *")
+	public void cleanUpNotificationOutbox() {
+		this.clusterJobRunner.runExclusively("notification-outbox-house-keeper", this::purgeAbandonedNotifications);
+	}
+
+	void purgeAbandonedNotifications() {
+		int purged = this.notificationOutboxMapper
+			.deleteAbandonedNotifications(OffsetDateTime.now(this.clock).minus(this.props.abandonedRetention()));
+		this.purgedCounter.increment(purged);
+		logger.info("Purged {} abandoned notifications from the outbox", purged);
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.example.softdelete.notification.outbox;
+
+import com.example.softdelete.notification.Notification;
+import java.time.OffsetDateTime;
+import java.util.List;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public class NotificationOutboxMapper {
+
+	private final JdbcClient jdbcClient;
+
+	public NotificationOutboxMapper(JdbcClient jdbcClient) {
+		this.jdbcClient = jdbcClient;
+	}
+
+	@Transactional
+	public long insertNotification(Notification notification, OffsetDateTime nextAttemptAt) {
+		return this.jdbcClient.sql("""
+				INSERT INTO notification_outbox (recipient, subject, content, next_attempt_at)
+				VALUES (:recipient, :subject, :content, :nextAttemptAt)
+				RETURNING outbox_id
+				""")
+			.param("recipient", notification.to())
+			.param("subject", notification.subject())
+			.param("content", notification.content())
+			.param("nextAttemptAt", nextAttemptAt)
+			.query(Long.class)
+			.single();
+	}
+
+	/**
+	 * Inserts the given notifications with a single multi-row statement.
+	 * @return the ids of the inserted notifications
+	 */
+	@Transactional
+	public List<Long> insertNotifications(List<Notification> notifications, OffsetDateTime nextAttemptAt) {
+		return this.jdbcClient
+			.sql("""
+					INSERT INTO notification_outbox (recipient, subject, content, next_attempt_at)
+					SELECT recipient, subject, content, :nextAttemptAt
+					FROM unnest(:recipients::varchar[], :subjects::varchar[], :contents::text[]) AS n(recipient, subject, content)
+					RETURNING outbox_id
+					""")
+			.param("recipients", notifications.stream().map(Notification::to).toArray(String[]::new))
+			.param("subjects", notifications.stream().map(Notification::subject).toArray(String[]::new))
+			.param("contents", notifications.stream().map(Notification::content).toArray(String[]::new))
+			.param("nextAttemptAt", nextAttemptAt)
+			.query(Long.class)
+			.list();
+	}
+
+	/**
+	 * Claims due notifications by moving their next attempt to the end of the lease. Rows
+	 * claimed concurrently by other nodes are skipped rather than waited for. The due
+	 * rows are selected in a CTE, which is evaluated once, as a subquery re-scanned by a
+	 * nested loop would skip the rows just claimed and claim more than {@code limit}.
+	 */
+	@Transactional
+	public List<OutboxNotification> claimNotifications(OffsetDateTime now, OffsetDateTime leaseUntil, int limit) {
+		return this.jdbcClient.sql("""
+				WITH due AS (
+				    SELECT outbox_id
+				    FROM notification_outbox
+				    WHERE next_attempt_at <= :now
+				    ORDER BY next_attempt_at
+				    LIMIT :limit
+				    FOR UPDATE SKIP LOCKED
+				)
+				UPDATE notification_outbox
+				SET attempts = attempts + 1, next_attempt_at = :leaseUntil
+				WHERE outbox_id IN (SELECT outbox_id FROM due)
+				RETURNING outbox_id, recipient, subject, content, attempts
+				""")
+			.param("now", now)
+			.param("leaseUntil", leaseUntil)
+			.param("limit", limit)
+			.query((rs, i) -> new OutboxNotification(rs.getLong("outbox_id"),
+					new Notification(rs.getString("recipient"), rs.getString("subject"), rs.getString("content")),
+					rs.getInt("attempts")))
+			.list();
+	}
+
+	@Transactional
+	public int deleteNotification(long outboxId) {
+		return this.jdbcClient.sql("""
+				DELETE FROM notification_outbox WHERE outbox_id = :outboxId
+				""").param("outboxId", outboxId).update();
+	}
+
+	/**
+	 * Deletes notifications that were given up and enqueued before {@code before}.
+	 * @return the number of deleted notifications
+	 */
+	@Transactional
+	public int deleteAbandonedNotifications(OffsetDateTime before) {
+		return this.jdbcClient.sql("""
+				DELETE FROM notification_outbox WHERE next_attempt_at IS NULL AND created_at < :before
+				""").param("before", before).update();
+	}
+
+	/**
+	 * Records a failed attempt. A {@code null} next attempt gives the notification up.
+	 */
+	@Transactional
+	public int rescheduleNotification(long outboxId, @Nullable OffsetDateTime nextAttemptAt, String lastError) {
+		return this.jdbcClient.sql("""
+				UPDATE notification_outbox
+				SET next_attempt_at = :nextAttemptAt, last_error = :lastError
+				WHERE outbox_id = :outboxId
+				""")
+			.param("outboxId", outboxId)
+			.param("nextAttemptAt", nextAttemptAt)
+			.param("lastError", lastError)
+			.update();
+	}
+
+}
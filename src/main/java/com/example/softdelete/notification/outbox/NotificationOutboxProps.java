@@ -0,0 +1,25 @@
+package com.example.softdelete.notification.outbox;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param batchSize maximum number of notifications claimed and sent concurrently
+ * @param pollInterval how often the outbox is checked when no new notification was
+ * enqueued on this node
+ * @param lease how long a claimed notification is reserved for the claiming node before
+ * another node may retry it
+ * @param maxAttempts number of delivery attempts before a notification is given up
+ * @param initialBackoff delay before the first retry, doubled for every further retry
+ * @param maxBackoff upper bound of the delay between retries
+ * @param abandonedRetention how long notifications that were given up are kept for
+ * inspection, counted from when they were enqueued
+ */
+@ConfigurationProperties(prefix = "notification.outbox")
+public record NotificationOutboxProps(@DefaultValue("100") int batchSize, @DefaultValue("5s") Duration pollInterval,
+		@DefaultValue("5m") Duration lease, @DefaultValue("10") int maxAttempts,
+		@DefaultValue("10s") Duration initialBackoff, @DefaultValue("1h") Duration maxBackoff,
+		@DefaultValue("7d") Duration abandonedRetention) {
+
+}
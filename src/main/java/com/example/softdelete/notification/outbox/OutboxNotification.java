@@ -0,0 +1,11 @@
+package com.example.softdelete.notification.outbox;
+
+import com.example.softdelete.notification.Notification;
+
+/**
+ * @param outboxId identifier of the outbox entry
+ * @param notification the notification to deliver
+ * @param attempts number of delivery attempts including the current one
+ */
+public record OutboxNotification(long outboxId, Notification notification, int attempts) {
+}
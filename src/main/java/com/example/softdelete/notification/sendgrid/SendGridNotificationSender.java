@@ -1,7 +1,11 @@
 package com.example.softdelete.notification.sendgrid;
 
+import com.example.softdelete.notification.BatchNotificationSender;
 import com.example.softdelete.notification.Notification;
-import com.example.softdelete.notification.NotificationSender;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.springframework.context.annotation.Profile;
@@ -12,9 +16,26 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.server.ResponseStatusException;
 
+/**
+ * Sends notifications through the SendGrid v3 mail send API.
+ * <p>
+ * A batch is sent with one request per subject and up to
+ * {@link SendGridProps#maxPersonalizations()} recipients, using one personalization per
+ * recipient so that recipients do not see each other. Per-recipient content is passed as
+ * a substitution of the whole body. If SendGrid rejects a batch request, which it does as
+ * a whole even if only one recipient is invalid, its notifications are sent one by one to
+ * find out which of them fail.
+ */
 @Profile("sendgrid")
 @Component
-public class SendGridNotificationSender implements NotificationSender {
+public class SendGridNotificationSender implements BatchNotificationSender {
+
+	static final String CONTENT_SUBSTITUTION = "-content-";
+
+	/**
+	 * SendGrid limits the total size of the substitutions of a personalization.
+	 */
+	private static final int MAX_SUBSTITUTION_BYTES = 10_000;
 
 	private final RestClient restClient;
 
@@ -31,20 +52,96 @@ public class SendGridNotificationSender implements NotificationSender {
 
 	@Override
 	public void sendNotification(Notification notification) {
-		ResponseEntity<String> response = this.restClient.post()
+		ResponseEntity<String> response = this.send(Map.of("personalizations",
+				List.of(Map.of("to", List.of(Map.of("email", notification.to())), "subject", notification.subject())),
+				"from", Map.of("email", this.props.from()), "content",
+				List.of(Map.of("type", "text/plain", "value", notification.content()))));
+		if (!response.getStatusCode().is2xxSuccessful()) {
+			throw failedToSend(response);
+		}
+	}
+
+	@Override
+	public Map<Integer, RuntimeException> sendNotifications(List<Notification> notifications) {
+		Map<Integer, RuntimeException> failures = new HashMap<>();
+		Map<String, List<Integer>> batches = new LinkedHashMap<>();
+		for (int i = 0; i < notifications.size(); i++) {
+			Notification notification = notifications.get(i);
+			if (notification.content().getBytes(StandardCharsets.UTF_8).length > MAX_SUBSTITUTION_BYTES) {
+				this.sendIndividually(notifications, List.of(i), failures);
+				continue;
+			}
+			List<Integer> batch = batches.computeIfAbsent(notification.subject(), __ -> new ArrayList<>());
+			batch.add(i);
+			if (batch.size() == this.props.maxPersonalizations()) {
+				this.sendBatch(notifications, batches.remove(notification.subject()), failures);
+			}
+		}
+		batches.values().forEach(batch -> this.sendBatch(notifications, batch, failures));
+		return failures;
+	}
+
+	private void sendBatch(List<Notification> notifications, List<Integer> batch,
+			Map<Integer, RuntimeException> failures) {
+		if (batch.size() == 1) {
+			this.sendIndividually(notifications, batch, failures);
+			return;
+		}
+		Notification first = notifications.get(batch.getFirst());
+		boolean sameContent = batch.stream().allMatch(i -> notifications.get(i).content().equals(first.content()));
+		List<Map<String, Object>> personalizations = batch.stream().map(i -> {
+			Notification notification = notifications.get(i);
+			List<Map<String, String>> to = List.of(Map.of("email", notification.to()));
+			return sameContent ? Map.<String, Object>of("to", to)
+					: Map.of("to", to, "substitutions", Map.of(CONTENT_SUBSTITUTION, notification.content()));
+		}).toList();
+		ResponseEntity<String> response;
+		try {
+			response = this.send(Map.of("personalizations", personalizations, "subject", first.subject(), "from",
+					Map.of("email", this.props.from()), "content", List.of(Map.of("type", "text/plain", "value",
+							sameContent ? first.content() : CONTENT_SUBSTITUTION))));
+		}
+		catch (RuntimeException e) {
+			batch.forEach(i -> failures.put(i, e));
+			return;
+		}
+		if (response.getStatusCode().is2xxSuccessful()) {
+			return;
+		}
+		if (response.getStatusCode().is4xxClientError()
+				&& !response.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)) {
+			this.sendIndividually(notifications, batch, failures);
+		}
+		else {
+			RuntimeException e = failedToSend(response);
+			batch.forEach(i -> failures.put(i, e));
+		}
+	}
+
+	private void sendIndividually(List<Notification> notifications, List<Integer> indexes,
+			Map<Integer, RuntimeException> failures) {
+		for (int i : indexes) {
+			try {
+				this.sendNotification(notifications.get(i));
+			}
+			catch (RuntimeException e) {
+				failures.put(i, e);
+			}
+		}
+	}
+
+	private ResponseEntity<String> send(Map<String, Object> body) {
+		return this.restClient.post()
 			.uri("/v3/mail/send")
 			.contentType(MediaType.APPLICATION_JSON)
-			.body(Map.of("personalizations",
-					List.of(Map.of("to", List.of(Map.of("email", notification.to())), "subject",
-							notification.subject())),
-					"from", Map.of("email", this.props.from()), "content",
-					List.of(Map.of("type", "text/plain", "value", notification.content()))))
+			.body(body)
 			.retrieve()
 			.toEntity(String.class);
-		if (!response.getStatusCode().is2xxSuccessful()) {
-			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
-					"Failed to send a mail: " + response.getBody());
-		}
+	}
+
+	private static ResponseStatusException failedToSend(ResponseEntity<String> response) {
+		return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+				"Failed to send a mail: " + response.getBody());
 	}
 
 }
@@ -4,8 +4,15 @@ import java.net.URI;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.bind.DefaultValue;
 
+/**
+ * @param apiKey SendGrid API key
+ * @param baseUrl base URL of the SendGrid API
+ * @param from sender address of all mails
+ * @param maxPersonalizations maximum number of recipients coalesced into a single request
+ * when sending a batch. {@code 1} disables batching
+ */
 @ConfigurationProperties(prefix = "sendgrid")
 public record SendGridProps(String apiKey, @DefaultValue("https://api.sendgrid.com") URI baseUrl,
-		@DefaultValue("noreply@example.com") String from) {
+		@DefaultValue("noreply@example.com") String from, @DefaultValue("1000") int maxPersonalizations) {
 
 }
@@ -3,6 +3,8 @@ package com.example.softdelete.ott.authentication;
 import com.example.softdelete.notification.Notification;
 import com.example.softdelete.notification.NotificationSender;
 import com.example.softdelete.security.ActiveUserDetails;
+import com.example.softdelete.user.ActiveUser;
+import com.example.softdelete.user.UserCache;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -31,11 +33,14 @@ public class MagicLinkOneTimeTokenGenerationSuccessHandler implements OneTimeTok
 
 	private final UserDetailsService userDetailsService;
 
+	private final UserCache userCache;
+
 	private final NotificationSender notificationSender;
 
-	public MagicLinkOneTimeTokenGenerationSuccessHandler(UserDetailsService userDetailsService,
+	public MagicLinkOneTimeTokenGenerationSuccessHandler(UserDetailsService userDetailsService, UserCache userCache,
 			NotificationSender notificationSender) {
 		this.userDetailsService = userDetailsService;
+		this.userCache = userCache;
 		this.notificationSender = notificationSender;
 	}
 
@@ -45,6 +50,11 @@ public class MagicLinkOneTimeTokenGenerationSuccessHandler implements OneTimeTok
 		try {
 			UserDetails userDetails = this.userDetailsService.loadUserByUsername(oneTimeToken.getUsername());
 			if (userDetails instanceof ActiveUserDetails activeUserDetails) {
+				// The principal does not hold the email addresses
+				ActiveUser activeUser = this.userCache.findUser(activeUserDetails.getUserId())
+					.filter(ActiveUser.class::isInstance)
+					.map(ActiveUser.class::cast)
+					.orElseThrow(() -> new UsernameNotFoundException(oneTimeToken.getUsername() + " is not found"));
 				URI magicLink = UriComponentsBuilder.fromUriString(UrlUtils.buildFullRequestUrl(request))
 					.replacePath(request.getContextPath())
 					.replaceQuery(null)
@@ -53,8 +63,8 @@ public class MagicLinkOneTimeTokenGenerationSuccessHandler implements OneTimeTok
 					.queryParam("token", oneTimeToken.getTokenValue())
 					.build()
 					.toUri();
-				Notification notification = new Notification(activeUserDetails.getActiveUser().primaryEmail(),
-						"Your One Time Token", "Use the following link to sign in into the application:\n" + magicLink);
+				Notification notification = new Notification(activeUser.primaryEmail(), "Your One Time Token",
+						"Use the following link to sign in into the application:\n" + magicLink);
 				this.notificationSender.sendNotification(notification);
 				this.redirectHandler.handle(request, response, oneTimeToken);
 			}
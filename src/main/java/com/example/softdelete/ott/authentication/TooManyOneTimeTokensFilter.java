@@ -0,0 +1,32 @@
+package com.example.softdelete.ott.authentication;
+
+import com.example.softdelete.ott.token.TooManyOneTimeTokensException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.web.authentication.ott.GenerateOneTimeTokenFilter;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Answers a {@link TooManyOneTimeTokensException} with 429. The exception is thrown by the
+ * token service inside {@link GenerateOneTimeTokenFilter}, which runs before Spring
+ * Security translates exceptions and would otherwise end in a 500.
+ */
+public class TooManyOneTimeTokensFilter extends OncePerRequestFilter {
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		try {
+			filterChain.doFilter(request, response);
+		}
+		catch (TooManyOneTimeTokensException e) {
+			response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(),
+					"Too many sign-in links were requested. Please use a link you already received or try again later.");
+		}
+	}
+
+}
@@ -0,0 +1,109 @@
+package com.example.softdelete.ott.token;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.lang.Nullable;
+import org.springframework.security.authentication.ott.DefaultOneTimeToken;
+import org.springframework.security.authentication.ott.GenerateOneTimeTokenRequest;
+import org.springframework.security.authentication.ott.OneTimeToken;
+import org.springframework.security.authentication.ott.OneTimeTokenAuthenticationToken;
+import org.springframework.security.authentication.ott.OneTimeTokenService;
+import org.springframework.util.IdGenerator;
+
+/**
+ * Keeps one-time tokens in memory for single-node deployments, applying the same limit of
+ * active tokens per username as {@link PostgresOneTimeTokenService}.
+ * <p>
+ * Both maps are Caffeine caches, whose concurrent hash tables lock single bins rather
+ * than the whole map, and whose entries are removed by a scheduler once they expire, so
+ * no purge job is needed. The active tokens of a username are tracked as the list of
+ * their expiry times, which is updated atomically per username.
+ */
+public class CaffeineOneTimeTokenService implements OneTimeTokenService {
+
+	private final Cache<String, OneTimeToken> tokens;
+
+	private final Cache<String, List<Instant>> activeTokens;
+
+	private final IdGenerator idGenerator;
+
+	private final OneTimeTokenProps props;
+
+	private final Clock clock;
+
+	public CaffeineOneTimeTokenService(IdGenerator idGenerator, OneTimeTokenProps props, Clock clock) {
+		this.idGenerator = idGenerator;
+		this.props = props;
+		this.clock = clock;
+		this.tokens = Caffeine.newBuilder()
+			.expireAfter(
+					Expiry.<String, OneTimeToken>creating((tokenValue, token) -> this.remaining(token.getExpiresAt())))
+			.scheduler(Scheduler.systemScheduler())
+			.build();
+		this.activeTokens = Caffeine.newBuilder()
+			.expireAfter(
+					Expiry.<String, List<Instant>>writing((username, expiresAt) -> this.remaining(expiresAt.getLast())))
+			.scheduler(Scheduler.systemScheduler())
+			.build();
+	}
+
+	/**
+	 * Generates a token unless the username already holds the maximum number of active
+	 * tokens.
+	 * @throws TooManyOneTimeTokensException if too many tokens are active
+	 */
+	@Override
+	public OneTimeToken generate(GenerateOneTimeTokenRequest request) {
+		Instant now = this.clock.instant();
+		OneTimeToken token = new DefaultOneTimeToken(this.idGenerator.generateId().toString(), request.getUsername(),
+				now.plus(request.getExpiresIn()));
+		boolean[] accepted = { false };
+		this.activeTokens.asMap().compute(request.getUsername(), (username, expiresAt) -> {
+			List<Instant> active = new ArrayList<>();
+			if (expiresAt != null) {
+				expiresAt.stream().filter(instant -> instant.isAfter(now)).forEach(active::add);
+			}
+			if (active.size() >= this.props.maxActiveTokensPerUsername()) {
+				return active.isEmpty() ? null : List.copyOf(active);
+			}
+			active.add(token.getExpiresAt());
+			active.sort(null);
+			accepted[0] = true;
+			return List.copyOf(active);
+		});
+		if (!accepted[0]) {
+			throw new TooManyOneTimeTokensException(token.getUsername());
+		}
+		this.tokens.put(token.getTokenValue(), token);
+		return token;
+	}
+
+	@Override
+	@Nullable
+	public OneTimeToken consume(OneTimeTokenAuthenticationToken authenticationToken) {
+		OneTimeToken token = this.tokens.asMap().remove(authenticationToken.getTokenValue());
+		if (token == null) {
+			return null;
+		}
+		this.activeTokens.asMap().computeIfPresent(token.getUsername(), (username, expiresAt) -> {
+			List<Instant> active = new ArrayList<>(expiresAt);
+			active.remove(token.getExpiresAt());
+			return active.isEmpty() ? null : List.copyOf(active);
+		});
+		// The cache expires entries on its own ticker, the clock decides
+		return token.getExpiresAt().isAfter(this.clock.instant()) ? token : null;
+	}
+
+	private Duration remaining(Instant expiresAt) {
+		Duration remaining = Duration.between(this.clock.instant(), expiresAt);
+		return remaining.isNegative() ? Duration.ZERO : remaining;
+	}
+
+}
@@ -0,0 +1,98 @@
+package com.example.softdelete.ott.token;
+
+import com.example.softdelete.scheduling.ClusterJobRunner;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Purges expired one-time tokens that were never consumed. Each chunk is deleted by its
+ * own statement through the index on {@code expires_at}, so a run never holds many row
+ * locks or blocks token generation for long. With the {@code partitioned} storage,
+ * expired partitions are dropped instead and the partitions for the next hours are
+ * created ahead.
+ */
+@Component
+@ConditionalOnProperty(prefix = "ott.token", name = "store", havingValue = "jdbc", matchIfMissing = true)
+public class OneTimeTokenHouseKeeper {
+
+	/**
+	 * How far partitions are created ahead, longer than tokens are valid and than the
+	 * housekeeper may be down before the default partition takes the tokens.
+	 */
+	static final Duration PARTITIONS_AHEAD = Duration.ofHours(3);
+
+	private final PostgresOneTimeTokenService oneTimeTokenService;
+
+	private final ClusterJobRunner clusterJobRunner;
+
+	private final OneTimeTokenProps props;
+
+	private final Clock clock;
+
+	private final Counter purgedCounter;
+
+	private final Timer purgeTimer;
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	public OneTimeTokenHouseKeeper(PostgresOneTimeTokenService oneTimeTokenService, ClusterJobRunner clusterJobRunner,
+			OneTimeTokenProps props, Clock clock, MeterRegistry meterRegistry) {
+		this.oneTimeTokenService = oneTimeTokenService;
+		this.clusterJobRunner = clusterJobRunner;
+		this.props = props;
+		this.clock = clock;
+		this.purgedCounter = Counter.builder("one_time_tokens.purged")
+			.description("Number of expired one-time tokens purged")
+			.register(meterRegistry);
+		this.purgeTimer = Timer.builder("one_time_tokens.purge")
+			.description("Duration of a full purge of expired one-time tokens")
+			.register(meterRegistry);
+	}
+
+	@Scheduled(cron = "0 */10 * * * *")
+	public void cleanUpOneTimeTokens() {
+		this.clusterJobRunner.runExclusively("one-time-token-house-keeper", this::purgeExpiredTokens);
+	}
+
+	/**
+	 * Purges expired tokens in chunks until none that expired before the start of the run
+	 * are left. Tokens locked by a concurrent consumption are skipped rather than waited
+	 * for, so a chunk may come back short while more expired tokens remain; the run
+	 * therefore only ends on an empty chunk. Skipped tokens are purged by the next run.
+	 */
+	void purgeExpiredTokens() {
+		Instant now = this.clock.instant();
+		if (this.props.storage() == OneTimeTokenProps.Storage.PARTITIONED) {
+			long purged = this.purgeTimer.record(() -> {
+				this.oneTimeTokenService.createPartitions(now.plus(PARTITIONS_AHEAD));
+				return this.oneTimeTokenService.dropExpiredPartitions(now);
+			});
+			this.purgedCounter.increment(purged);
+			logger.info("Purged {} expired one-time tokens by dropping partitions", purged);
+			return;
+		}
+		int chunkSize = this.props.purgeChunkSize();
+		int purged = this.purgeTimer.record(() -> {
+			int total = 0;
+			int deleted;
+			do {
+				deleted = this.oneTimeTokenService.deleteExpiredTokens(now, chunkSize);
+				this.purgedCounter.increment(deleted);
+				total += deleted;
+			}
+			while (deleted > 0);
+			return total;
+		});
+		logger.info("Purged {} expired one-time tokens", purged);
+	}
+
+}
@@ -0,0 +1,33 @@
+package com.example.softdelete.ott.token;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param store where tokens are kept, {@code in-memory} only suits single-node
+ * deployments since a magic link must be consumed on the node that generated it
+ * @param storage how the {@code jdbc} store keeps the {@code one_time_tokens} table, also
+ * passed to the Flyway migration that converts the table when this setting changes
+ * @param maxActiveTokensPerUsername number of unexpired, unconsumed tokens a username may
+ * hold before requests for further tokens are rejected with 429, also for usernames that
+ * do not exist
+ * @param purgeChunkSize number of expired tokens deleted per statement by
+ * {@link OneTimeTokenHouseKeeper}
+ */
+@ConfigurationProperties(prefix = "ott.token")
+public record OneTimeTokenProps(@DefaultValue("jdbc") Store store, @DefaultValue("logged") Storage storage,
+		@DefaultValue("3") int maxActiveTokensPerUsername, @DefaultValue("1000") int purgeChunkSize) {
+
+	public enum Store {
+
+		JDBC, IN_MEMORY
+
+	}
+
+	public enum Storage {
+
+		LOGGED, UNLOGGED, PARTITIONED
+
+	}
+
+}
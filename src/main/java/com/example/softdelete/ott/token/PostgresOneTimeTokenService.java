@@ -0,0 +1,142 @@
+package com.example.softdelete.ott.token;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.lang.Nullable;
+import org.springframework.security.authentication.ott.DefaultOneTimeToken;
+import org.springframework.security.authentication.ott.GenerateOneTimeTokenRequest;
+import org.springframework.security.authentication.ott.OneTimeToken;
+import org.springframework.security.authentication.ott.OneTimeTokenAuthenticationToken;
+import org.springframework.security.authentication.ott.OneTimeTokenService;
+import org.springframework.util.IdGenerator;
+
+/**
+ * Keeps one-time tokens in the {@code one_time_tokens} table with a single statement per
+ * operation.
+ * <p>
+ * Generating a token inserts it only if the username holds fewer than
+ * {@link OneTimeTokenProps#maxActiveTokensPerUsername()} active tokens, so that the
+ * mailbox of a user cannot be flooded with magic links. The check is not serialized, so
+ * concurrent requests for the same username may exceed the limit by a few tokens. The
+ * limit applies to whatever username is submitted, so anyone who knows a username can use
+ * up its tokens until they expire. The owner can still sign in with any of the links that
+ * were mailed for them, and unknown usernames only block themselves, since their tokens
+ * are never mailed.
+ * Consuming a token deletes it and returns it in the same statement, so a token can be
+ * used only once even if the magic link is opened twice concurrently. Expired tokens are
+ * deleted when consumed and otherwise by {@link OneTimeTokenHouseKeeper}, row by row or
+ * as whole partitions depending on {@link OneTimeTokenProps#storage()}.
+ */
+public class PostgresOneTimeTokenService implements OneTimeTokenService {
+
+	private final JdbcClient jdbcClient;
+
+	private final IdGenerator idGenerator;
+
+	private final OneTimeTokenProps props;
+
+	private final Clock clock;
+
+	public PostgresOneTimeTokenService(JdbcClient jdbcClient, IdGenerator idGenerator, OneTimeTokenProps props,
+			Clock clock) {
+		this.jdbcClient = jdbcClient;
+		this.idGenerator = idGenerator;
+		this.props = props;
+		this.clock = clock;
+	}
+
+	/**
+	 * Generates a token unless the username already holds the maximum number of active
+	 * tokens.
+	 * @throws TooManyOneTimeTokensException if too many tokens are active
+	 */
+	@Override
+	public OneTimeToken generate(GenerateOneTimeTokenRequest request) {
+		Instant now = this.clock.instant();
+		OneTimeToken token = new DefaultOneTimeToken(this.idGenerator.generateId().toString(), request.getUsername(),
+				now.plus(request.getExpiresIn()));
+		int inserted = this.jdbcClient.sql("""
+				INSERT INTO one_time_tokens (token_value, username, expires_at)
+				SELECT :tokenValue, :username, :expiresAt
+				WHERE (
+				    SELECT count(*) FROM one_time_tokens WHERE username = :username AND expires_at > :now
+				) < :maxActiveTokens
+				""")
+			.param("tokenValue", token.getTokenValue())
+			.param("username", token.getUsername())
+			.param("expiresAt", toOffsetDateTime(token.getExpiresAt()))
+			.param("now", toOffsetDateTime(now))
+			.param("maxActiveTokens", this.props.maxActiveTokensPerUsername())
+			.update();
+		if (inserted == 0) {
+			throw new TooManyOneTimeTokensException(token.getUsername());
+		}
+		return token;
+	}
+
+	@Override
+	@Nullable
+	public OneTimeToken consume(OneTimeTokenAuthenticationToken authenticationToken) {
+		String tokenValue = authenticationToken.getTokenValue();
+		return this.jdbcClient.sql("""
+				DELETE FROM one_time_tokens WHERE token_value = :tokenValue RETURNING username, expires_at
+				""")
+			.param("tokenValue", tokenValue)
+			.query((rs, rowNum) -> new DefaultOneTimeToken(tokenValue, rs.getString("username"),
+					rs.getObject("expires_at", OffsetDateTime.class).toInstant()))
+			.optional()
+			.filter(token -> token.getExpiresAt().isAfter(this.clock.instant()))
+			.orElse(null);
+	}
+
+	/**
+	 * Deletes up to {@code limit} tokens that expired before {@code now}, oldest first.
+	 * Rows locked by a concurrent purge or consumption are skipped. The chunk is selected
+	 * in a CTE so that it is evaluated once and cannot exceed the limit.
+	 * @return the number of deleted tokens
+	 */
+	public int deleteExpiredTokens(Instant now, int limit) {
+		return this.jdbcClient.sql("""
+				WITH expired AS (
+				    SELECT token_value FROM one_time_tokens
+				    WHERE expires_at < :now
+				    ORDER BY expires_at
+				    LIMIT :limit
+				    FOR UPDATE SKIP LOCKED
+				)
+				DELETE FROM one_time_tokens WHERE token_value IN (SELECT token_value FROM expired)
+				""").param("now", toOffsetDateTime(now)).param("limit", limit).update();
+	}
+
+	/**
+	 * Creates the hourly partitions of the {@code partitioned} storage up to
+	 * {@code until}. Tokens expiring beyond the last partition go to the default
+	 * partition.
+	 */
+	public void createPartitions(Instant until) {
+		this.jdbcClient.sql("SELECT create_one_time_token_partitions(:until)")
+			.param("until", toOffsetDateTime(until))
+			.query()
+			.listOfRows();
+	}
+
+	/**
+	 * Drops the partitions of the {@code partitioned} storage that only hold tokens
+	 * expired before {@code now} and deletes the expired tokens of the default partition.
+	 * @return the number of purged tokens
+	 */
+	public long dropExpiredPartitions(Instant now) {
+		return this.jdbcClient.sql("SELECT purge_one_time_token_partitions(:now)")
+			.param("now", toOffsetDateTime(now))
+			.query(Long.class)
+			.single();
+	}
+
+	private static OffsetDateTime toOffsetDateTime(Instant instant) {
+		return instant.atOffset(ZoneOffset.UTC);
+	}
+
+}
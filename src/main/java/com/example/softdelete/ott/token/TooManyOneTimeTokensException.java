@@ -0,0 +1,13 @@
+package com.example.softdelete.ott.token;
+
+/**
+ * Thrown when a token is requested for a username that already holds
+ * {@link OneTimeTokenProps#maxActiveTokensPerUsername()} active tokens.
+ */
+public class TooManyOneTimeTokensException extends RuntimeException {
+
+	public TooManyOneTimeTokensException(String username) {
+		super(username + " holds too many active one-time tokens");
+	}
+
+}
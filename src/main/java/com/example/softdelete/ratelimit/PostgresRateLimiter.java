@@ -0,0 +1,82 @@
+package com.example.softdelete.ratelimit;
+
+import com.example.softdelete.scheduling.ClusterJobRunner;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import org.postgresql.util.PGInterval;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rate limiter shared by all nodes, applying the same algorithm as
+ * {@link StripedRateLimiter} to the {@code rate_limits} table.
+ * <p>
+ * A request is admitted by a single upsert, which only advances the bucket if it has a
+ * token left. It is consulted only for requests the in-process limiter admitted, so a
+ * flood from a single node does not reach the database.
+ */
+@Component
+@ConditionalOnProperty(prefix = "rate-limit", name = "shared", havingValue = "true")
+public class PostgresRateLimiter {
+
+	private final JdbcClient jdbcClient;
+
+	private final ClusterJobRunner clusterJobRunner;
+
+	private final Clock clock;
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	public PostgresRateLimiter(JdbcClient jdbcClient, ClusterJobRunner clusterJobRunner, Clock clock) {
+		this.jdbcClient = jdbcClient;
+		this.clusterJobRunner = clusterJobRunner;
+		this.clock = clock;
+	}
+
+	/**
+	 * Takes a token from the bucket of the key if one is available.
+	 * @return {@link Duration#ZERO} if the request is admitted, otherwise the refill
+	 * interval as an estimate of when the next request would be
+	 */
+	public Duration tryAcquire(String key, int capacity, Duration refillInterval) {
+		OffsetDateTime now = OffsetDateTime.now(this.clock);
+		boolean admitted = this.jdbcClient.sql("""
+				INSERT INTO rate_limits AS r (key, theoretical_arrival_time)
+				VALUES (:key, :now + :emissionInterval)
+				ON CONFLICT (key) DO UPDATE
+				SET theoretical_arrival_time = greatest(r.theoretical_arrival_time, :now) + :emissionInterval
+				WHERE r.theoretical_arrival_time <= :now + :burstTolerance
+				RETURNING key
+				""")
+			.param("key", key)
+			.param("now", now)
+			.param("emissionInterval", new PGInterval(0, 0, 0, 0, 0, refillInterval.toNanos() / 1e9))
+			.param("burstTolerance", new PGInterval(0, 0, 0, 0, 0, refillInterval.toNanos() * (capacity - 1) / 1e9))
+			.query()
+			.listOfRows()
+			.size() == 1;
+		return admitted ? Duration.ZERO : refillInterval;
+	}
+
+	@Scheduled(cron = "0 */10 * * * *")
+	public void cleanUpRateLimits() {
+		this.clusterJobRunner.runExclusively("rate-limit-house-keeper", this::deleteFullBuckets);
+	}
+
+	/**
+	 * Deletes the buckets that have refilled completely, which is the same as having no
+	 * bucket.
+	 */
+	void deleteFullBuckets() {
+		int deleted = this.jdbcClient.sql("DELETE FROM rate_limits WHERE theoretical_arrival_time < :now")
+			.param("now", OffsetDateTime.now(this.clock))
+			.update();
+		logger.info("Deleted {} full rate limit buckets", deleted);
+	}
+
+}
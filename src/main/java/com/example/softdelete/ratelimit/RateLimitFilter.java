@@ -0,0 +1,128 @@
+package com.example.softdelete.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Rate limits the requests that are expensive for anonymous clients, namely requesting a
+ * magic link, signing in with its token and signing up. Each request takes a token from
+ * the bucket of the client IP address and from the buckets of the submitted username and
+ * email address, so that neither a single client nor a botnet targeting a single account
+ * can flood the database or the mail provider. Rejected requests are answered with 429
+ * before any user is looked up.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+	/**
+	 * Rate limited paths and the parameters identifying the account they concern.
+	 */
+	private static final Map<String, List<String>> IDENTIFIER_PARAMETERS = Map.of("/ott/generate", List.of("username"),
+			"/login/ott", List.of(), "/signup", List.of("username", "email"));
+
+	/**
+	 * Longer identifiers are truncated, no username or email address is that long.
+	 */
+	private static final int MAX_IDENTIFIER_LENGTH = 320;
+
+	private final StripedRateLimiter ipRateLimiter;
+
+	private final StripedRateLimiter identifierRateLimiter;
+
+	@Nullable
+	private final PostgresRateLimiter sharedRateLimiter;
+
+	private final RateLimitProps props;
+
+	private final Map<String, Counter> ipRejections;
+
+	private final Map<String, Counter> identifierRejections;
+
+	public RateLimitFilter(RateLimitProps props, @Nullable PostgresRateLimiter sharedRateLimiter,
+			MeterRegistry meterRegistry) {
+		this.ipRateLimiter = new StripedRateLimiter(props.ipCapacity(), props.ipRefillInterval(), props.stripes());
+		this.identifierRateLimiter = new StripedRateLimiter(props.identifierCapacity(),
+				props.identifierRefillInterval(), props.stripes());
+		this.sharedRateLimiter = sharedRateLimiter;
+		this.props = props;
+		this.ipRejections = rejectionCounters("ip", meterRegistry);
+		this.identifierRejections = rejectionCounters("identifier", meterRegistry);
+	}
+
+	private static Map<String, Counter> rejectionCounters(String keyType, MeterRegistry meterRegistry) {
+		return IDENTIFIER_PARAMETERS.keySet()
+			.stream()
+			.collect(Collectors.toUnmodifiableMap(Function.identity(),
+					path -> Counter.builder("rate_limit.rejected")
+						.description("Number of requests rejected by a rate limit")
+						.tag("path", path)
+						.tag("key", keyType)
+						.register(meterRegistry)));
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !HttpMethod.POST.matches(request.getMethod()) || !IDENTIFIER_PARAMETERS.containsKey(path(request));
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		String path = path(request);
+		// The address of the client rather than of a reverse proxy, see RateLimitProps
+		Duration wait = this.tryAcquire("ip", request.getRemoteAddr(), this.ipRateLimiter, this.props.ipCapacity(),
+				this.props.ipRefillInterval(), this.ipRejections.get(path));
+		for (String parameter : IDENTIFIER_PARAMETERS.get(path)) {
+			String identifier = request.getParameter(parameter);
+			if (wait.isZero() && identifier != null && !identifier.isBlank()) {
+				identifier = identifier.strip().toLowerCase(Locale.ROOT);
+				if (identifier.length() > MAX_IDENTIFIER_LENGTH) {
+					identifier = identifier.substring(0, MAX_IDENTIFIER_LENGTH);
+				}
+				wait = this.tryAcquire("identifier", identifier, this.identifierRateLimiter,
+						this.props.identifierCapacity(), this.props.identifierRefillInterval(),
+						this.identifierRejections.get(path));
+			}
+		}
+		if (!wait.isZero()) {
+			long seconds = Math.max(1, (wait.toMillis() + 999) / 1000);
+			response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+			response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(),
+					"Too many requests. Please try again in %d seconds.".formatted(seconds));
+			return;
+		}
+		filterChain.doFilter(request, response);
+	}
+
+	private Duration tryAcquire(String keyType, String key, StripedRateLimiter rateLimiter, int capacity,
+			Duration refillInterval, Counter rejections) {
+		Duration wait = rateLimiter.tryAcquire(key);
+		if (wait.isZero() && this.sharedRateLimiter != null) {
+			wait = this.sharedRateLimiter.tryAcquire(keyType + ":" + key, capacity, refillInterval);
+		}
+		if (!wait.isZero()) {
+			rejections.increment();
+		}
+		return wait;
+	}
+
+	private static String path(HttpServletRequest request) {
+		return request.getRequestURI().substring(request.getContextPath().length());
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.example.softdelete.ratelimit;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Limits of the requests for magic links, their consumption and signups. A limit allows a
+ * burst of {@code capacity} requests and then one request per {@code refillInterval}.
+ * <p>
+ * The client IP address is {@code ServletRequest#getRemoteAddr()}. Behind a reverse proxy
+ * or load balancer that is the address of the proxy, which would put all clients into one
+ * bucket, so {@code server.forward-headers-strategy=native} lets Tomcat take the client
+ * address from {@code X-Forwarded-For} instead. Tomcat only trusts the header on requests
+ * from the proxies matched by {@code server.tomcat.remoteip.internal-proxies}, private
+ * addresses by default, which must match the actual proxies. The proxies must replace
+ * rather than append to a header sent by the client, otherwise clients can pick their
+ * bucket.
+ *
+ * @param enabled whether the requests are rate limited
+ * @param ipCapacity burst of requests allowed per client IP address
+ * @param ipRefillInterval interval at which a client IP address regains one request
+ * @param identifierCapacity burst of requests allowed per submitted username or email
+ * address
+ * @param identifierRefillInterval interval at which a username or email address regains
+ * one request
+ * @param stripes number of buckets per limit, rounded up to a power of two, keys whose
+ * hashes collide share a bucket
+ * @param shared whether the limits are also enforced across the cluster with counters in
+ * PostgreSQL
+ */
+@ConfigurationProperties(prefix = "rate-limit")
+public record RateLimitProps(@DefaultValue("true") boolean enabled, @DefaultValue("30") int ipCapacity,
+		@DefaultValue("1s") Duration ipRefillInterval, @DefaultValue("10") int identifierCapacity,
+		@DefaultValue("6s") Duration identifierRefillInterval, @DefaultValue("16384") int stripes,
+		@DefaultValue("false") boolean shared) {
+
+}
@@ -0,0 +1,84 @@
+package com.example.softdelete.ratelimit;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process token bucket rate limiter based on the generic cell rate algorithm (GCRA).
+ * <p>
+ * Instead of a token count and a refill timestamp, each bucket holds a single value, the
+ * theoretical arrival time of the next request, so a request is admitted with one
+ * compare-and-set and without locks. The buckets are a fixed array indexed by a hash of
+ * the key, which bounds the memory regardless of how many keys are seen and needs no
+ * eviction. Keys whose hashes collide share a bucket, the hash is seeded randomly so that
+ * clients cannot choose keys that collide with the key of another client.
+ */
+public class StripedRateLimiter {
+
+	private final AtomicLongArray theoreticalArrivalTimes;
+
+	private final int mask;
+
+	private final long emissionInterval;
+
+	private final long burstTolerance;
+
+	private final long seed = new SecureRandom().nextLong();
+
+	private final LongSupplier nanoTime;
+
+	private final long origin;
+
+	public StripedRateLimiter(int capacity, Duration refillInterval, int stripes) {
+		this(capacity, refillInterval, stripes, System::nanoTime);
+	}
+
+	StripedRateLimiter(int capacity, Duration refillInterval, int stripes, LongSupplier nanoTime) {
+		int size = stripes > 1 ? 1 << (Integer.SIZE - Integer.numberOfLeadingZeros(stripes - 1)) : 1;
+		this.theoreticalArrivalTimes = new AtomicLongArray(size);
+		this.mask = size - 1;
+		this.emissionInterval = refillInterval.toNanos();
+		this.burstTolerance = this.emissionInterval * (capacity - 1);
+		this.nanoTime = nanoTime;
+		// Empty buckets hold 0, which must not lie in the future
+		this.origin = nanoTime.getAsLong();
+	}
+
+	/**
+	 * Takes a token from the bucket of the key if one is available.
+	 * @return {@link Duration#ZERO} if the request is admitted, otherwise the time after
+	 * which the next request would be
+	 */
+	public Duration tryAcquire(String key) {
+		int stripe = this.stripe(key);
+		long now = this.nanoTime.getAsLong() - this.origin;
+		while (true) {
+			long theoreticalArrivalTime = this.theoreticalArrivalTimes.get(stripe);
+			long start = Math.max(theoreticalArrivalTime, now);
+			long wait = start - now - this.burstTolerance;
+			if (wait > 0) {
+				return Duration.ofNanos(wait);
+			}
+			if (this.theoreticalArrivalTimes.compareAndSet(stripe, theoreticalArrivalTime,
+					start + this.emissionInterval)) {
+				return Duration.ZERO;
+			}
+		}
+	}
+
+	/**
+	 * Seeded FNV-1a, unlike {@link String#hashCode()} keys colliding for one seed do not
+	 * collide for another.
+	 */
+	private int stripe(String key) {
+		long hash = this.seed;
+		for (int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return (int) (hash ^ (hash >>> 32)) & this.mask;
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.example.softdelete.scheduling;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs maintenance jobs on at most one node of the cluster at a time.
+ * <p>
+ * Mutual exclusion is based on a session-level PostgreSQL advisory lock keyed by the job
+ * name. The lock is held on a dedicated connection for the duration of the job and is
+ * released by PostgreSQL automatically if that connection is lost. Nodes that fail to
+ * acquire the lock skip the run instead of waiting for it, so scheduled jobs that fire on
+ * every node at the same time never run concurrently. The lock does not record past
+ * runs, though: a node whose schedule fires after another node finished the job runs it
+ * again, so jobs must be idempotent.
+ */
+@Component
+public class ClusterJobRunner {
+
+	/**
+	 * First key of the two-key advisory lock space reserved for scheduled jobs.
+	 */
+	static final int LOCK_NAMESPACE = 0x6a6f6273; // "jobs"
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final DataSource dataSource;
+
+	public ClusterJobRunner(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	/**
+	 * Runs the job unless another node is currently running a job with the same name.
+	 * @param jobName name identifying the job across the cluster
+	 * @param job the job to run
+	 * @return whether the job was run on this node
+	 */
+	public boolean runExclusively(String jobName, Runnable job) {
+		try (Connection connection = this.dataSource.getConnection()) {
+			if (!tryLock(connection, jobName)) {
+				logger.info("Skipping job '{}' because it is running on another node", jobName);
+				return false;
+			}
+			try {
+				job.run();
+				return true;
+			}
+			finally {
+				unlock(connection, jobName);
+			}
+		}
+		catch (SQLException e) {
+			throw new IllegalStateException("Failed to run job '%s' exclusively".formatted(jobName), e);
+		}
+	}
+
+	private boolean tryLock(Connection connection, String jobName) throws SQLException {
+		return execute(connection, "SELECT pg_try_advisory_lock(?, hashtext(?))", jobName);
+	}
+
+	private void unlock(Connection connection, String jobName) throws SQLException {
+		if (!execute(connection, "SELECT pg_advisory_unlock(?, hashtext(?))", jobName)) {
+			logger.warn("Advisory lock for job '{}' was not held when releasing it", jobName);
+		}
+	}
+
+	private boolean execute(Connection connection, String sql, String jobName) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setInt(1, LOCK_NAMESPACE);
+			statement.setString(2, jobName);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				return resultSet.next() && resultSet.getBoolean(1);
+			}
+		}
+	}
+
+}
@@ -1,29 +1,46 @@
 package com.example.softdelete.security;
 
 import com.example.softdelete.user.ActiveUser;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.UserDetails;
 
+/**
+ * Principal of a signed-in user. It only holds what identifies and authorizes the user,
+ * since it is kept in the HTTP session for as long as the user stays signed in, the full
+ * {@link ActiveUser} is resolved per request by {@link CurrentUser}.
+ */
 public class ActiveUserDetails implements UserDetails {
 
-	private final ActiveUser activeUser;
+	private final long userId;
+
+	private final String username;
 
 	private final List<GrantedAuthority> authorities;
 
 	public ActiveUserDetails(ActiveUser activeUser) {
-		this.activeUser = activeUser;
-		this.authorities = new ArrayList<>(AuthorityUtils.createAuthorityList("ROLE_USER"));
-		if (activeUser.isAdmin()) {
-			this.authorities.addAll(AuthorityUtils.createAuthorityList("ROLE_ADMIN"));
-		}
+		this(activeUser.userId(), activeUser.userProfile().username(), authorities(activeUser));
+	}
+
+	public ActiveUserDetails(long userId, String username, List<GrantedAuthority> authorities) {
+		this.userId = userId;
+		this.username = username;
+		this.authorities = authorities;
 	}
 
-	public ActiveUser getActiveUser() {
-		return this.activeUser;
+	public long getUserId() {
+		return this.userId;
+	}
+
+	/**
+	 * Whether this principal still has the username and roles of the given state of the
+	 * user.
+	 */
+	public boolean isCurrent(ActiveUser activeUser) {
+		return this.userId == activeUser.userId() && this.username.equals(activeUser.userProfile().username())
+				&& this.authorities.equals(authorities(activeUser));
 	}
 
 	@Override
@@ -38,12 +55,18 @@ public class ActiveUserDetails implements UserDetails {
 
 	@Override
 	public String getUsername() {
-		return activeUser.userProfile().username();
+		return this.username;
 	}
 
 	@Override
 	public String toString() {
-		return "ActiveUserDetails{activeUser=%s}".formatted(activeUser);
+		return "ActiveUserDetails{userId=%d, username=%s, authorities=%s}".formatted(this.userId, this.username,
+				this.authorities);
+	}
+
+	private static List<GrantedAuthority> authorities(ActiveUser activeUser) {
+		return activeUser.isAdmin() ? AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN")
+				: AuthorityUtils.createAuthorityList("ROLE_USER");
 	}
 
 }
@@ -0,0 +1,63 @@
+package com.example.softdelete.security;
+
+import com.example.softdelete.user.ActiveUser;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Optional;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+import org.springframework.security.web.authentication.logout.SecurityContextLogoutHandler;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Keeps the {@link ActiveUserDetails} in the session in line with the user. A user that
+ * was deleted or banned since signing in is signed out, and a user whose username or
+ * roles changed, e.g. by being promoted to admin, gets a new principal before the request
+ * is authorized. The user is looked up through {@link CurrentUser}, so a page showing it
+ * reuses the same lookup.
+ */
+public class ActiveUserDetailsRefreshFilter extends OncePerRequestFilter {
+
+	private final CurrentUser currentUser;
+
+	private final SecurityContextHolderStrategy securityContextHolderStrategy = SecurityContextHolder
+		.getContextHolderStrategy();
+
+	private final SecurityContextRepository securityContextRepository = new HttpSessionSecurityContextRepository();
+
+	private final SecurityContextLogoutHandler logoutHandler = new SecurityContextLogoutHandler();
+
+	public ActiveUserDetailsRefreshFilter(CurrentUser currentUser) {
+		this.currentUser = currentUser;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		Authentication authentication = this.securityContextHolderStrategy.getContext().getAuthentication();
+		if (authentication != null && authentication.getPrincipal() instanceof ActiveUserDetails details) {
+			Optional<ActiveUser> activeUser = this.currentUser.find();
+			if (activeUser.isEmpty()) {
+				this.logoutHandler.logout(request, response, authentication);
+			}
+			else if (!details.isCurrent(activeUser.get())) {
+				ActiveUserDetails refreshedDetails = new ActiveUserDetails(activeUser.get());
+				SecurityContext context = this.securityContextHolderStrategy.createEmptyContext();
+				context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(refreshedDetails, null,
+						refreshedDetails.getAuthorities()));
+				this.securityContextHolderStrategy.setContext(context);
+				this.securityContextRepository.saveContext(context, request, response);
+			}
+		}
+		filterChain.doFilter(request, response);
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.example.softdelete.security;
+
+import com.example.softdelete.user.ActiveUser;
+import com.example.softdelete.user.UserCache;
+import java.util.Optional;
+import org.springframework.lang.Nullable;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+/**
+ * The full {@link ActiveUser} behind the {@link ActiveUserDetails} of the current
+ * request, looked up in {@link UserCache} the first time it is needed and kept for the
+ * rest of the request.
+ */
+@Component
+@RequestScope
+public class CurrentUser {
+
+	private final UserCache userCache;
+
+	@Nullable
+	private ActiveUser activeUser;
+
+	public CurrentUser(UserCache userCache) {
+		this.userCache = userCache;
+	}
+
+	/**
+	 * @return the signed-in user, or empty if nobody is signed in or the user is not
+	 * active anymore
+	 */
+	public Optional<ActiveUser> find() {
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		if (authentication == null || !(authentication.getPrincipal() instanceof ActiveUserDetails details)) {
+			return Optional.empty();
+		}
+		if (this.activeUser == null || this.activeUser.userId() != details.getUserId()) {
+			this.activeUser = this.userCache.findUser(details.getUserId())
+				.filter(ActiveUser.class::isInstance)
+				.map(ActiveUser.class::cast)
+				.orElse(null);
+		}
+		return Optional.ofNullable(this.activeUser);
+	}
+
+	public ActiveUser get() {
+		return this.find().orElseThrow(() -> new IllegalStateException("No active user is signed in"));
+	}
+
+}
@@ -2,41 +2,157 @@ package com.example.softdelete.security;
 
 import com.example.softdelete.user.ActiveUser;
 import com.example.softdelete.user.DeletedUser;
+import com.example.softdelete.user.Email;
 import com.example.softdelete.user.PendingUser;
 import com.example.softdelete.user.User;
+import com.example.softdelete.user.UserCacheProps;
+import com.example.softdelete.user.UserChangedEvent;
 import com.example.softdelete.user.UserMapper;
-import java.util.Optional;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+/**
+ * Resolves a username or email address with a single query. Active users are cached by
+ * user id, together with the login identifiers they were resolved by, so that a change to
+ * a user evicts a single entry. Identifiers that do not resolve to any user are
+ * remembered for a short time so that repeated attempts do not reach the database.
+ */
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
 
 	private final UserMapper userMapper;
 
-	public UserDetailsServiceImpl(UserMapper userMapper) {
+	private final Cache<String, Long> userIdCache;
+
+	private final Cache<Long, CachedUserDetails> activeUserDetailsCache;
+
+	private final Cache<String, Boolean> unknownLoginCache;
+
+	private final AtomicLong generation = new AtomicLong();
+
+	public UserDetailsServiceImpl(UserMapper userMapper, UserCacheProps props, MeterRegistry meterRegistry) {
 		this.userMapper = userMapper;
+		this.userIdCache = Caffeine.newBuilder()
+			.maximumSize(props.maximumSize())
+			.expireAfterWrite(props.timeToLive())
+			.build();
+		this.activeUserDetailsCache = Caffeine.newBuilder()
+			.maximumSize(props.maximumSize())
+			.expireAfterWrite(props.timeToLive())
+			.recordStats()
+			.build();
+		this.unknownLoginCache = Caffeine.newBuilder()
+			.maximumSize(props.unknownLoginMaximumSize())
+			.expireAfterWrite(props.unknownLoginTimeToLive())
+			.recordStats()
+			.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, this.activeUserDetailsCache, "activeUserDetails");
+		CaffeineCacheMetrics.monitor(meterRegistry, this.unknownLoginCache, "unknownLogins");
 	}
 
 	@Override
 	@Transactional(readOnly = true)
 	public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-		Optional<Long> userIdOptional = username.contains("@") ? userMapper.findUserIdByEmail(username)
-				: userMapper.findUserIdByUsername(username);
-		long userId = userIdOptional.orElseThrow(() -> usernameNotFoundException(username));
-		User user = this.userMapper.findUser(userId).orElseThrow(() -> usernameNotFoundException(username));
+		ActiveUserDetails cached = this.findCachedUserDetails(username);
+		if (cached != null) {
+			return cached;
+		}
+		if (this.unknownLoginCache.getIfPresent(username) != null) {
+			throw usernameNotFoundException(username);
+		}
+		long generation = this.generation.get();
+		User user = this.userMapper.findUserByLoginIdentifier(username).orElse(null);
 		return switch (user) {
-			case ActiveUser activeUser -> new ActiveUserDetails(activeUser);
+			case null -> {
+				putIfUnchanged(this.unknownLoginCache, username, Boolean.TRUE, generation);
+				throw usernameNotFoundException(username);
+			}
+			case ActiveUser activeUser -> {
+				ActiveUserDetails activeUserDetails = new ActiveUserDetails(activeUser);
+				this.userIdCache.put(username, activeUser.userId());
+				putIfUnchanged(this.activeUserDetailsCache, activeUser.userId(),
+						new CachedUserDetails(activeUserDetails, loginIdentifiers(activeUser)), generation);
+				yield activeUserDetails;
+			}
 			case PendingUser pendingUser -> new PendingUserDetails(pendingUser);
 			case DeletedUser ignored -> throw usernameNotFoundException(username);
 		};
 	}
 
+	/**
+	 * The user id cache may still map an identifier the user no longer has, e.g. a
+	 * removed email address, so the cached user must still own the identifier.
+	 */
+	@Nullable
+	private ActiveUserDetails findCachedUserDetails(String loginIdentifier) {
+		Long userId = this.userIdCache.getIfPresent(loginIdentifier);
+		if (userId == null) {
+			return null;
+		}
+		CachedUserDetails cached = this.activeUserDetailsCache.getIfPresent(userId);
+		return cached != null && cached.loginIdentifiers().contains(loginIdentifier) ? cached.userDetails() : null;
+	}
+
+	private static Set<String> loginIdentifiers(ActiveUser activeUser) {
+		return Stream
+			.concat(Stream.of(activeUser.userProfile().username()), activeUser.emails().stream().map(Email::email))
+			.collect(Collectors.toUnmodifiableSet());
+	}
+
+	/**
+	 * Caches the loaded value unless a {@link UserChangedEvent} arrived while it was
+	 * being loaded, in which case it may already be stale.
+	 */
+	private <K, V> void putIfUnchanged(Cache<K, V> cache, K key, V value, long generation) {
+		cache.asMap().compute(key, (k, current) -> this.generation.get() == generation ? value : current);
+	}
+
+	@EventListener
+	void onUserChanged(UserChangedEvent event) {
+		this.evict(event);
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION)
+	void afterUserChanged(UserChangedEvent event) {
+		this.evict(event);
+	}
+
+	private void evict(UserChangedEvent event) {
+		// Must precede the removal so that concurrent loads cannot put stale values back
+		this.generation.incrementAndGet();
+		if (event.isAll()) {
+			this.activeUserDetailsCache.invalidateAll();
+		}
+		else {
+			this.activeUserDetailsCache.invalidate(event.userId());
+		}
+		// Only a new username or email address can turn a remembered unknown identifier
+		// into a known one
+		if (event.addsLoginIdentifier()) {
+			this.unknownLoginCache.invalidateAll();
+		}
+	}
+
 	UsernameNotFoundException usernameNotFoundException(String username) {
 		return new UsernameNotFoundException(username + " is not found");
 	}
 
+	private record CachedUserDetails(ActiveUserDetails userDetails, Set<String> loginIdentifiers) {
+	}
+
 }
@@ -0,0 +1,415 @@
+package com.example.softdelete.session;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.lang.Nullable;
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+/**
+ * Keeps HTTP sessions in the {@code http_sessions} table so that any node can serve any
+ * request and sessions survive restarts.
+ * <p>
+ * Sessions are written only when something changed. A session whose id, attributes or
+ * timeout changed is written through before the response is committed, so that the next
+ * request finds it on whichever node it arrives. A request that only read the session
+ * merely advances its last access time, which is written once it moved by
+ * {@link SessionProps#touchInterval()} and then buffered and flushed for all sessions in
+ * a single statement every {@link SessionProps#flushInterval()}. Expired sessions are
+ * deleted in bulk by {@link SessionHouseKeeper}.
+ */
+public class JdbcSessionRepository implements SessionRepository<JdbcSessionRepository.JdbcSession>, SmartLifecycle {
+
+	private final JdbcClient jdbcClient;
+
+	private final SessionAttributesCodec codec;
+
+	private final SessionProps props;
+
+	private final Duration maxInactiveInterval;
+
+	private final Clock clock;
+
+	/**
+	 * Last access times waiting to be flushed by session id.
+	 */
+	private final Map<String, Instant> pendingTouches = new ConcurrentHashMap<>();
+
+	private final Counter createdCounter;
+
+	private final Counter changedCounter;
+
+	private final Counter touchedCounter;
+
+	private final Semaphore wakeUp = new Semaphore(0);
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private volatile boolean running = false;
+
+	private Thread thread;
+
+	public JdbcSessionRepository(JdbcClient jdbcClient, SessionAttributesCodec codec, SessionProps props,
+			Duration maxInactiveInterval, Clock clock, MeterRegistry meterRegistry) {
+		this.jdbcClient = jdbcClient;
+		this.codec = codec;
+		this.props = props;
+		this.maxInactiveInterval = maxInactiveInterval;
+		this.clock = clock;
+		this.createdCounter = writesCounter("created", meterRegistry);
+		this.changedCounter = writesCounter("changed", meterRegistry);
+		this.touchedCounter = writesCounter("touched", meterRegistry);
+	}
+
+	private static Counter writesCounter(String kind, MeterRegistry meterRegistry) {
+		return Counter.builder("http_sessions.writes")
+			.description("Number of HTTP sessions written to the database")
+			.tag("kind", kind)
+			.register(meterRegistry);
+	}
+
+	@Override
+	public JdbcSession createSession() {
+		MapSession session = new MapSession();
+		session.setCreationTime(this.clock.instant());
+		session.setLastAccessedTime(session.getCreationTime());
+		session.setMaxInactiveInterval(this.maxInactiveInterval);
+		return new JdbcSession(session, null, null, this.clock);
+	}
+
+	@Override
+	public void save(JdbcSession session) {
+		byte[] attributes = this.codec.encode(session.attributes());
+		if (session.storedId == null) {
+			this.jdbcClient
+				.sql("""
+						INSERT INTO http_sessions (session_id, creation_time, last_accessed_time, max_inactive_interval,
+						    expiry_time, attributes)
+						VALUES (:sessionId, :creationTime, :lastAccessedTime, :maxInactiveInterval, :expiryTime, :attributes)
+						""")
+				.param("sessionId", session.getId())
+				.param("creationTime", toOffsetDateTime(session.getCreationTime()))
+				.param("lastAccessedTime", toOffsetDateTime(session.getLastAccessedTime()))
+				.param("maxInactiveInterval", Math.toIntExact(session.getMaxInactiveInterval().toSeconds()))
+				.param("expiryTime", toOffsetDateTime(session.expiryTime()))
+				.param("attributes", attributes)
+				.update();
+			this.createdCounter.increment();
+		}
+		else if (!session.getId().equals(session.storedId) || !Arrays.equals(attributes, session.storedAttributes)
+				|| !session.getMaxInactiveInterval().equals(session.storedMaxInactiveInterval)) {
+			this.jdbcClient
+				.sql("""
+						UPDATE http_sessions
+						SET session_id = :sessionId, last_accessed_time = :lastAccessedTime,
+						    max_inactive_interval = :maxInactiveInterval, expiry_time = :expiryTime, attributes = :attributes
+						WHERE session_id = :storedId
+						""")
+				.param("sessionId", session.getId())
+				.param("lastAccessedTime", toOffsetDateTime(session.getLastAccessedTime()))
+				.param("maxInactiveInterval", Math.toIntExact(session.getMaxInactiveInterval().toSeconds()))
+				.param("expiryTime", toOffsetDateTime(session.expiryTime()))
+				.param("attributes", attributes)
+				.param("storedId", session.storedId)
+				.update();
+			this.pendingTouches.remove(session.storedId);
+			this.changedCounter.increment();
+		}
+		else if (!session.getLastAccessedTime()
+			.isBefore(session.storedLastAccessedTime.plus(this.props.touchInterval()))) {
+			this.pendingTouches.merge(session.getId(), session.getLastAccessedTime(),
+					(pending, touched) -> pending.isAfter(touched) ? pending : touched);
+			this.touchedCounter.increment();
+		}
+		else {
+			return;
+		}
+		session.stored(attributes);
+	}
+
+	@Override
+	@Nullable
+	public JdbcSession findById(String id) {
+		JdbcSession session = this.jdbcClient.sql("""
+				SELECT creation_time, last_accessed_time, max_inactive_interval, attributes
+				FROM http_sessions
+				WHERE session_id = :sessionId
+				""").param("sessionId", id).query((rs, rowNum) -> {
+			MapSession mapSession = new MapSession(id);
+			mapSession.setCreationTime(rs.getObject("creation_time", OffsetDateTime.class).toInstant());
+			mapSession.setLastAccessedTime(rs.getObject("last_accessed_time", OffsetDateTime.class).toInstant());
+			mapSession.setMaxInactiveInterval(Duration.ofSeconds(rs.getInt("max_inactive_interval")));
+			return new JdbcSession(mapSession, id, rs.getBytes("attributes"), this.clock);
+		}).optional().orElse(null);
+		if (session == null) {
+			return null;
+		}
+		try {
+			this.codec.decode(session.storedAttributes).forEach(session.delegate::setAttribute);
+		}
+		catch (RuntimeException e) {
+			// E.g. a serialized class changed incompatibly, the user has to sign in again
+			logger.warn("Discarding session that cannot be decoded", e);
+			this.deleteById(id);
+			return null;
+		}
+		Instant pendingTouch = this.pendingTouches.get(id);
+		if (pendingTouch != null && pendingTouch.isAfter(session.getLastAccessedTime())) {
+			session.delegate.setLastAccessedTime(pendingTouch);
+		}
+		if (session.isExpired()) {
+			this.deleteById(id);
+			return null;
+		}
+		return session;
+	}
+
+	@Override
+	public void deleteById(String id) {
+		this.pendingTouches.remove(id);
+		this.jdbcClient.sql("DELETE FROM http_sessions WHERE session_id = :sessionId").param("sessionId", id).update();
+	}
+
+	/**
+	 * Writes the buffered last access times in a single statement. A time older than the
+	 * stored one, e.g. because another node served a later request, is ignored.
+	 * @return the number of updated sessions
+	 */
+	int flush() {
+		Map<String, Instant> touches = new HashMap<>();
+		for (String sessionId : Set.copyOf(this.pendingTouches.keySet())) {
+			Instant touch = this.pendingTouches.remove(sessionId);
+			if (touch != null) {
+				touches.put(sessionId, touch);
+			}
+		}
+		if (touches.isEmpty()) {
+			return 0;
+		}
+		return this.jdbcClient.sql("""
+				UPDATE http_sessions AS s
+				SET last_accessed_time = t.last_accessed_time,
+				    expiry_time = t.last_accessed_time + make_interval(secs => s.max_inactive_interval)
+				FROM unnest(:sessionIds::text[], :lastAccessedTimes::timestamptz[]) AS t(session_id, last_accessed_time)
+				WHERE s.session_id = t.session_id AND s.last_accessed_time < t.last_accessed_time
+				""")
+			.param("sessionIds", touches.keySet().toArray(String[]::new))
+			.param("lastAccessedTimes", touches.values().stream().map(Instant::toString).toArray(String[]::new))
+			.update();
+	}
+
+	/**
+	 * Deletes up to {@code limit} sessions that expired before {@code now}. Rows locked
+	 * by a concurrent write are skipped.
+	 * @return the number of deleted sessions
+	 */
+	public int deleteExpiredSessions(Instant now, int limit) {
+		return this.jdbcClient.sql("""
+				WITH expired AS MATERIALIZED (
+				    SELECT session_id FROM http_sessions
+				    WHERE expiry_time < :now
+				    ORDER BY expiry_time
+				    LIMIT :limit
+				    FOR UPDATE SKIP LOCKED
+				)
+				DELETE FROM http_sessions WHERE session_id IN (SELECT session_id FROM expired)
+				""").param("now", toOffsetDateTime(now)).param("limit", limit).update();
+	}
+
+	@Override
+	public void start() {
+		this.running = true;
+		this.thread = Thread.ofVirtual().name("http-session-flusher").start(this::run);
+	}
+
+	@Override
+	public void stop() {
+		this.running = false;
+		this.wakeUp.release();
+		try {
+			this.thread.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// Touches buffered while the thread was finishing its last flush
+		this.flushQuietly();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	/**
+	 * Stops after the web server, so that the last access times of the final requests are
+	 * flushed.
+	 */
+	@Override
+	public int getPhase() {
+		return SmartLifecycle.DEFAULT_PHASE - 4096;
+	}
+
+	private void run() {
+		while (this.running) {
+			try {
+				this.wakeUp.tryAcquire(this.props.flushInterval().toMillis(), TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			this.flushQuietly();
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			this.flush();
+		}
+		catch (RuntimeException e) {
+			logger.warn("Failed to flush the last access times of HTTP sessions", e);
+		}
+	}
+
+	private static OffsetDateTime toOffsetDateTime(Instant instant) {
+		return instant.atOffset(ZoneOffset.UTC);
+	}
+
+	/**
+	 * Session that remembers its stored state, so that saving it writes only what
+	 * changed.
+	 */
+	public static final class JdbcSession implements Session {
+
+		private final MapSession delegate;
+
+		@Nullable
+		private String storedId;
+
+		@Nullable
+		private byte[] storedAttributes;
+
+		private Instant storedLastAccessedTime;
+
+		private Duration storedMaxInactiveInterval;
+
+		private final Clock clock;
+
+		JdbcSession(MapSession delegate, @Nullable String storedId, @Nullable byte[] storedAttributes, Clock clock) {
+			this.delegate = delegate;
+			this.clock = clock;
+			this.storedId = storedId;
+			this.storedAttributes = storedAttributes;
+			this.storedLastAccessedTime = delegate.getLastAccessedTime();
+			this.storedMaxInactiveInterval = delegate.getMaxInactiveInterval();
+		}
+
+		private void stored(byte[] attributes) {
+			this.storedId = this.delegate.getId();
+			this.storedAttributes = attributes;
+			this.storedLastAccessedTime = this.delegate.getLastAccessedTime();
+			this.storedMaxInactiveInterval = this.delegate.getMaxInactiveInterval();
+		}
+
+		/**
+		 * The attributes sorted by name, so that unchanged attributes encode to the same
+		 * bytes.
+		 */
+		private Map<String, Object> attributes() {
+			Map<String, Object> attributes = new TreeMap<>();
+			for (String attributeName : this.delegate.getAttributeNames()) {
+				attributes.put(attributeName, this.delegate.getAttribute(attributeName));
+			}
+			return attributes;
+		}
+
+		private Instant expiryTime() {
+			return this.getLastAccessedTime().plus(this.getMaxInactiveInterval());
+		}
+
+		@Override
+		public String getId() {
+			return this.delegate.getId();
+		}
+
+		@Override
+		public String changeSessionId() {
+			return this.delegate.changeSessionId();
+		}
+
+		@Override
+		@Nullable
+		public <T> T getAttribute(String attributeName) {
+			return this.delegate.getAttribute(attributeName);
+		}
+
+		@Override
+		public Set<String> getAttributeNames() {
+			return this.delegate.getAttributeNames();
+		}
+
+		@Override
+		public void setAttribute(String attributeName, Object attributeValue) {
+			this.delegate.setAttribute(attributeName, attributeValue);
+		}
+
+		@Override
+		public void removeAttribute(String attributeName) {
+			this.delegate.removeAttribute(attributeName);
+		}
+
+		@Override
+		public Instant getCreationTime() {
+			return this.delegate.getCreationTime();
+		}
+
+		@Override
+		public void setLastAccessedTime(Instant lastAccessedTime) {
+			this.delegate.setLastAccessedTime(lastAccessedTime);
+		}
+
+		@Override
+		public Instant getLastAccessedTime() {
+			return this.delegate.getLastAccessedTime();
+		}
+
+		@Override
+		public void setMaxInactiveInterval(Duration interval) {
+			this.delegate.setMaxInactiveInterval(interval);
+		}
+
+		@Override
+		public Duration getMaxInactiveInterval() {
+			return this.delegate.getMaxInactiveInterval();
+		}
+
+		/**
+		 * Uses the clock of the repository, like the lookup and the purge.
+		 */
+		@Override
+		public boolean isExpired() {
+			return !this.clock.instant().isBefore(this.expiryTime());
+		}
+
+	}
+
+}
@@ -0,0 +1,220 @@
+package com.example.softdelete.session;
+
+import com.example.softdelete.security.ActiveUserDetails;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.WebAttributes;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+import org.springframework.security.web.csrf.HttpSessionCsrfTokenRepository;
+import org.springframework.web.servlet.support.SessionFlashMapManager;
+
+/**
+ * Compact binary encoding of session attributes.
+ * <p>
+ * The attributes present in nearly every session, the security context of a signed-in
+ * user and the CSRF token, are written field by field, and well-known attribute names as
+ * a single byte. A signed-in session thus takes about a hundred bytes instead of the
+ * kilobytes of their Java serialization. Any other value, e.g. a saved request or flash
+ * attributes, falls back to Java serialization.
+ */
+class SessionAttributesCodec {
+
+	private static final int VERSION = 1;
+
+	/**
+	 * Attribute names written as their index, which must therefore never be reordered.
+	 */
+	private static final List<String> KNOWN_NAMES = List.of(
+			HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY,
+			HttpSessionCsrfTokenRepository.class.getName() + ".CSRF_TOKEN", "SPRING_SECURITY_SAVED_REQUEST",
+			WebAttributes.AUTHENTICATION_EXCEPTION, SessionFlashMapManager.class.getName() + ".FLASH_MAPS");
+
+	private static final int SERIALIZED = 0;
+
+	private static final int STRING = 1;
+
+	private static final int BOOLEAN = 2;
+
+	private static final int INTEGER = 3;
+
+	private static final int LONG = 4;
+
+	private static final int SECURITY_CONTEXT = 5;
+
+	private static final int CSRF_TOKEN = 6;
+
+	private final SerializingConverter serializer = new SerializingConverter();
+
+	private final DeserializingConverter deserializer = new DeserializingConverter();
+
+	byte[] encode(Map<String, Object> attributes) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(VERSION);
+			writeVarInt(out, attributes.size());
+			for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+				int knownName = KNOWN_NAMES.indexOf(attribute.getKey());
+				out.writeByte(knownName + 1);
+				if (knownName < 0) {
+					writeString(out, attribute.getKey());
+				}
+				this.writeValue(out, attribute.getValue());
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	Map<String, Object> decode(byte[] encoded) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+			int version = in.readUnsignedByte();
+			if (version != VERSION) {
+				throw new IllegalArgumentException("Unsupported session format version " + version);
+			}
+			int size = readVarInt(in);
+			Map<String, Object> attributes = new LinkedHashMap<>(size * 2);
+			for (int i = 0; i < size; i++) {
+				int knownName = in.readUnsignedByte() - 1;
+				String name = knownName < 0 ? readString(in) : KNOWN_NAMES.get(knownName);
+				attributes.put(name, this.readValue(in));
+			}
+			return attributes;
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void writeValue(DataOutputStream out, Object value) throws IOException {
+		switch (value) {
+			case String string -> {
+				out.writeByte(STRING);
+				writeString(out, string);
+			}
+			case Boolean bool -> {
+				out.writeByte(BOOLEAN);
+				out.writeBoolean(bool);
+			}
+			case Integer integer -> {
+				out.writeByte(INTEGER);
+				out.writeInt(integer);
+			}
+			case Long number -> {
+				out.writeByte(LONG);
+				out.writeLong(number);
+			}
+			case SecurityContext context when context.getAuthentication() != null
+					&& context.getAuthentication().getPrincipal() instanceof ActiveUserDetails details -> {
+				// Credentials and request details are not needed after signing in
+				out.writeByte(SECURITY_CONTEXT);
+				writeVarLong(out, details.getUserId());
+				writeString(out, details.getUsername());
+				writeVarInt(out, details.getAuthorities().size());
+				for (GrantedAuthority authority : details.getAuthorities()) {
+					writeString(out, authority.getAuthority());
+				}
+			}
+			case DefaultCsrfToken token -> {
+				out.writeByte(CSRF_TOKEN);
+				writeString(out, token.getHeaderName());
+				writeString(out, token.getParameterName());
+				writeString(out, token.getToken());
+			}
+			default -> {
+				byte[] serialized = this.serializer.convert(value);
+				out.writeByte(SERIALIZED);
+				writeVarInt(out, serialized.length);
+				out.write(serialized);
+			}
+		}
+	}
+
+	private Object readValue(DataInputStream in) throws IOException {
+		int type = in.readUnsignedByte();
+		return switch (type) {
+			case STRING -> readString(in);
+			case BOOLEAN -> in.readBoolean();
+			case INTEGER -> in.readInt();
+			case LONG -> in.readLong();
+			case SECURITY_CONTEXT -> {
+				long userId = readVarLong(in);
+				String username = readString(in);
+				int size = readVarInt(in);
+				List<GrantedAuthority> authorities = new ArrayList<>(size);
+				for (int i = 0; i < size; i++) {
+					authorities.add(new SimpleGrantedAuthority(readString(in)));
+				}
+				ActiveUserDetails details = new ActiveUserDetails(userId, username, authorities);
+				Authentication authentication = UsernamePasswordAuthenticationToken.authenticated(details, null,
+						authorities);
+				yield new SecurityContextImpl(authentication);
+			}
+			case CSRF_TOKEN -> new DefaultCsrfToken(readString(in), readString(in), readString(in));
+			case SERIALIZED -> this.deserializer.convert(in.readNBytes(readVarInt(in)));
+			default -> throw new IllegalArgumentException("Unknown session attribute type " + type);
+		};
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return new String(in.readNBytes(readVarInt(in)), StandardCharsets.UTF_8);
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		writeVarLong(out, Integer.toUnsignedLong(value));
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		return Math.toIntExact(readVarLong(in));
+	}
+
+	/**
+	 * Writes seven bits per byte, least significant first, so small numbers such as
+	 * lengths and user ids take one to three bytes.
+	 */
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < Long.SIZE; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed variable-length number");
+	}
+
+}
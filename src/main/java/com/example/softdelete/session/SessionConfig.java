@@ -0,0 +1,27 @@
+package com.example.softdelete.session;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.session.SessionProperties;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "session", name = "store", havingValue = "jdbc", matchIfMissing = true)
+@EnableSpringHttpSession
+class SessionConfig {
+
+	@Bean
+	JdbcSessionRepository jdbcSessionRepository(JdbcClient jdbcClient, SessionProps props,
+			SessionProperties sessionProperties, ServerProperties serverProperties, Clock clock,
+			MeterRegistry meterRegistry) {
+		return new JdbcSessionRepository(jdbcClient, new SessionAttributesCodec(), props,
+				sessionProperties.determineTimeout(() -> serverProperties.getServlet().getSession().getTimeout()),
+				clock, meterRegistry);
+	}
+
+}
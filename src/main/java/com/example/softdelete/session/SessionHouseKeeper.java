@@ -0,0 +1,80 @@
+package com.example.softdelete.session;
+
+import com.example.softdelete.scheduling.ClusterJobRunner;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Clock;
+import java.time.Instant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Purges expired HTTP sessions. Each chunk is deleted by its own statement through the
+ * index on {@code expiry_time}, so a run never holds many row locks or blocks requests
+ * for long.
+ */
+@Component
+@ConditionalOnProperty(prefix = "session", name = "store", havingValue = "jdbc", matchIfMissing = true)
+public class SessionHouseKeeper {
+
+	private final JdbcSessionRepository sessionRepository;
+
+	private final ClusterJobRunner clusterJobRunner;
+
+	private final SessionProps props;
+
+	private final Clock clock;
+
+	private final Counter purgedCounter;
+
+	private final Timer purgeTimer;
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	public SessionHouseKeeper(JdbcSessionRepository sessionRepository, ClusterJobRunner clusterJobRunner,
+			SessionProps props, Clock clock, MeterRegistry meterRegistry) {
+		this.sessionRepository = sessionRepository;
+		this.clusterJobRunner = clusterJobRunner;
+		this.props = props;
+		this.clock = clock;
+		this.purgedCounter = Counter.builder("http_sessions.purged")
+			.description("Number of expired HTTP sessions purged")
+			.register(meterRegistry);
+		this.purgeTimer = Timer.builder("http_sessions.purge")
+			.description("Duration of a full purge of expired HTTP sessions")
+			.register(meterRegistry);
+	}
+
+	@Scheduled(cron = "0 */10 * * * *")
+	public void cleanUpSessions() {
+		this.clusterJobRunner.runExclusively("http-session-house-keeper", this::purgeExpiredSessions);
+	}
+
+	/**
+	 * Purges expired sessions in chunks until none that expired before the start of the
+	 * run are left. Sessions locked by a concurrent save are skipped rather than waited
+	 * for, so a chunk may come back short while more expired sessions remain; the run
+	 * therefore only ends on an empty chunk. Skipped sessions are purged by the next run.
+	 */
+	void purgeExpiredSessions() {
+		Instant now = this.clock.instant();
+		int chunkSize = this.props.purgeChunkSize();
+		int purged = this.purgeTimer.record(() -> {
+			int total = 0;
+			int deleted;
+			do {
+				deleted = this.sessionRepository.deleteExpiredSessions(now, chunkSize);
+				this.purgedCounter.increment(deleted);
+				total += deleted;
+			}
+			while (deleted > 0);
+			return total;
+		});
+		logger.info("Purged {} expired HTTP sessions", purged);
+	}
+
+}
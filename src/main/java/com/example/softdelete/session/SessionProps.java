@@ -0,0 +1,31 @@
+package com.example.softdelete.session;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * The session timeout is configured by {@code server.servlet.session.timeout} or
+ * {@code spring.session.timeout} as usual.
+ *
+ * @param store where HTTP sessions are kept, {@code servlet} keeps them in the heap of
+ * the servlet container, which requires sticky sessions and loses them on restart
+ * @param touchInterval how far the last access time of an otherwise unchanged session
+ * must have advanced before it is written again, sessions may therefore expire up to this
+ * much earlier than configured
+ * @param flushInterval how often the buffered last access times are written to the
+ * database
+ * @param purgeChunkSize number of expired sessions deleted per statement by
+ * {@link SessionHouseKeeper}
+ */
+@ConfigurationProperties(prefix = "session")
+public record SessionProps(@DefaultValue("jdbc") Store store, @DefaultValue("1m") Duration touchInterval,
+		@DefaultValue("1s") Duration flushInterval, @DefaultValue("1000") int purgeChunkSize) {
+
+	public enum Store {
+
+		JDBC, SERVLET
+
+	}
+
+}
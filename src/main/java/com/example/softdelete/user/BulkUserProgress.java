@@ -0,0 +1,21 @@
+package com.example.softdelete.user;
+
+/**
+ * Progress of a bulk operation, reported after every chunk.
+ *
+ * @param requested number of distinct user ids requested
+ * @param processed number of requested user ids processed so far
+ * @param changed number of processed users that were banned or deleted, the others were
+ * not active
+ */
+public record BulkUserProgress(int requested, int processed, int changed) {
+
+	public int skipped() {
+		return this.processed - this.changed;
+	}
+
+	public boolean isDone() {
+		return this.processed == this.requested;
+	}
+
+}
@@ -0,0 +1,12 @@
+package com.example.softdelete.user;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param chunkSize number of users banned or deleted per transaction by a bulk operation
+ */
+@ConfigurationProperties(prefix = "user.bulk")
+public record BulkUserProps(@DefaultValue("500") int chunkSize) {
+
+}
@@ -0,0 +1,144 @@
+package com.example.softdelete.user;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Clock;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Bans or deletes many active users at once. The users are processed in chunks of
+ * ascending ids, each in its own transaction that moves the whole chunk to the deleted
+ * users with a fixed number of statements. Ids of users that are not active are skipped,
+ * so a failed run can simply be repeated.
+ */
+@Service
+public class BulkUserService {
+
+	private final UserMapper userMapper;
+
+	private final UserBanEventMapper userBanEventMapper;
+
+	private final UserDeletionEventMapper userDeletionEventMapper;
+
+	private final ApplicationEventPublisher eventPublisher;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final BulkUserProps props;
+
+	private final Clock clock;
+
+	private final MeterRegistry meterRegistry;
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	public BulkUserService(UserMapper userMapper, UserBanEventMapper userBanEventMapper,
+			UserDeletionEventMapper userDeletionEventMapper, ApplicationEventPublisher eventPublisher,
+			TransactionTemplate transactionTemplate, BulkUserProps props, Clock clock, MeterRegistry meterRegistry) {
+		this.userMapper = userMapper;
+		this.userBanEventMapper = userBanEventMapper;
+		this.userDeletionEventMapper = userDeletionEventMapper;
+		this.eventPublisher = eventPublisher;
+		this.transactionTemplate = transactionTemplate;
+		this.props = props;
+		this.clock = clock;
+		this.meterRegistry = meterRegistry;
+	}
+
+	public BulkUserProgress banUsers(Collection<Long> userIds, long adminUserId, String banReason,
+			Consumer<BulkUserProgress> progressListener) {
+		return this.run("ban", userIds, progressListener, chunk -> {
+			List<ActiveUser> activeUsers = this.deleteActiveUsers(chunk);
+			if (!activeUsers.isEmpty()) {
+				OffsetDateTime now = OffsetDateTime.now(this.clock);
+				this.userBanEventMapper.insertUserBanEvents(activeUsers.stream()
+					.map(activeUser -> new UserBanEvent(activeUser.userId(), adminUserId, userInfo(activeUser),
+							banReason, now))
+					.toList());
+			}
+			return activeUsers.size();
+		});
+	}
+
+	public BulkUserProgress deleteUsers(Collection<Long> userIds, Consumer<BulkUserProgress> progressListener) {
+		return this.run("delete", userIds, progressListener, chunk -> {
+			List<ActiveUser> activeUsers = this.deleteActiveUsers(chunk);
+			if (!activeUsers.isEmpty()) {
+				OffsetDateTime now = OffsetDateTime.now(this.clock);
+				this.userDeletionEventMapper.insertUserDeletionEvents(activeUsers.stream()
+					.map(activeUser -> new UserDeletionEvent(activeUser.userId(), userInfo(activeUser), now))
+					.toList());
+			}
+			return activeUsers.size();
+		});
+	}
+
+	private BulkUserProgress run(String operation, Collection<Long> userIds,
+			Consumer<BulkUserProgress> progressListener, Function<List<Long>, Integer> chunkOperation) {
+		List<Long> ids = List.copyOf(new TreeSet<>(userIds));
+		int chunkSize = this.props.chunkSize();
+		Counter changedCounter = Counter.builder("users.bulk.changed")
+			.description("Number of users banned or deleted by bulk operations")
+			.tag("operation", operation)
+			.register(this.meterRegistry);
+		Timer timer = Timer.builder("users.bulk")
+			.description("Duration of bulk operations on users")
+			.tag("operation", operation)
+			.register(this.meterRegistry);
+		logger.info("Starting bulk {} of {} users", operation, ids.size());
+		BulkUserProgress result = timer.record(() -> {
+			BulkUserProgress progress = new BulkUserProgress(ids.size(), 0, 0);
+			for (int from = 0; from < ids.size(); from += chunkSize) {
+				List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+				Integer changed = this.transactionTemplate.execute(status -> chunkOperation.apply(chunk));
+				changedCounter.increment(changed);
+				progress = new BulkUserProgress(ids.size(), progress.processed() + chunk.size(),
+						progress.changed() + changed);
+				logger.info("Bulk {}: processed {} of {} users, changed {}", operation, progress.processed(),
+						progress.requested(), progress.changed());
+				progressListener.accept(progress);
+			}
+			return progress;
+		});
+		logger.info("Finished bulk {}: changed {} of {} users, skipped {}", operation, result.changed(),
+				result.requested(), result.skipped());
+		return result;
+	}
+
+	/**
+	 * Locks the active users of the chunk, takes their snapshots and moves them to the
+	 * deleted users.
+	 */
+	private List<ActiveUser> deleteActiveUsers(List<Long> chunk) {
+		List<Long> lockedUserIds = this.userMapper.lockActiveUsers(chunk);
+		if (lockedUserIds.isEmpty()) {
+			return List.of();
+		}
+		List<ActiveUser> activeUsers = this.userMapper.findUsers(lockedUserIds)
+			.stream()
+			.filter(ActiveUser.class::isInstance)
+			.map(ActiveUser.class::cast)
+			.toList();
+		this.userMapper.deleteActiveUsers(lockedUserIds);
+		lockedUserIds.forEach(userId -> this.eventPublisher.publishEvent(new UserChangedEvent(userId)));
+		return activeUsers;
+	}
+
+	private static Map<String, Object> userInfo(ActiveUser activeUser) {
+		return Map.of("username", activeUser.userProfile().username(), "displayName",
+				activeUser.userProfile().displayName(), "emails", activeUser.emails());
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.example.softdelete.user;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.sql.Array;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.lang.Nullable;
+
+/**
+ * Decodes the {@code emails} JSON array built by the user queries, e.g. {@code [{"email":
+ * "a@example.com", "isPrimary": true}]}, with the streaming parser.
+ * <p>
+ * This avoids resolving {@code List<Email>} and instantiating the record reflectively for
+ * every row, which dominated the cost of mapping user rows. Fields may come in any order,
+ * unknown fields are skipped and a missing {@code isPrimary} means {@code false}. Anything
+ * else that does not match the expected shape, including {@code null}, raises a
+ * {@link JsonParseException} rather than returning the emails read so far.
+ */
+class EmailsReader {
+
+	private final JsonFactory jsonFactory;
+
+	EmailsReader(JsonFactory jsonFactory) {
+		this.jsonFactory = jsonFactory;
+	}
+
+	List<Email> read(@Nullable String json) throws IOException {
+		if (json == null) {
+			throw new JsonParseException(null, "Expected an array of emails, but got null");
+		}
+		try (JsonParser parser = this.jsonFactory.createParser(json)) {
+			if (parser.nextToken() != JsonToken.START_ARRAY) {
+				throw new JsonParseException(parser, "Expected an array of emails");
+			}
+			List<Email> emails = new ArrayList<>(2);
+			while (parser.nextToken() == JsonToken.START_OBJECT) {
+				String email = null;
+				boolean isPrimary = false;
+				String fieldName;
+				while ((fieldName = parser.nextFieldName()) != null) {
+					switch (fieldName) {
+						case "email" -> email = parser.nextTextValue();
+						case "isPrimary" -> isPrimary = parser.nextBooleanValue() == Boolean.TRUE;
+						default -> {
+							parser.nextToken();
+							parser.skipChildren();
+						}
+					}
+				}
+				if (email == null) {
+					throw new JsonParseException(parser, "Expected an email address");
+				}
+				emails.add(new Email(email, isPrimary));
+			}
+			if (parser.currentToken() != JsonToken.END_ARRAY) {
+				throw new JsonParseException(parser, "Expected an email object");
+			}
+			if (parser.nextToken() != null) {
+				throw new JsonParseException(parser, "Unexpected content after the array of emails");
+			}
+			return emails;
+		}
+	}
+
+	static List<Email> read(Array addresses, Array primaryFlags) throws SQLException {
+		// The driver returns String[] and Boolean[], other Array implementations may not
+		Object[] emails = (Object[]) addresses.getArray();
+		Object[] isPrimary = (Object[]) primaryFlags.getArray();
+		List<Email> result = new ArrayList<>(emails.length);
+		for (int i = 0; i < emails.length; i++) {
+			result.add(new Email((String) emails[i], (Boolean) isPrimary[i]));
+		}
+		return result;
+	}
+
+}
@@ -1,42 +1,89 @@
 package com.example.softdelete.user;
 
-import am.ik.pagination.CursorPageRequest;
+import com.example.softdelete.scheduling.ClusterJobRunner;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.time.Clock;
+import java.time.OffsetDateTime;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Component
 public class PendingUserHouseKeeper {
 
 	private final UserMapper userMapper;
 
+	private final ClusterJobRunner clusterJobRunner;
+
+	private final ApplicationEventPublisher eventPublisher;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final PendingUserHouseKeeperProps props;
+
 	private final Clock clock;
 
+	private final Counter purgedCounter;
+
+	private final Timer purgeTimer;
+
 	private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
-	public PendingUserHouseKeeper(UserMapper userMapper, Clock clock) {
+	public PendingUserHouseKeeper(UserMapper userMapper, ClusterJobRunner clusterJobRunner,
+			ApplicationEventPublisher eventPublisher, TransactionTemplate transactionTemplate,
+			PendingUserHouseKeeperProps props, Clock clock, MeterRegistry meterRegistry) {
 		this.userMapper = userMapper;
+		this.clusterJobRunner = clusterJobRunner;
+		this.eventPublisher = eventPublisher;
+		this.transactionTemplate = transactionTemplate;
+		this.props = props;
 		this.clock = clock;
+		this.purgedCounter = Counter.builder("pending_users.purged")
+			.description("Number of expired pending users purged")
+			.register(meterRegistry);
+		this.purgeTimer = Timer.builder("pending_users.purge")
+			.description("Duration of a full purge of expired pending users")
+			.register(meterRegistry);
 	}
 
 	@Scheduled(cron = "0 0 * * * *")
-	@Transactional
 	public void cleanUpPendingUsers() {
+		this.clusterJobRunner.runExclusively("pending-user-house-keeper", this::purgeExpiredPendingUsers);
+	}
+
+	/**
+	 * Purges expired pending users in chunks, each in its own short transaction, until
+	 * none that expired before the start of the run are left. Rows locked by a concurrent
+	 * transaction are skipped rather than waited for, so a chunk may come back short
+	 * while more expired users remain; the run therefore only ends on an empty chunk.
+	 * Skipped users are purged by the next run.
+	 */
+	void purgeExpiredPendingUsers() {
 		logger.info("Cleaning up pending users");
-		CursorPageRequest<Long> pageRequest = new CursorPageRequest<>(Long.MAX_VALUE, 200,
-				CursorPageRequest.Navigation.NEXT);
-		this.userMapper.findPendingUsers(pageRequest).content().forEach(pendingUser -> {
-			if (pendingUser.isExpired(this.clock)) {
-				long userId = pendingUser.userId();
-				this.userMapper.deletePendingUser(userId);
-				this.userMapper.deleteUserProfile(userId);
-				this.userMapper.deleteUserEmail(userId);
-				this.userMapper.deleteUser(userId);
+		OffsetDateTime now = OffsetDateTime.now(this.clock);
+		int chunkSize = this.props.chunkSize();
+		int purged = this.purgeTimer.record(() -> {
+			int total = 0;
+			List<Long> userIds;
+			do {
+				userIds = this.transactionTemplate.execute(status -> {
+					List<Long> deleted = this.userMapper.deleteExpiredPendingUsers(now, chunkSize);
+					deleted.forEach(userId -> this.eventPublisher.publishEvent(new UserChangedEvent(userId)));
+					return deleted;
+				});
+				this.purgedCounter.increment(userIds.size());
+				total += userIds.size();
 			}
+			while (!userIds.isEmpty());
+			return total;
 		});
+		logger.info("Purged {} expired pending users", purged);
 	}
 
 }
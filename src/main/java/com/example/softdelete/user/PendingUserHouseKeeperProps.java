@@ -0,0 +1,12 @@
+package com.example.softdelete.user;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param chunkSize number of expired pending users deleted per transaction
+ */
+@ConfigurationProperties(prefix = "user.housekeeping")
+public record PendingUserHouseKeeperProps(@DefaultValue("500") int chunkSize) {
+
+}
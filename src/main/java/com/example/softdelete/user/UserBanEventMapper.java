@@ -2,7 +2,9 @@ package com.example.softdelete.user;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import java.io.UncheckedIOException;
+import java.util.List;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
@@ -39,4 +41,29 @@ public class UserBanEventMapper {
 		}
 	}
 
+	/**
+	 * Inserts the given events with a single statement, passing them as one JSON array.
+	 */
+	@Transactional
+	public int insertUserBanEvents(List<UserBanEvent> events) {
+		ArrayNode rows = this.objectMapper.createArrayNode();
+		for (UserBanEvent event : events) {
+			rows.addObject()
+				.put("user_id", event.userId())
+				.put("admin_user_id", event.adminUserId())
+				.put("ban_reason", event.banReason())
+				.put("banned_at", event.bannedAt().toString())
+				.set("user_info_at_ban", this.objectMapper.valueToTree(event.userInfoAtBan()));
+		}
+		return this.jdbcClient
+			.sql("""
+					INSERT INTO user_ban_events (user_id, admin_user_id, user_info_at_ban, ban_reason, banned_at)
+					SELECT user_id, admin_user_id, user_info_at_ban, ban_reason, banned_at
+					FROM jsonb_to_recordset(:rows::jsonb)
+					    AS e(user_id BIGINT, admin_user_id BIGINT, user_info_at_ban JSONB, ban_reason TEXT, banned_at TIMESTAMPTZ)
+					""")
+			.param("rows", rows.toString())
+			.update();
+	}
+
 }
@@ -0,0 +1,81 @@
+package com.example.softdelete.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.Optional;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Bounded read-through cache in front of {@link UserMapper#findUser(long)}.
+ * <p>
+ * Entries are evicted on every {@link UserChangedEvent}, which is published by local
+ * state transitions and by {@link UserChangeNotificationListener} for changes made on any
+ * node. Inside a read-write transaction the cache is bypassed altogether: the transaction
+ * reads its own uncommitted writes, and those never leak to other requests. That is why
+ * {@link UserService} reads through {@link UserMapper} directly; the cache serves
+ * non-transactional and read-only callers such as the controllers and the current user
+ * lookup.
+ */
+@Component
+public class UserCache {
+
+	private final UserMapper userMapper;
+
+	private final Cache<Long, User> cache;
+
+	public UserCache(UserMapper userMapper, UserCacheProps props, MeterRegistry meterRegistry) {
+		this.userMapper = userMapper;
+		this.cache = Caffeine.newBuilder()
+			.maximumSize(props.maximumSize())
+			.expireAfterWrite(props.timeToLive())
+			.recordStats()
+			.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, this.cache, "users");
+	}
+
+	public Optional<User> findUser(long userId) {
+		if (isReadWriteTransactionActive()) {
+			return this.userMapper.findUser(userId);
+		}
+		return Optional.ofNullable(this.cache.get(userId, key -> this.userMapper.findUser(key).orElse(null)));
+	}
+
+	/**
+	 * Evicts immediately so that the rest of the publishing transaction reads its own
+	 * writes.
+	 */
+	@EventListener
+	void onUserChanged(UserChangedEvent event) {
+		this.evict(event);
+	}
+
+	/**
+	 * Evicts once more when the publishing transaction completes, so that a concurrent
+	 * reader cannot re-populate the entry with the state before the commit.
+	 */
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION)
+	void afterUserChanged(UserChangedEvent event) {
+		this.evict(event);
+	}
+
+	private void evict(UserChangedEvent event) {
+		if (event.isAll()) {
+			this.cache.invalidateAll();
+		}
+		else {
+			this.cache.invalidate(event.userId());
+		}
+	}
+
+	private static boolean isReadWriteTransactionActive() {
+		return TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+	}
+
+}
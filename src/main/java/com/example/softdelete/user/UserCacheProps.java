@@ -0,0 +1,17 @@
+package com.example.softdelete.user;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param maximumSize maximum number of cached users
+ * @param timeToLive how long a cached user is kept after it was loaded
+ * @param unknownLoginMaximumSize maximum number of remembered unknown login identifiers
+ * @param unknownLoginTimeToLive how long an unknown login identifier is remembered
+ */
+@ConfigurationProperties(prefix = "user.cache")
+public record UserCacheProps(@DefaultValue("10000") long maximumSize, @DefaultValue("10m") Duration timeToLive,
+		@DefaultValue("100000") long unknownLoginMaximumSize, @DefaultValue("1m") Duration unknownLoginTimeToLive) {
+
+}
@@ -0,0 +1,125 @@
+package com.example.softdelete.user;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Listens on the {@code user_changed} channel, which is fed by the
+ * {@code notify_user_changed} triggers, and republishes each notification as a
+ * {@link UserChangedEvent} so that node-local caches are evicted on every node.
+ * <p>
+ * A dedicated connection outside the connection pool is used because {@code LISTEN} is
+ * bound to the session.
+ */
+@Component
+public class UserChangeNotificationListener implements SmartLifecycle {
+
+	static final String CHANNEL = "user_changed";
+
+	/**
+	 * Suffix of the payload when the change may have added a login identifier.
+	 */
+	static final String LOGIN_IDENTIFIER_SUFFIX = ",login";
+
+	private static final int POLL_TIMEOUT_MILLIS = 500;
+
+	private static final long RECONNECT_DELAY_MILLIS = 1_000;
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final JdbcConnectionDetails connectionDetails;
+
+	private final ApplicationEventPublisher eventPublisher;
+
+	private volatile boolean running = false;
+
+	private Thread thread;
+
+	public UserChangeNotificationListener(JdbcConnectionDetails connectionDetails,
+			ApplicationEventPublisher eventPublisher) {
+		this.connectionDetails = connectionDetails;
+		this.eventPublisher = eventPublisher;
+	}
+
+	@Override
+	public void start() {
+		this.running = true;
+		this.thread = Thread.ofVirtual().name("user-change-listener").start(this::listen);
+	}
+
+	@Override
+	public void stop() {
+		this.running = false;
+		if (this.thread != null) {
+			this.thread.interrupt();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	private void listen() {
+		while (this.running) {
+			try (Connection connection = DriverManager.getConnection(this.connectionDetails.getJdbcUrl(),
+					this.connectionDetails.getUsername(), this.connectionDetails.getPassword())) {
+				try (Statement statement = connection.createStatement()) {
+					statement.execute("LISTEN " + CHANNEL);
+				}
+				// Anything that happened while we were not listening is unknown
+				this.eventPublisher.publishEvent(UserChangedEvent.ALL);
+				PGConnection pgConnection = connection.unwrap(PGConnection.class);
+				while (this.running) {
+					PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+					if (notifications == null) {
+						continue;
+					}
+					for (PGNotification notification : notifications) {
+						this.publish(notification);
+					}
+				}
+			}
+			catch (SQLException e) {
+				if (!this.running) {
+					return;
+				}
+				logger.warn("Lost connection for '{}' notifications. Reconnecting in {} ms", CHANNEL,
+						RECONNECT_DELAY_MILLIS, e);
+				try {
+					Thread.sleep(RECONNECT_DELAY_MILLIS);
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	private void publish(PGNotification notification) {
+		try {
+			String payload = notification.getParameter();
+			boolean addsLoginIdentifier = payload.endsWith(LOGIN_IDENTIFIER_SUFFIX);
+			long userId = Long.parseLong(addsLoginIdentifier
+					? payload.substring(0, payload.length() - LOGIN_IDENTIFIER_SUFFIX.length()) : payload);
+			this.eventPublisher.publishEvent(new UserChangedEvent(userId, addsLoginIdentifier));
+		}
+		catch (RuntimeException e) {
+			// A bad payload or a failing listener must not stop the remaining evictions
+			logger.warn("Failed to handle '{}' notification with payload '{}'", CHANNEL, notification.getParameter(),
+					e);
+		}
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.example.softdelete.user;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Published whenever the persisted state of a user may have changed. A {@code null} user
+ * id means that any user may have changed, e.g. because notifications were missed while
+ * the listener was disconnected.
+ *
+ * @param userId the changed user, or {@code null} for any user
+ * @param addsLoginIdentifier whether the change may have given the user a new username or
+ * email address to sign in with
+ */
+public record UserChangedEvent(@Nullable Long userId, boolean addsLoginIdentifier) {
+
+	public static final UserChangedEvent ALL = new UserChangedEvent(null, true);
+
+	public UserChangedEvent(long userId) {
+		this(userId, false);
+	}
+
+	public boolean isAll() {
+		return this.userId == null;
+	}
+
+}
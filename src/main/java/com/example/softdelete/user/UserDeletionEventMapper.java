@@ -2,7 +2,9 @@ package com.example.softdelete.user;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import java.io.UncheckedIOException;
+import java.util.List;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
@@ -37,4 +39,26 @@ public class UserDeletionEventMapper {
 		}
 	}
 
+	/**
+	 * Inserts the given events with a single statement, passing them as one JSON array.
+	 */
+	@Transactional
+	public int insertUserDeletionEvents(List<UserDeletionEvent> events) {
+		ArrayNode rows = this.objectMapper.createArrayNode();
+		for (UserDeletionEvent event : events) {
+			rows.addObject()
+				.put("user_id", event.userId())
+				.put("deleted_at", event.deletedAt().toString())
+				.set("user_info_at_deletion", this.objectMapper.valueToTree(event.userInfoAtDeletion()));
+		}
+		return this.jdbcClient
+			.sql("""
+					INSERT INTO user_deletion_events (user_id, user_info_at_deletion, deleted_at)
+					SELECT user_id, user_info_at_deletion, deleted_at
+					FROM jsonb_to_recordset(:rows::jsonb) AS e(user_id BIGINT, user_info_at_deletion JSONB, deleted_at TIMESTAMPTZ)
+					""")
+			.param("rows", rows.toString())
+			.update();
+	}
+
 }
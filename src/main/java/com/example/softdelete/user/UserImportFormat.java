@@ -0,0 +1,19 @@
+package com.example.softdelete.user;
+
+/**
+ * Formats accepted by {@link UserImporter}.
+ */
+public enum UserImportFormat {
+
+	/**
+	 * CSV with the header {@code email,username,display_name,state}.
+	 */
+	CSV,
+
+	/**
+	 * One JSON object per line with the fields {@code email}, {@code username},
+	 * {@code displayName} and {@code state}.
+	 */
+	NDJSON
+
+}
@@ -0,0 +1,16 @@
+package com.example.softdelete.user;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param activationValidity how long the activation links sent to imported pending users
+ * are valid
+ * @param notificationChunkSize number of activation notifications enqueued per statement
+ */
+@ConfigurationProperties(prefix = "user.import")
+public record UserImportProps(@DefaultValue("3d") Duration activationValidity,
+		@DefaultValue("1000") int notificationChunkSize) {
+
+}
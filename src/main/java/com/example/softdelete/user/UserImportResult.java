@@ -0,0 +1,14 @@
+package com.example.softdelete.user;
+
+/**
+ * Outcome of an import by {@link UserImporter}.
+ *
+ * @param records number of records read from the file
+ * @param activeUsers number of users imported as active users
+ * @param pendingUsers number of users imported as pending users, each of which was sent
+ * an activation link
+ * @param rejected number of records that were not imported and are listed in the report
+ */
+public record UserImportResult(long records, long activeUsers, long pendingUsers, long rejected) {
+
+}
@@ -0,0 +1,292 @@
+package com.example.softdelete.user;
+
+import com.example.softdelete.notification.Notification;
+import com.example.softdelete.notification.outbox.NotificationOutbox;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Imports users from a CSV or NDJSON file, e.g. when migrating the users of another
+ * product.
+ * <p>
+ * The file is streamed with {@code COPY FROM STDIN} into a temporary staging table, in
+ * which the records are validated and checked for usernames and email addresses that are
+ * already taken or occur more than once. The remaining records are moved into the user
+ * tables with one statement per table, and the pending users among them are sent their
+ * activation links through the notification outbox in bulk. Everything happens in a
+ * single transaction, so a failed import leaves no users behind. Rejected records are
+ * written to a CSV report with the reason.
+ */
+@Component
+public class UserImporter {
+
+	private static final String CREATE_STAGING_TABLE = """
+			CREATE TEMPORARY TABLE user_import (
+			    record BIGINT GENERATED BY DEFAULT AS IDENTITY,
+			    email TEXT,
+			    username TEXT,
+			    display_name TEXT,
+			    state TEXT,
+			    reason TEXT,
+			    user_id BIGINT,
+			    activation_token UUID
+			) ON COMMIT DROP
+			""";
+
+	/**
+	 * Loads every line into a single column by choosing a delimiter and a quote character
+	 * that cannot occur in JSON.
+	 */
+	private static final String[] STAGE_NDJSON = { """
+			CREATE TEMPORARY TABLE user_import_lines (
+			    record BIGINT GENERATED ALWAYS AS IDENTITY,
+			    line TEXT
+			) ON COMMIT DROP
+			""", """
+			INSERT INTO user_import (record, email, username, display_name, state, reason)
+			SELECT record, doc ->> 'email', doc ->> 'username', doc ->> 'displayName', doc ->> 'state',
+			       CASE WHEN doc IS NULL THEN 'invalid JSON object' END
+			FROM (
+			    SELECT record, CASE WHEN line IS JSON OBJECT THEN line::jsonb END AS doc
+			    FROM user_import_lines
+			    WHERE btrim(line) <> ''
+			) l
+			""" };
+
+	/**
+	 * Rejects invalid records, the first reason wins. Of the records sharing a username
+	 * or an email address, only the first valid one is imported.
+	 */
+	private static final String[] VALIDATE = { """
+			UPDATE user_import
+			SET email = btrim(email),
+			    username = btrim(username),
+			    display_name = btrim(display_name),
+			    state = lower(COALESCE(NULLIF(btrim(state), ''), 'pending'))
+			WHERE reason IS NULL
+			""",
+			"""
+					UPDATE user_import SET reason = 'missing email, username or display name'
+					WHERE reason IS NULL AND (COALESCE(email, '') = '' OR COALESCE(username, '') = '' OR COALESCE(display_name, '') = '')
+					""",
+			"""
+					UPDATE user_import SET reason = 'invalid state'
+					WHERE reason IS NULL AND state NOT IN ('active', 'pending')
+					""",
+			"""
+					UPDATE user_import SET reason = 'value too long'
+					WHERE reason IS NULL AND (length(email) > 255 OR length(username) > 50 OR length(display_name) > 100)
+					""",
+			"""
+					UPDATE user_import i SET reason = 'duplicate username in file'
+					FROM (
+					    SELECT record, row_number() OVER (PARTITION BY username ORDER BY record) AS n
+					    FROM user_import WHERE reason IS NULL
+					) d
+					WHERE i.record = d.record AND d.n > 1
+					""", """
+					UPDATE user_import i SET reason = 'duplicate email in file'
+					FROM (
+					    SELECT record, row_number() OVER (PARTITION BY email ORDER BY record) AS n
+					    FROM user_import WHERE reason IS NULL
+					) d
+					WHERE i.record = d.record AND d.n > 1
+					""", """
+					UPDATE user_import i SET reason = 'username already taken'
+					WHERE reason IS NULL AND EXISTS (SELECT 1 FROM user_profiles p WHERE p.username = i.username)
+					""", """
+					UPDATE user_import i SET reason = 'email already taken'
+					WHERE reason IS NULL AND EXISTS (SELECT 1 FROM user_emails e WHERE e.email = i.email)
+					""" };
+
+	private static final String[] MOVE = { """
+			UPDATE user_import
+			SET user_id = nextval(pg_get_serial_sequence('users', 'user_id')),
+			    activation_token = CASE WHEN state = 'pending' THEN gen_random_uuid() END
+			WHERE reason IS NULL
+			""", """
+			INSERT INTO users (user_id) SELECT user_id FROM user_import WHERE user_id IS NOT NULL
+			""", """
+			INSERT INTO user_profiles (user_id, username, display_name)
+			SELECT user_id, username, display_name FROM user_import WHERE user_id IS NOT NULL
+			""", """
+			INSERT INTO user_emails (user_id, email) SELECT user_id, email FROM user_import WHERE user_id IS NOT NULL
+			""", """
+			INSERT INTO user_primary_emails (user_id, email)
+			SELECT user_id, email FROM user_import WHERE user_id IS NOT NULL
+			""",
+			"""
+					INSERT INTO active_users (user_id) SELECT user_id FROM user_import WHERE user_id IS NOT NULL AND state = 'active'
+					""",
+			"""
+					INSERT INTO pending_users (user_id, activation_token, expires_at)
+					SELECT user_id, activation_token, :expiresAt FROM user_import WHERE user_id IS NOT NULL AND state = 'pending'
+					""" };
+
+	private final DataSource dataSource;
+
+	private final JdbcClient jdbcClient;
+
+	private final NotificationOutbox notificationOutbox;
+
+	private final ApplicationEventPublisher eventPublisher;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final UserImportProps props;
+
+	private final Clock clock;
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	public UserImporter(DataSource dataSource, JdbcClient jdbcClient, NotificationOutbox notificationOutbox,
+			ApplicationEventPublisher eventPublisher, TransactionTemplate transactionTemplate, UserImportProps props,
+			Clock clock) {
+		this.dataSource = dataSource;
+		this.jdbcClient = jdbcClient;
+		this.notificationOutbox = notificationOutbox;
+		this.eventPublisher = eventPublisher;
+		this.transactionTemplate = transactionTemplate;
+		this.props = props;
+		this.clock = clock;
+	}
+
+	/**
+	 * Imports the users of the given file. Imports are serialized across the cluster, but
+	 * signups are not: a signup that takes a username or email address of the file after
+	 * it was checked aborts the whole import with a duplicate key error, and importing the
+	 * file again reports that record as taken.
+	 * @param input the file, {@code state} is {@code active} or {@code pending} and
+	 * defaults to {@code pending}
+	 * @param format the format of the file
+	 * @param baseUrl base URL of the activation links
+	 * @param report receives the rejected records as CSV with the columns
+	 * {@code record,email,username,reason}
+	 * @return the number of imported and rejected records
+	 * @throws IllegalArgumentException if the file is malformed, e.g. has an unexpected
+	 * CSV header
+	 */
+	public UserImportResult importUsers(InputStream input, UserImportFormat format, URI baseUrl, Writer report) {
+		return this.transactionTemplate.execute(status -> {
+			this.jdbcClient.sql("SELECT pg_advisory_xact_lock(hashtext('user-import'))").query().listOfRows();
+			// Left over by a previous import if the caller's transaction is still running
+			this.jdbcClient.sql("DROP TABLE IF EXISTS pg_temp.user_import, pg_temp.user_import_lines").update();
+			this.jdbcClient.sql(CREATE_STAGING_TABLE).update();
+			switch (format) {
+				case CSV -> this.copy(copyManager -> copyManager.copyIn(
+						"""
+								COPY user_import (email, username, display_name, state) FROM STDIN WITH (FORMAT csv, HEADER MATCH)
+								""",
+						input));
+				case NDJSON -> {
+					this.jdbcClient.sql(STAGE_NDJSON[0]).update();
+					this.copy(copyManager -> copyManager.copyIn(
+							"""
+									COPY user_import_lines (line) FROM STDIN WITH (FORMAT csv, DELIMITER E'\\x01', QUOTE E'\\x02')
+									""",
+							input));
+					this.jdbcClient.sql(STAGE_NDJSON[1]).update();
+				}
+			}
+			this.jdbcClient.sql("ANALYZE user_import").update();
+			for (String sql : VALIDATE) {
+				this.jdbcClient.sql(sql).update();
+			}
+			OffsetDateTime expiresAt = OffsetDateTime.now(this.clock).plus(this.props.activationValidity());
+			for (String sql : MOVE) {
+				this.jdbcClient.sql(sql).param("expiresAt", expiresAt).update();
+			}
+			UserImportResult result = this.jdbcClient.sql("""
+					SELECT
+					    count(*) AS records,
+					    count(*) FILTER (WHERE user_id IS NOT NULL AND state = 'active') AS active_users,
+					    count(*) FILTER (WHERE user_id IS NOT NULL AND state = 'pending') AS pending_users,
+					    count(*) FILTER (WHERE reason IS NOT NULL) AS rejected
+					FROM user_import
+					""")
+				.query((rs, rowNum) -> new UserImportResult(rs.getLong("records"), rs.getLong("active_users"),
+						rs.getLong("pending_users"), rs.getLong("rejected")))
+				.single();
+			this.sendActivationLinks(baseUrl, expiresAt);
+			this.copy(copyManager -> copyManager.copyOut("""
+					COPY (
+					    SELECT record, email, username, reason FROM user_import WHERE reason IS NOT NULL ORDER BY record
+					) TO STDOUT WITH (FORMAT csv, HEADER)
+					""", report));
+			if (result.activeUsers() + result.pendingUsers() > 0) {
+				// Also evicts the cached misses of the imported usernames and email
+				// addresses
+				this.eventPublisher.publishEvent(UserChangedEvent.ALL);
+			}
+			logger.info("Imported {} active and {} pending users, rejected {} of {} records", result.activeUsers(),
+					result.pendingUsers(), result.rejected(), result.records());
+			return result;
+		});
+	}
+
+	private void sendActivationLinks(URI baseUrl, OffsetDateTime expiresAt) {
+		List<Notification> notifications = this.jdbcClient.sql("""
+				SELECT email, display_name, activation_token FROM user_import
+				WHERE user_id IS NOT NULL AND state = 'pending'
+				ORDER BY record
+				""")
+			.query((rs, rowNum) -> UserService.activationNotification(rs.getString("email"),
+					rs.getString("display_name"), baseUrl, rs.getObject("activation_token", UUID.class), expiresAt))
+			.list();
+		int chunkSize = this.props.notificationChunkSize();
+		for (int from = 0; from < notifications.size(); from += chunkSize) {
+			this.notificationOutbox
+				.enqueueAll(notifications.subList(from, Math.min(from + chunkSize, notifications.size())));
+		}
+	}
+
+	/**
+	 * Runs a {@code COPY} on the connection of the current transaction.
+	 */
+	private void copy(CopyOperation operation) {
+		Connection connection = DataSourceUtils.getConnection(this.dataSource);
+		try {
+			operation.copy(connection.unwrap(PGConnection.class).getCopyAPI());
+		}
+		catch (SQLException e) {
+			// Data exceptions are caused by the content of the file
+			if (e.getSQLState() != null && e.getSQLState().startsWith("22")) {
+				throw new IllegalArgumentException("Malformed import file: " + e.getMessage(), e);
+			}
+			throw new IllegalStateException("Failed to copy the users to import", e);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		finally {
+			DataSourceUtils.releaseConnection(connection, this.dataSource);
+		}
+	}
+
+	@FunctionalInterface
+	private interface CopyOperation {
+
+		void copy(CopyManager copyManager) throws SQLException, IOException;
+
+	}
+
+}
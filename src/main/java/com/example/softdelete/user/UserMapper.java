@@ -3,51 +3,182 @@ package com.example.softdelete.user;
 import am.ik.pagination.CursorPage;
 import am.ik.pagination.CursorPageRequest;
 import am.ik.pagination.CursorPageRequest.Navigation;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.example.softdelete.user.UserMapperProps.EmailsFormat;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.core.simple.JdbcClient.StatementSpec;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public class UserMapper {
 
+	private static final String FIND_USER_QUERY = """
+			SELECT
+			    u.user_id,
+			    CASE
+			        WHEN au.user_id IS NOT NULL THEN 'active'
+			        WHEN pu.user_id IS NOT NULL THEN 'pending'
+			        WHEN du.user_id IS NOT NULL THEN 'deleted'
+			        ELSE 'unknown'
+			    END AS type,
+			    CASE
+			        WHEN adu.user_id IS NOT NULL THEN TRUE
+			        ELSE FALSE
+			    END AS is_admin,
+			    up.username,
+			    up.display_name,
+			    pu.activation_token,
+			    pu.expires_at,
+			    du.deleted_at,
+			    %s
+			FROM
+			    users u
+			    LEFT JOIN pending_users pu ON u.user_id = pu.user_id
+			    LEFT JOIN active_users au ON u.user_id = au.user_id
+			    LEFT JOIN admin_users adu ON au.user_id = adu.user_id
+			    LEFT JOIN deleted_users du ON u.user_id = du.user_id
+			    LEFT JOIN user_profiles up ON u.user_id = up.user_id
+			    LEFT JOIN user_emails ue ON u.user_id = ue.user_id
+			    LEFT JOIN user_primary_emails upe ON u.user_id = upe.user_id
+			WHERE %s
+			GROUP BY
+			    u.user_id,
+			    au.user_id,
+			    pu.user_id,
+			    du.user_id,
+			    adu.user_id,
+			    up.username,
+			    up.display_name,
+			    pu.activation_token,
+			    pu.expires_at,
+			    du.deleted_at
+			""";
+
+	/**
+	 * Emails as a JSON array of {@code {"email": ..., "isPrimary": ...}} objects, primary
+	 * first.
+	 */
+	private static final String EMAILS_JSON_COLUMNS = """
+			COALESCE(
+			        jsonb_agg(
+			            jsonb_build_object(
+			                'email', ue.email,
+			                'isPrimary', CASE WHEN upe.email = ue.email THEN TRUE ELSE FALSE END
+			            ) ORDER BY
+			                CASE WHEN upe.email = ue.email THEN 0 ELSE 1 END,  -- Primary first
+			                ue.created_at
+			        ) FILTER (WHERE ue.email IS NOT NULL),
+			        '[]'::jsonb
+			    ) AS emails""";
+
+	/**
+	 * Emails as two parallel arrays of addresses and primary flags, primary first.
+	 */
+	private static final String EMAILS_ARRAY_COLUMNS = """
+			COALESCE(
+			        array_agg(ue.email ORDER BY
+			            CASE WHEN upe.email = ue.email THEN 0 ELSE 1 END,  -- Primary first
+			            ue.created_at
+			        ) FILTER (WHERE ue.email IS NOT NULL),
+			        '{}'
+			    ) AS email_addresses,
+			    COALESCE(
+			        array_agg(CASE WHEN upe.email = ue.email THEN TRUE ELSE FALSE END ORDER BY
+			            CASE WHEN upe.email = ue.email THEN 0 ELSE 1 END,
+			            ue.created_at
+			        ) FILTER (WHERE ue.email IS NOT NULL),
+			        '{}'
+			    ) AS email_primary_flags""";
+
+	/**
+	 * Keyset condition of the {@code page_ids} CTE that selects the ids of the next page
+	 * from a primary key, so that only those users are joined and aggregated.
+	 */
+	private static final String NEXT_PAGE_IDS = "user_id < :cursor ORDER BY user_id DESC";
+
+	/**
+	 * Keyset condition of the {@code page_ids} CTE that selects the ids of the previous
+	 * page. The hydrating query still returns them in descending order.
+	 */
+	private static final String PREVIOUS_PAGE_IDS = "user_id > :cursor ORDER BY user_id ASC";
+
+	/**
+	 * Restricts the {@code page_ids} CTE to users whose username, display name or any
+	 * email address contains the search term. Each branch is served by a {@code pg_trgm}
+	 * GIN index, so that substring matches do not scan the tables.
+	 */
+	private static final String SEARCH_CONDITION = """
+			user_id IN (
+			        SELECT user_id FROM user_profiles WHERE username ILIKE :pattern OR display_name ILIKE :pattern
+			        UNION
+			        SELECT user_id FROM user_emails WHERE email ILIKE :pattern
+			    ) AND\s""";
+
+	/**
+	 * Trigram indexes cannot narrow down a substring search shorter than one trigram.
+	 */
+	public static final int MIN_SEARCH_LENGTH = 3;
+
 	private final JdbcClient jdbcClient;
 
 	private final RowMapper<User> userRowMapper;
 
-	public UserMapper(JdbcClient jdbcClient, ObjectMapper objectMapper) {
+	private final boolean readModel;
+
+	private final String emailsColumns;
+
+	public UserMapper(JdbcClient jdbcClient, ObjectMapper objectMapper, UserMapperProps props) {
 		this.jdbcClient = jdbcClient;
+		this.readModel = props.readModel();
+		// The read model stores emails as JSON regardless of the configured format
+		EmailsFormat emailsFormat = this.readModel ? EmailsFormat.JSON : props.emailsFormat();
+		this.emailsColumns = switch (emailsFormat) {
+			case JSON -> EMAILS_JSON_COLUMNS;
+			case ARRAY -> EMAILS_ARRAY_COLUMNS;
+		};
+		EmailsReader emailsReader = new EmailsReader(objectMapper.getFactory());
+		RowMapper<List<Email>> emailsMapper = switch (emailsFormat) {
+			case JSON -> (rs, rowNum) -> {
+				try {
+					return emailsReader.read(rs.getString("emails"));
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			};
+			case ARRAY ->
+				(rs, rowNum) -> EmailsReader.read(rs.getArray("email_addresses"), rs.getArray("email_primary_flags"));
+		};
 		this.userRowMapper = (rs, rowNum) -> {
 			String type = rs.getString("type");
 			long userId = rs.getLong("user_id");
-			try {
-				return switch (type) {
-					case "active" ->
-						new ActiveUser(userId, new UserProfile(rs.getString("username"), rs.getString("display_name")),
-								objectMapper.readValue(rs.getString("emails"), new TypeReference<>() {
-								}), rs.getBoolean("is_admin"));
-					case "pending" ->
-						new PendingUser(userId, new UserProfile(rs.getString("username"), rs.getString("display_name")),
-								objectMapper.readValue(rs.getString("emails"), new TypeReference<>() {
-								}), rs.getObject("activation_token", UUID.class),
-								rs.getObject("expires_at", OffsetDateTime.class));
-					case "deleted" -> new DeletedUser(userId, rs.getObject("deleted_at", OffsetDateTime.class));
-					default -> null;
-				};
-			}
-			catch (JsonProcessingException e) {
-				throw new UncheckedIOException(e);
-			}
+			return switch (type) {
+				case "active" ->
+					new ActiveUser(userId, new UserProfile(rs.getString("username"), rs.getString("display_name")),
+							emailsMapper.mapRow(rs, rowNum), rs.getBoolean("is_admin"));
+				case "pending" ->
+					new PendingUser(userId, new UserProfile(rs.getString("username"), rs.getString("display_name")),
+							emailsMapper.mapRow(rs, rowNum), rs.getObject("activation_token", UUID.class),
+							rs.getObject("expires_at", OffsetDateTime.class));
+				case "deleted" -> new DeletedUser(userId, rs.getObject("deleted_at", OffsetDateTime.class));
+				default -> null;
+			};
 		};
-		;
+	}
+
+	RowMapper<User> userRowMapper() {
+		return this.userRowMapper;
 	}
 
 	@Transactional
@@ -57,6 +188,19 @@ public class UserMapper {
 				""").query(Long.class).single();
 	}
 
+	/**
+	 * Inserts the given number of users with a single statement.
+	 * @return the ids of the new users in ascending order
+	 */
+	@Transactional
+	public List<Long> insertUsers(int count) {
+		return this.jdbcClient.sql("""
+				INSERT INTO users (user_id)
+				SELECT nextval(pg_get_serial_sequence('users', 'user_id')) FROM generate_series(1, :count)
+				RETURNING user_id
+				""").param("count", count).query(Long.class).list().stream().sorted().toList();
+	}
+
 	public Optional<Long> findUserIdByEmail(String email) {
 		return this.jdbcClient.sql("""
 				SELECT user_id FROM user_emails WHERE email = :email
@@ -87,6 +231,21 @@ public class UserMapper {
 			.update();
 	}
 
+	/**
+	 * Inserts the given profiles, keyed by user id, with a single multi-row statement.
+	 */
+	@Transactional
+	public int insertUserProfiles(Map<Long, UserProfile> userProfiles) {
+		return this.jdbcClient.sql("""
+				INSERT INTO user_profiles (user_id, username, display_name)
+				SELECT * FROM unnest(:userIds::bigint[], :usernames::varchar[], :displayNames::varchar[])
+				""")
+			.param("userIds", userProfiles.keySet().toArray(Long[]::new))
+			.param("usernames", userProfiles.values().stream().map(UserProfile::username).toArray(String[]::new))
+			.param("displayNames", userProfiles.values().stream().map(UserProfile::displayName).toArray(String[]::new))
+			.update();
+	}
+
 	@Transactional
 	public long deleteUserProfile(long userId) {
 		return this.jdbcClient.sql("""
@@ -104,6 +263,43 @@ public class UserMapper {
 		}
 	}
 
+	/**
+	 * Inserts the given email addresses, keyed by user id, and the primary ones among
+	 * them with one multi-row statement per table.
+	 */
+	@Transactional
+	public void insertUserEmails(Map<Long, List<Email>> userEmails) {
+		List<Long> userIds = new ArrayList<>();
+		List<String> emails = new ArrayList<>();
+		List<Long> primaryUserIds = new ArrayList<>();
+		List<String> primaryEmails = new ArrayList<>();
+		userEmails.forEach((userId, userEmailList) -> {
+			for (Email email : userEmailList) {
+				userIds.add(userId);
+				emails.add(email.email());
+				if (email.isPrimary()) {
+					primaryUserIds.add(userId);
+					primaryEmails.add(email.email());
+				}
+			}
+		});
+		this.jdbcClient.sql("""
+				INSERT INTO user_emails (user_id, email) SELECT * FROM unnest(:userIds::bigint[], :emails::varchar[])
+				""")
+			.param("userIds", userIds.toArray(Long[]::new))
+			.param("emails", emails.toArray(String[]::new))
+			.update();
+		if (!primaryUserIds.isEmpty()) {
+			this.jdbcClient.sql("""
+					INSERT INTO user_primary_emails (user_id, email)
+					SELECT * FROM unnest(:userIds::bigint[], :emails::varchar[])
+					""")
+				.param("userIds", primaryUserIds.toArray(Long[]::new))
+				.param("emails", primaryEmails.toArray(String[]::new))
+				.update();
+		}
+	}
+
 	@Transactional
 	public void deleteUserEmail(long userId) {
 		this.jdbcClient.sql("""
@@ -147,7 +343,104 @@ public class UserMapper {
 			.update();
 	}
 
+	/**
+	 * Inserts a user with the given profile and primary email address as a pending user
+	 * in a single statement. Like the separate inserts, it fails with a
+	 * {@link org.springframework.dao.DuplicateKeyException} if the username or email
+	 * address is already taken, without leaving any of the rows behind.
+	 * @return the id of the new user
+	 */
+	@Transactional
+	public long insertPendingUser(UserProfile userProfile, String primaryEmail, UUID activationToken,
+			OffsetDateTime expiresAt) {
+		return this.jdbcClient.sql("""
+				WITH u AS (
+				    INSERT INTO users DEFAULT VALUES RETURNING user_id
+				), profile AS (
+				    INSERT INTO user_profiles (user_id, username, display_name)
+				    SELECT user_id, :username, :displayName FROM u
+				), email AS (
+				    INSERT INTO user_emails (user_id, email) SELECT user_id, :email FROM u
+				), primary_email AS (
+				    INSERT INTO user_primary_emails (user_id, email) SELECT user_id, :email FROM u
+				), pending AS (
+				    INSERT INTO pending_users (user_id, activation_token, expires_at)
+				    SELECT user_id, :activationToken, :expiresAt FROM u
+				)
+				SELECT user_id FROM u
+				""")
+			.param("username", userProfile.username())
+			.param("displayName", userProfile.displayName())
+			.param("email", primaryEmail)
+			.param("activationToken", activationToken)
+			.param("expiresAt", expiresAt)
+			.query(Long.class)
+			.single();
+	}
+
+	/**
+	 * Inserts the given pending users with a single multi-row statement. Like
+	 * {@link #insertPendingUser(PendingUser)}, this does not insert their profiles and
+	 * email addresses.
+	 */
+	@Transactional
+	public int insertPendingUsers(List<PendingUser> pendingUsers) {
+		return this.jdbcClient.sql("""
+				INSERT INTO pending_users (user_id, activation_token, expires_at)
+				SELECT * FROM unnest(:userIds::bigint[], :activationTokens::uuid[], :expiresAt::timestamptz[])
+				""")
+			.param("userIds", pendingUsers.stream().map(PendingUser::userId).toArray(Long[]::new))
+			.param("activationTokens",
+					pendingUsers.stream()
+						.map(pendingUser -> pendingUser.activationToken().toString())
+						.toArray(String[]::new))
+			.param("expiresAt",
+					pendingUsers.stream().map(pendingUser -> pendingUser.expiresAt().toString()).toArray(String[]::new))
+			.update();
+	}
+
+	/**
+	 * Consumes an activation token in a single statement. The pending user becomes active
+	 * if the token has not expired at the given time, otherwise the user is removed
+	 * together with the profile and email addresses.
+	 * @return the outcome, or empty if no pending user has the token
+	 */
+	@Transactional
+	public Optional<Activation> activatePendingUser(UUID activationToken, OffsetDateTime now) {
+		return this.jdbcClient.sql("""
+				WITH pending AS (
+				    DELETE FROM pending_users WHERE activation_token = :activationToken RETURNING user_id, expires_at
+				), active AS (
+				    INSERT INTO active_users (user_id) SELECT user_id FROM pending WHERE expires_at >= :now
+				), expired AS (
+				    SELECT user_id FROM pending WHERE expires_at < :now
+				), profile AS (
+				    DELETE FROM user_profiles WHERE user_id IN (SELECT user_id FROM expired)
+				), primary_email AS (
+				    DELETE FROM user_primary_emails WHERE user_id IN (SELECT user_id FROM expired)
+				), emails AS (
+				    DELETE FROM user_emails WHERE user_id IN (SELECT user_id FROM expired)
+				), u AS (
+				    DELETE FROM users WHERE user_id IN (SELECT user_id FROM expired)
+				)
+				SELECT user_id, expires_at >= :now AS activated FROM pending
+				""")
+			.param("activationToken", activationToken)
+			.param("now", now)
+			.query((rs, rowNum) -> new Activation(rs.getLong("user_id"), rs.getBoolean("activated")))
+			.optional();
+	}
+
 	public Optional<PendingUser> getPendingUserByToken(UUID activationToken) {
+		if (this.readModel) {
+			return this.jdbcClient.sql("""
+					SELECT * FROM user_read_model WHERE activation_token = :activationToken AND type = 'pending'
+					""")
+				.param("activationToken", activationToken)
+				.query(userRowMapper)
+				.optional()
+				.map(PendingUser.class::cast);
+		}
 		return this.jdbcClient.sql("""
 				SELECT
 				    'pending' as type,
@@ -156,17 +449,7 @@ public class UserMapper {
 				    up.display_name,
 				    pu.activation_token,
 				    pu.expires_at,
-				    COALESCE(
-				        jsonb_agg(
-				            jsonb_build_object(
-				                'email', ue.email,
-				                'isPrimary', CASE WHEN upe.email = ue.email THEN TRUE ELSE FALSE END
-				            ) ORDER BY
-				                CASE WHEN upe.email = ue.email THEN 0 ELSE 1 END,  -- Primary first
-				                ue.created_at
-				        ) FILTER (WHERE ue.email IS NOT NULL),
-				        '[]'::jsonb
-				    ) AS emails
+				    %s
 				FROM
 				    users u
 				    LEFT JOIN pending_users pu ON u.user_id = pu.user_id
@@ -181,7 +464,7 @@ public class UserMapper {
 				    up.display_name,
 				    pu.activation_token,
 				    pu.expires_at
-				""")
+				""".formatted(this.emailsColumns))
 			.param("activationToken", activationToken)
 			.query(userRowMapper)
 			.optional()
@@ -195,6 +478,33 @@ public class UserMapper {
 				""").param("userId", userId).update();
 	}
 
+	/**
+	 * Deletes up to {@code limit} pending users that expired before {@code now}, oldest
+	 * first, together with their profiles and emails.
+	 * @return the ids of the deleted users
+	 */
+	@Transactional
+	public List<Long> deleteExpiredPendingUsers(OffsetDateTime now, int limit) {
+		return this.jdbcClient.sql("""
+				WITH expired AS (
+				    SELECT user_id FROM pending_users
+				    WHERE expires_at < :now
+				    ORDER BY expires_at
+				    LIMIT :limit
+				    FOR UPDATE SKIP LOCKED
+				), pending AS (
+				    DELETE FROM pending_users WHERE user_id IN (SELECT user_id FROM expired) RETURNING user_id
+				), primary_emails AS (
+				    DELETE FROM user_primary_emails WHERE user_id IN (SELECT user_id FROM pending)
+				), emails AS (
+				    DELETE FROM user_emails WHERE user_id IN (SELECT user_id FROM pending)
+				), profiles AS (
+				    DELETE FROM user_profiles WHERE user_id IN (SELECT user_id FROM pending)
+				)
+				DELETE FROM users WHERE user_id IN (SELECT user_id FROM pending) RETURNING user_id
+				""").param("now", now).param("limit", limit).query(Long.class).list();
+	}
+
 	@Transactional
 	public int insertActiveUser(long userId) {
 		return this.jdbcClient.sql("""
@@ -237,74 +547,154 @@ public class UserMapper {
 				""").param("userId", userId).update();
 	}
 
-	public Optional<User> findUser(long userId) {
+	/**
+	 * Moves an active user to the deleted users in a single statement, removing the admin
+	 * role, profile and email addresses, and returns the user as it was before the
+	 * deletion.
+	 * @return the deleted user, or empty if the user is not active
+	 */
+	@Transactional
+	public Optional<ActiveUser> deleteActiveUserAtomically(long userId) {
 		return this.jdbcClient.sql("""
+				WITH active AS (
+				    DELETE FROM active_users WHERE user_id = :userId RETURNING user_id
+				), admin AS (
+				    DELETE FROM admin_users WHERE user_id IN (SELECT user_id FROM active) RETURNING user_id
+				), profile AS (
+				    DELETE FROM user_profiles WHERE user_id IN (SELECT user_id FROM active)
+				    RETURNING user_id, username, display_name
+				), primary_email AS (
+				    DELETE FROM user_primary_emails WHERE user_id IN (SELECT user_id FROM active) RETURNING email
+				), emails AS (
+				    DELETE FROM user_emails WHERE user_id IN (SELECT user_id FROM active) RETURNING email, created_at
+				), deleted AS (
+				    INSERT INTO deleted_users (user_id) SELECT user_id FROM active
+				)
 				SELECT
-				    u.user_id,
-				    CASE
-				        WHEN au.user_id IS NOT NULL THEN 'active'
-				        WHEN pu.user_id IS NOT NULL THEN 'pending'
-				        WHEN du.user_id IS NOT NULL THEN 'deleted'
-				        ELSE 'unknown'
-				    END AS type,
-				    CASE
-				        WHEN adu.user_id IS NOT NULL THEN TRUE
-				        ELSE FALSE
-				    END AS is_admin,
-				    up.username,
-				    up.display_name,
-				    pu.activation_token,
-				    pu.expires_at,
-				    du.deleted_at,
-				    COALESCE(
-				        jsonb_agg(
-				            jsonb_build_object(
-				                'email', ue.email,
-				                'isPrimary', CASE WHEN upe.email = ue.email THEN TRUE ELSE FALSE END
-				            ) ORDER BY
-				                CASE WHEN upe.email = ue.email THEN 0 ELSE 1 END,  -- Primary first
-				                ue.created_at
-				        ) FILTER (WHERE ue.email IS NOT NULL),
-				        '[]'::jsonb
-				    ) AS emails
+				    p.user_id,
+				    'active' AS type,
+				    EXISTS (SELECT 1 FROM admin) AS is_admin,
+				    p.username,
+				    p.display_name,
+				    %s
 				FROM
-				    users u
-				    LEFT JOIN pending_users pu ON u.user_id = pu.user_id
-				    LEFT JOIN active_users au ON u.user_id = au.user_id
-				    LEFT JOIN admin_users adu ON au.user_id = adu.user_id
-				    LEFT JOIN deleted_users du ON u.user_id = du.user_id
-				    LEFT JOIN user_profiles up ON u.user_id = up.user_id
-				    LEFT JOIN user_emails ue ON u.user_id = ue.user_id
-				    LEFT JOIN user_primary_emails upe ON u.user_id = upe.user_id
-				WHERE u.user_id = :userId
-				GROUP BY
-				    u.user_id,
-				    au.user_id,
-				    pu.user_id,
-				    du.user_id,
-				    adu.user_id,
-				    up.username,
-				    up.display_name,
-				    pu.activation_token,
-				    pu.expires_at,
-				    du.deleted_at
-				""").param("userId", userId).query(userRowMapper).optional();
+				    profile p
+				    LEFT JOIN emails ue ON TRUE
+				    LEFT JOIN primary_email upe ON TRUE
+				GROUP BY p.user_id, p.username, p.display_name
+				""".formatted(this.emailsColumns))
+			.param("userId", userId)
+			.query(userRowMapper)
+			.optional()
+			.map(ActiveUser.class::cast);
+	}
+
+	/**
+	 * Locks the active users among the given ids until the end of the transaction. The
+	 * rows are locked in id order, so that bulk operations on overlapping ids cannot
+	 * deadlock.
+	 * @return the ids of the users that are active, in ascending order
+	 */
+	@Transactional
+	public List<Long> lockActiveUsers(List<Long> userIds) {
+		return this.jdbcClient.sql("""
+				SELECT user_id FROM active_users WHERE user_id = ANY(:userIds) ORDER BY user_id FOR UPDATE
+				""").param("userIds", userIds.toArray(Long[]::new)).query(Long.class).list();
+	}
+
+	/**
+	 * Moves the active users among the given ids to the deleted users in a single
+	 * statement, removing their admin role, profile and email addresses.
+	 * @return the ids of the deleted users
+	 */
+	@Transactional
+	public List<Long> deleteActiveUsers(List<Long> userIds) {
+		return this.jdbcClient.sql("""
+				WITH active AS (
+				    DELETE FROM active_users WHERE user_id = ANY(:userIds) RETURNING user_id
+				), admins AS (
+				    DELETE FROM admin_users WHERE user_id IN (SELECT user_id FROM active)
+				), profiles AS (
+				    DELETE FROM user_profiles WHERE user_id IN (SELECT user_id FROM active)
+				), primary_emails AS (
+				    DELETE FROM user_primary_emails WHERE user_id IN (SELECT user_id FROM active)
+				), emails AS (
+				    DELETE FROM user_emails WHERE user_id IN (SELECT user_id FROM active)
+				)
+				INSERT INTO deleted_users (user_id) SELECT user_id FROM active RETURNING user_id
+				""").param("userIds", userIds.toArray(Long[]::new)).query(Long.class).list();
+	}
+
+	public Optional<User> findUser(long userId) {
+		if (this.readModel) {
+			return this.jdbcClient.sql("""
+					SELECT * FROM user_read_model WHERE user_id = :userId
+					""").param("userId", userId).query(userRowMapper).optional();
+		}
+		return this.jdbcClient.sql(FIND_USER_QUERY.formatted(this.emailsColumns, "u.user_id = :userId"))
+			.param("userId", userId)
+			.query(userRowMapper)
+			.optional();
+	}
+
+	/**
+	 * Loads the given users in a single statement, in no particular order. Ids without a
+	 * user are ignored.
+	 */
+	public List<User> findUsers(List<Long> userIds) {
+		Long[] ids = userIds.toArray(Long[]::new);
+		if (this.readModel) {
+			return this.jdbcClient.sql("""
+					SELECT * FROM user_read_model WHERE user_id = ANY(:userIds)
+					""").param("userIds", ids).query(userRowMapper).list();
+		}
+		return this.jdbcClient.sql(FIND_USER_QUERY.formatted(this.emailsColumns, "u.user_id = ANY(:userIds)"))
+			.param("userIds", ids)
+			.query(userRowMapper)
+			.list();
+	}
+
+	/**
+	 * Resolves a username, or an email address if it contains {@code @}, and loads the
+	 * user in a single statement.
+	 */
+	public Optional<User> findUserByLoginIdentifier(String loginIdentifier) {
+		boolean isEmail = loginIdentifier.contains("@");
+		if (this.readModel) {
+			String query = isEmail ? """
+					SELECT * FROM user_read_model
+					WHERE user_id = (SELECT user_id FROM user_emails WHERE email = :loginIdentifier)
+					""" : """
+					SELECT * FROM user_read_model WHERE username = :loginIdentifier
+					""";
+			return this.jdbcClient.sql(query).param("loginIdentifier", loginIdentifier).query(userRowMapper).optional();
+		}
+		String condition = isEmail ? "u.user_id = (SELECT user_id FROM user_emails WHERE email = :loginIdentifier)"
+				: "u.user_id = (SELECT user_id FROM user_profiles WHERE username = :loginIdentifier)";
+		return this.jdbcClient.sql(FIND_USER_QUERY.formatted(this.emailsColumns, condition))
+			.param("loginIdentifier", loginIdentifier)
+			.query(userRowMapper)
+			.optional();
 	}
 
 	private <T extends User> CursorPage<T, Long> findUsersByType(CursorPageRequest<Long> pageRequest, String nextQuery,
 			String previousQuery, Class<T> userType) {
+		return findUsersByType(pageRequest, nextQuery, previousQuery, null, userType);
+	}
+
+	private <T extends User> CursorPage<T, Long> findUsersByType(CursorPageRequest<Long> pageRequest, String nextQuery,
+			String previousQuery, @Nullable String search, Class<T> userType) {
 		Optional<Long> cursor = pageRequest.cursorOptional();
 		int pageSizePlus1 = pageRequest.pageSize() + 1;
 		Navigation navigation = pageRequest.navigation();
 
-		List<T> contentPlus1 = this.jdbcClient.sql(navigation.isNext() ? nextQuery : previousQuery)
+		StatementSpec statement = this.jdbcClient.sql(navigation.isNext() ? nextQuery : previousQuery)
 			.param("cursor", cursor.orElse(navigation.isNext() ? Long.MAX_VALUE : Long.MIN_VALUE))
-			.param("limit", pageSizePlus1)
-			.query(userRowMapper)
-			.list()
-			.stream()
-			.map(userType::cast)
-			.toList();
+			.param("limit", pageSizePlus1);
+		if (search != null) {
+			statement = statement.param("pattern", searchPattern(search));
+		}
+		List<T> contentPlus1 = statement.query(userRowMapper).list().stream().map(userType::cast).toList();
 
 		boolean hasPrevious;
 		boolean hasNext;
@@ -322,49 +712,61 @@ public class UserMapper {
 		return new CursorPage<>(content, pageRequest.pageSize(), User::userId, hasPrevious, hasNext);
 	}
 
-	public CursorPage<ActiveUser, Long> findActiveUsers(CursorPageRequest<Long> pageRequest) {
+	/**
+	 * Escapes the {@code LIKE} wildcards in the search term and matches it anywhere.
+	 */
+	static String searchPattern(String search) {
+		if (search.length() < MIN_SEARCH_LENGTH) {
+			throw new IllegalArgumentException(
+					"Search term must have at least " + MIN_SEARCH_LENGTH + " characters: " + search);
+		}
+		String escaped = search.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+		return "%" + escaped + "%";
+	}
+
+	private <T extends User> CursorPage<T, Long> findUsersFromReadModel(CursorPageRequest<Long> pageRequest,
+			@Nullable String type, @Nullable String search, Class<T> userType) {
+		String typeCondition = type == null ? "" : "type = '%s' AND ".formatted(type);
+		String searchCondition = search == null ? "" : SEARCH_CONDITION;
 		String nextQuery = """
-				SELECT
-				    u.user_id,
-				    'active' AS type,
-				    CASE
-				        WHEN adu.user_id IS NOT NULL THEN TRUE
-				        ELSE FALSE
-				    END AS is_admin,
-				    up.username,
-				    up.display_name,
-				    COALESCE(
-				        jsonb_agg(
-				            jsonb_build_object(
-				                'email', ue.email,
-				                'isPrimary', CASE WHEN upe.email = ue.email THEN TRUE ELSE FALSE END
-				            ) ORDER BY
-				                CASE WHEN upe.email = ue.email THEN 0 ELSE 1 END,  -- Primary first
-				                ue.created_at
-				        ) FILTER (WHERE ue.email IS NOT NULL),
-				        '[]'::jsonb
-				    ) AS emails
-				FROM
-				    users u
-				    INNER JOIN active_users au ON u.user_id = au.user_id
-				    LEFT JOIN admin_users adu ON au.user_id = adu.user_id
-				    LEFT JOIN user_profiles up ON u.user_id = up.user_id
-				    LEFT JOIN user_emails ue ON u.user_id = ue.user_id
-				    LEFT JOIN user_primary_emails upe ON u.user_id = upe.user_id
-				WHERE u.user_id < :cursor
-				GROUP BY
-				    u.user_id,
-				    au.user_id,
-				    adu.user_id,
-				    up.username,
-				    up.display_name
-				ORDER BY u.user_id DESC
+				SELECT * FROM user_read_model
+				WHERE %s%suser_id < :cursor
+				ORDER BY user_id DESC
 				LIMIT :limit
-				""";
+				""".formatted(typeCondition, searchCondition);
 
 		String previousQuery = """
-				WITH page AS (SELECT
-				    u.user_id,
+				WITH page AS (SELECT * FROM user_read_model
+				WHERE %s%suser_id > :cursor
+				ORDER BY user_id ASC
+				LIMIT :limit)
+				SELECT * FROM page ORDER BY user_id DESC
+				""".formatted(typeCondition, searchCondition);
+
+		return findUsersByType(pageRequest, nextQuery, previousQuery, search, userType);
+	}
+
+	public CursorPage<ActiveUser, Long> findActiveUsers(CursorPageRequest<Long> pageRequest) {
+		return findActiveUsers(pageRequest, null);
+	}
+
+	/**
+	 * @param search term matched case-insensitively against any part of the username,
+	 * display name and email addresses, or {@code null} for all active users
+	 */
+	public CursorPage<ActiveUser, Long> findActiveUsers(CursorPageRequest<Long> pageRequest, @Nullable String search) {
+		if (this.readModel) {
+			return findUsersFromReadModel(pageRequest, "active", search, ActiveUser.class);
+		}
+		String searchCondition = search == null ? "" : SEARCH_CONDITION;
+		String query = """
+				WITH page_ids AS (
+				    SELECT user_id FROM active_users
+				    WHERE %s%s
+				    LIMIT :limit
+				)
+				SELECT
+				    p.user_id,
 				    'active' AS type,
 				    CASE
 				        WHEN adu.user_id IS NOT NULL THEN TRUE
@@ -372,118 +774,72 @@ public class UserMapper {
 				    END AS is_admin,
 				    up.username,
 				    up.display_name,
-				    COALESCE(
-				        jsonb_agg(
-				            jsonb_build_object(
-				                'email', ue.email,
-				                'isPrimary', CASE WHEN upe.email = ue.email THEN TRUE ELSE FALSE END
-				            ) ORDER BY
-				                CASE WHEN upe.email = ue.email THEN 0 ELSE 1 END,  -- Primary first
-				                ue.created_at
-				        ) FILTER (WHERE ue.email IS NOT NULL),
-				        '[]'::jsonb
-				    ) AS emails
+				    %s
 				FROM
-				    users u
-				    INNER JOIN active_users au ON u.user_id = au.user_id
-				    LEFT JOIN admin_users adu ON au.user_id = adu.user_id
-				    LEFT JOIN user_profiles up ON u.user_id = up.user_id
-				    LEFT JOIN user_emails ue ON u.user_id = ue.user_id
-				    LEFT JOIN user_primary_emails upe ON u.user_id = upe.user_id
-				WHERE u.user_id > :cursor
+				    page_ids p
+				    LEFT JOIN admin_users adu ON p.user_id = adu.user_id
+				    LEFT JOIN user_profiles up ON p.user_id = up.user_id
+				    LEFT JOIN user_emails ue ON p.user_id = ue.user_id
+				    LEFT JOIN user_primary_emails upe ON p.user_id = upe.user_id
 				GROUP BY
-				    u.user_id,
-				    au.user_id,
+				    p.user_id,
 				    adu.user_id,
 				    up.username,
 				    up.display_name
-				ORDER BY u.user_id ASC
-				LIMIT :limit)
-				SELECT * FROM page ORDER BY user_id DESC
+				ORDER BY p.user_id DESC
 				""";
 
-		return findUsersByType(pageRequest, nextQuery, previousQuery, ActiveUser.class);
+		return findUsersByType(pageRequest, query.formatted(searchCondition, NEXT_PAGE_IDS, this.emailsColumns),
+				query.formatted(searchCondition, PREVIOUS_PAGE_IDS, this.emailsColumns), search, ActiveUser.class);
 	}
 
 	public CursorPage<PendingUser, Long> findPendingUsers(CursorPageRequest<Long> pageRequest) {
-		String nextQuery = """
-				SELECT
-				    u.user_id,
-				    'pending' AS type,
-				    up.username,
-				    up.display_name,
-				    pu.activation_token,
-				    pu.expires_at,
-				    NULL AS deleted_at,
-				    COALESCE(
-				        jsonb_agg(
-				            jsonb_build_object(
-				                'email', ue.email,
-				                'isPrimary', CASE WHEN upe.email = ue.email THEN TRUE ELSE FALSE END
-				            ) ORDER BY
-				                CASE WHEN upe.email = ue.email THEN 0 ELSE 1 END,  -- Primary first
-				                ue.created_at
-				        ) FILTER (WHERE ue.email IS NOT NULL),
-				        '[]'::jsonb
-				    ) AS emails
-				FROM
-				    users u
-				    INNER JOIN pending_users pu ON u.user_id = pu.user_id
-				    LEFT JOIN user_profiles up ON u.user_id = up.user_id
-				    LEFT JOIN user_emails ue ON u.user_id = ue.user_id
-				    LEFT JOIN user_primary_emails upe ON u.user_id = upe.user_id
-				WHERE u.user_id < :cursor
-				GROUP BY
-				    u.user_id,
-				    pu.user_id,
-				    up.username,
-				    up.display_name,
-				    pu.activation_token,
-				    pu.expires_at
-				ORDER BY u.user_id DESC
-				LIMIT :limit
-				""";
+		return findPendingUsers(pageRequest, null);
+	}
 
-		String previousQuery = """
-				WITH page AS (SELECT
-				    u.user_id,
+	/**
+	 * @param search term matched case-insensitively against any part of the username,
+	 * display name and email addresses, or {@code null} for all pending users
+	 */
+	public CursorPage<PendingUser, Long> findPendingUsers(CursorPageRequest<Long> pageRequest,
+			@Nullable String search) {
+		if (this.readModel) {
+			return findUsersFromReadModel(pageRequest, "pending", search, PendingUser.class);
+		}
+		String searchCondition = search == null ? "" : SEARCH_CONDITION;
+		String query = """
+				WITH page_ids AS (
+				    SELECT user_id FROM pending_users
+				    WHERE %s%s
+				    LIMIT :limit
+				)
+				SELECT
+				    p.user_id,
 				    'pending' AS type,
 				    up.username,
 				    up.display_name,
 				    pu.activation_token,
 				    pu.expires_at,
 				    NULL AS deleted_at,
-				    COALESCE(
-				        jsonb_agg(
-				            jsonb_build_object(
-				                'email', ue.email,
-				                'isPrimary', CASE WHEN upe.email = ue.email THEN TRUE ELSE FALSE END
-				            ) ORDER BY
-				                CASE WHEN upe.email = ue.email THEN 0 ELSE 1 END,  -- Primary first
-				                ue.created_at
-				        ) FILTER (WHERE ue.email IS NOT NULL),
-				        '[]'::jsonb
-				    ) AS emails
+				    %s
 				FROM
-				    users u
-				    INNER JOIN pending_users pu ON u.user_id = pu.user_id
-				    LEFT JOIN user_profiles up ON u.user_id = up.user_id
-				    LEFT JOIN user_emails ue ON u.user_id = ue.user_id
-				    LEFT JOIN user_primary_emails upe ON u.user_id = upe.user_id
-				WHERE u.user_id > :cursor
+				    page_ids p
+				    INNER JOIN pending_users pu ON p.user_id = pu.user_id
+				    LEFT JOIN user_profiles up ON p.user_id = up.user_id
+				    LEFT JOIN user_emails ue ON p.user_id = ue.user_id
+				    LEFT JOIN user_primary_emails upe ON p.user_id = upe.user_id
 				GROUP BY
-				    u.user_id,
+				    p.user_id,
 				    pu.user_id,
 				    up.username,
 				    up.display_name,
 				    pu.activation_token,
 				    pu.expires_at
-				ORDER BY u.user_id ASC
-				LIMIT :limit)
-				SELECT * FROM page ORDER BY user_id DESC
+				ORDER BY p.user_id DESC
 				""";
 
-		return findUsersByType(pageRequest, nextQuery, previousQuery, PendingUser.class);
+		return findUsersByType(pageRequest, query.formatted(searchCondition, NEXT_PAGE_IDS, this.emailsColumns),
+				query.formatted(searchCondition, PREVIOUS_PAGE_IDS, this.emailsColumns), search, PendingUser.class);
 	}
 
 	public CursorPage<DeletedUser, Long> findDeletedUsers(CursorPageRequest<Long> pageRequest) {
@@ -518,9 +874,17 @@ public class UserMapper {
 	}
 
 	public CursorPage<User, Long> findUsers(CursorPageRequest<Long> pageRequest) {
-		String nextQuery = """
+		if (this.readModel) {
+			return findUsersFromReadModel(pageRequest, null, null, User.class);
+		}
+		String query = """
+				WITH page_ids AS (
+				    SELECT user_id FROM users
+				    WHERE %s
+				    LIMIT :limit
+				)
 				SELECT
-				    u.user_id,
+				    p.user_id,
 				    CASE
 				        WHEN au.user_id IS NOT NULL THEN 'active'
 				        WHEN pu.user_id IS NOT NULL THEN 'pending'
@@ -536,29 +900,18 @@ public class UserMapper {
 				    pu.activation_token,
 				    pu.expires_at,
 				    du.deleted_at,
-				    COALESCE(
-				        jsonb_agg(
-				            jsonb_build_object(
-				                'email', ue.email,
-				                'isPrimary', CASE WHEN upe.email = ue.email THEN TRUE ELSE FALSE END
-				            ) ORDER BY
-				                CASE WHEN upe.email = ue.email THEN 0 ELSE 1 END,  -- Primary first
-				                ue.created_at
-				        ) FILTER (WHERE ue.email IS NOT NULL),
-				        '[]'::jsonb
-				    ) AS emails
+				    %s
 				FROM
-				    users u
-				    LEFT JOIN pending_users pu ON u.user_id = pu.user_id
-				    LEFT JOIN active_users au ON u.user_id = au.user_id
+				    page_ids p
+				    LEFT JOIN pending_users pu ON p.user_id = pu.user_id
+				    LEFT JOIN active_users au ON p.user_id = au.user_id
 				    LEFT JOIN admin_users adu ON au.user_id = adu.user_id
-				    LEFT JOIN deleted_users du ON u.user_id = du.user_id
-				    LEFT JOIN user_profiles up ON u.user_id = up.user_id
-				    LEFT JOIN user_emails ue ON u.user_id = ue.user_id
-				    LEFT JOIN user_primary_emails upe ON u.user_id = upe.user_id
-				WHERE u.user_id < :cursor
+				    LEFT JOIN deleted_users du ON p.user_id = du.user_id
+				    LEFT JOIN user_profiles up ON p.user_id = up.user_id
+				    LEFT JOIN user_emails ue ON p.user_id = ue.user_id
+				    LEFT JOIN user_primary_emails upe ON p.user_id = upe.user_id
 				GROUP BY
-				    u.user_id,
+				    p.user_id,
 				    au.user_id,
 				    pu.user_id,
 				    du.user_id,
@@ -568,66 +921,21 @@ public class UserMapper {
 				    pu.activation_token,
 				    pu.expires_at,
 				    du.deleted_at
-				ORDER BY u.user_id DESC
-				LIMIT :limit
+				ORDER BY p.user_id DESC
 				""";
 
-		String previousQuery = """
-				WITH page AS (SELECT
-				    u.user_id,
-				    CASE
-				        WHEN au.user_id IS NOT NULL THEN 'active'
-				        WHEN pu.user_id IS NOT NULL THEN 'pending'
-				        WHEN du.user_id IS NOT NULL THEN 'deleted'
-				        ELSE 'unknown'
-				    END AS type,
-				    CASE
-				        WHEN adu.user_id IS NOT NULL THEN TRUE
-				        ELSE FALSE
-				    END AS is_admin,
-				    up.username,
-				    up.display_name,
-				    pu.activation_token,
-				    pu.expires_at,
-				    du.deleted_at,
-				    COALESCE(
-				        jsonb_agg(
-				            jsonb_build_object(
-				                'email', ue.email,
-				                'isPrimary', CASE WHEN upe.email = ue.email THEN TRUE ELSE FALSE END
-				            ) ORDER BY
-				                CASE WHEN upe.email = ue.email THEN 0 ELSE 1 END,  -- Primary first
-				                ue.created_at
-				        ) FILTER (WHERE ue.email IS NOT NULL),
-				        '[]'::jsonb
-				    ) AS emails
-				FROM
-				    users u
-				    LEFT JOIN pending_users pu ON u.user_id = pu.user_id
-				    LEFT JOIN active_users au ON u.user_id = au.user_id
-				    LEFT JOIN admin_users adu ON au.user_id = adu.user_id
-				    LEFT JOIN deleted_users du ON u.user_id = du.user_id
-				    LEFT JOIN user_profiles up ON u.user_id = up.user_id
-				    LEFT JOIN user_emails ue ON u.user_id = ue.user_id
-				    LEFT JOIN user_primary_emails upe ON u.user_id = upe.user_id
-				WHERE u.user_id > :cursor
-				GROUP BY
-				    u.user_id,
-				    au.user_id,
-				    pu.user_id,
-				    du.user_id,
-				    adu.user_id,
-				    up.username,
-				    up.display_name,
-				    pu.activation_token,
-				    pu.expires_at,
-				    du.deleted_at
-				ORDER BY u.user_id ASC
-				LIMIT :limit)
-				SELECT * FROM page ORDER BY user_id DESC
-				""";
+		return findUsersByType(pageRequest, query.formatted(NEXT_PAGE_IDS, this.emailsColumns),
+				query.formatted(PREVIOUS_PAGE_IDS, this.emailsColumns), User.class);
+	}
 
-		return findUsersByType(pageRequest, nextQuery, previousQuery, User.class);
+	/**
+	 * Outcome of {@link #activatePendingUser(UUID, OffsetDateTime)}.
+	 *
+	 * @param userId id of the pending user that had the token
+	 * @param activated whether the user was activated, or removed because the token had
+	 * expired
+	 */
+	public record Activation(long userId, boolean activated) {
 	}
 
 }
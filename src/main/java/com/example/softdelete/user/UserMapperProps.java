@@ -0,0 +1,34 @@
+package com.example.softdelete.user;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param readModel whether to read users from the denormalized {@code user_read_model}
+ * table instead of aggregating the normalized tables on every query. The triggers that
+ * maintain the table are only installed by the migrations while this is enabled, or while
+ * {@code user.mapper.read-model-triggers} overrides it. The setting must be the same on
+ * all nodes, see {@code R__user-read-model.sql} for turning it off in a rolling deployment
+ * @param emailsFormat how the aggregating queries return the emails of a user. Ignored
+ * when reading from the read model, which stores them as JSON
+ */
+@ConfigurationProperties(prefix = "user.mapper")
+public record UserMapperProps(@DefaultValue("false") boolean readModel,
+		@DefaultValue("json") EmailsFormat emailsFormat) {
+
+	public enum EmailsFormat {
+
+		/**
+		 * A {@code jsonb} array of objects, decoded with a streaming JSON parser.
+		 */
+		JSON,
+
+		/**
+		 * Parallel {@code text[]} and {@code boolean[]} arrays, decoded via
+		 * {@link java.sql.Array} without any JSON processing.
+		 */
+		ARRAY
+
+	}
+
+}
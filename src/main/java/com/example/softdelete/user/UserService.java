@@ -1,7 +1,7 @@
 package com.example.softdelete.user;
 
 import com.example.softdelete.notification.Notification;
-import com.example.softdelete.notification.NotificationSender;
+import com.example.softdelete.notification.outbox.NotificationOutbox;
 import java.net.URI;
 import java.time.Clock;
 import java.time.OffsetDateTime;
@@ -11,6 +11,7 @@ import java.util.Optional;
 import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.IdGenerator;
@@ -22,39 +23,47 @@ public class UserService {
 
 	private final UserMapper userMapper;
 
+	private final ApplicationEventPublisher eventPublisher;
+
 	private final UserDeletionEventMapper userDeletionEventMapper;
 
 	private final UserBanEventMapper userBanEventMapper;
 
-	private final NotificationSender notificationSender;
+	private final NotificationOutbox notificationOutbox;
 
 	private final IdGenerator idGenerator;
 
 	private final Clock clock;
 
-	public UserService(UserMapper userMapper, UserDeletionEventMapper userDeletionEventMapper,
-			UserBanEventMapper userBanEventMapper, NotificationSender notificationSender, IdGenerator idGenerator,
-			Clock clock) {
+	public UserService(UserMapper userMapper, ApplicationEventPublisher eventPublisher,
+			UserDeletionEventMapper userDeletionEventMapper, UserBanEventMapper userBanEventMapper,
+			NotificationOutbox notificationOutbox, IdGenerator idGenerator, Clock clock) {
 		this.userMapper = userMapper;
+		this.eventPublisher = eventPublisher;
 		this.userDeletionEventMapper = userDeletionEventMapper;
 		this.userBanEventMapper = userBanEventMapper;
-		this.notificationSender = notificationSender;
+		this.notificationOutbox = notificationOutbox;
 		this.idGenerator = idGenerator;
 		this.clock = clock;
 	}
 
 	@Transactional
 	public PendingUser registerUser(UserRegistration userRegistration, URI baseUrl) {
-		long userId = this.userMapper.insertUser();
 		UserProfile userProfile = new UserProfile(userRegistration.username(), userRegistration.displayName());
 		Email email = new Email(userRegistration.email(), true);
-		this.userMapper.insertUserProfile(userId, userProfile);
-		this.userMapper.insertUserEmail(userId, email);
 		OffsetDateTime now = OffsetDateTime.now(this.clock);
 		OffsetDateTime expiredAt = now.plusHours(3);
 		UUID activationToken = this.idGenerator.generateId();
+		long userId = this.userMapper.insertPendingUser(userProfile, email.email(), activationToken, expiredAt);
 		PendingUser pendingUser = new PendingUser(userId, userProfile, List.of(email), activationToken, expiredAt);
-		this.userMapper.insertPendingUser(pendingUser);
+		this.eventPublisher.publishEvent(new UserChangedEvent(userId, true));
+		this.notificationOutbox.enqueue(activationNotification(email.email(), userRegistration.displayName(), baseUrl,
+				activationToken, expiredAt));
+		return pendingUser;
+	}
+
+	static Notification activationNotification(String email, String displayName, URI baseUrl, UUID activationToken,
+			OffsetDateTime expiresAt) {
 		String content = """
 				Hello %s,
 
@@ -63,40 +72,19 @@ public class UserService {
 
 				This link will expire at %s.
 
-				Thank you!""".formatted(userRegistration.displayName(), baseUrl, activationToken, expiredAt);
-		Notification notification = new Notification(email.email(), "Activate your account", content);
-		this.notificationSender.sendNotification(notification);
-		return pendingUser;
+				Thank you!""".formatted(displayName, baseUrl, activationToken, expiresAt);
+		return new Notification(email, "Activate your account", content);
 	}
 
 	@Transactional
 	public ActivationResult activateUser(UUID activationToken) {
-		Optional<PendingUser> userOptional = this.userMapper.getPendingUserByToken(activationToken);
-		if (userOptional.isEmpty()) {
+		Optional<UserMapper.Activation> activation = this.userMapper.activatePendingUser(activationToken,
+				OffsetDateTime.now(this.clock));
+		if (activation.isEmpty()) {
 			return ActivationResult.USER_NOT_FOUND;
 		}
-		PendingUser pendingUser = userOptional.get();
-		ActivationResult result;
-		if (pendingUser.isExpired(this.clock)) {
-			result = ActivationResult.TOKEN_EXPIRED;
-		}
-		else if (!pendingUser.isValidToken(activationToken)) {
-			result = ActivationResult.INVALID_TOKEN;
-		}
-		else {
-			result = ActivationResult.SUCCESS;
-		}
-		long userId = pendingUser.userId();
-		this.userMapper.deletePendingUser(userId);
-		if (result == ActivationResult.SUCCESS) {
-			this.userMapper.insertActiveUser(userId);
-		}
-		else {
-			this.userMapper.deleteUserProfile(userId);
-			this.userMapper.deleteUserEmail(userId);
-			this.userMapper.deleteUser(userId);
-		}
-		return result;
+		this.eventPublisher.publishEvent(new UserChangedEvent(activation.get().userId()));
+		return activation.get().activated() ? ActivationResult.SUCCESS : ActivationResult.TOKEN_EXPIRED;
 	}
 
 	@Transactional
@@ -111,23 +99,22 @@ public class UserService {
 			throw new UserException("User is not active: " + userId);
 		}
 		this.userMapper.insertAdminUser(activeUser.userId());
+		this.eventPublisher.publishEvent(new UserChangedEvent(activeUser.userId()));
 		return new ActiveUser(activeUser.userId(), activeUser.userProfile(), activeUser.emails(), true);
 	}
 
 	private ActiveUser deleteActiveUserInternal(long userId) {
-		User user = this.userMapper.findUser(userId).orElseThrow(() -> new UserException("User not found: " + userId));
-		if (user instanceof DeletedUser) {
-			throw new UserException("User is already deleted: " + userId);
-		}
-		if (!(user instanceof ActiveUser activeUser)) {
+		Optional<ActiveUser> activeUser = this.userMapper.deleteActiveUserAtomically(userId);
+		if (activeUser.isEmpty()) {
+			User user = this.userMapper.findUser(userId)
+				.orElseThrow(() -> new UserException("User not found: " + userId));
+			if (user instanceof DeletedUser) {
+				throw new UserException("User is already deleted: " + userId);
+			}
 			throw new UserException("User is not active: " + userId);
 		}
-		this.userMapper.deleteAdminUser(userId);
-		this.userMapper.deleteActiveUser(userId);
-		this.userMapper.deleteUserProfile(userId);
-		this.userMapper.deleteUserEmail(userId);
-		this.userMapper.insertDeletedUser(userId);
-		return activeUser;
+		this.eventPublisher.publishEvent(new UserChangedEvent(userId));
+		return activeUser.get();
 	}
 
 	@Transactional
@@ -170,6 +157,7 @@ public class UserService {
 		if (email.isPrimary()) {
 			this.userMapper.updatePrimaryEmail(userId, email.email());
 		}
+		this.eventPublisher.publishEvent(new UserChangedEvent(userId, true));
 
 		// Return updated user
 		return (ActiveUser) this.userMapper.findUser(userId)
@@ -200,6 +188,7 @@ public class UserService {
 		}
 
 		this.userMapper.deleteUserEmail(userId, email);
+		this.eventPublisher.publishEvent(new UserChangedEvent(userId));
 
 		// Return updated user
 		return (ActiveUser) this.userMapper.findUser(userId)
@@ -220,6 +209,7 @@ public class UserService {
 		}
 
 		this.userMapper.updatePrimaryEmail(userId, email);
+		this.eventPublisher.publishEvent(new UserChangedEvent(userId));
 
 		// Return updated user
 		return (ActiveUser) this.userMapper.findUser(userId)
@@ -0,0 +1,48 @@
+package com.example.softdelete.user;
+
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class UserStateCountMapper {
+
+	private final JdbcClient jdbcClient;
+
+	public UserStateCountMapper(JdbcClient jdbcClient) {
+		this.jdbcClient = jdbcClient;
+	}
+
+	/**
+	 * Sums the counter shards maintained by the triggers on the subtype tables.
+	 */
+	public UserStateCounts countUserStates() {
+		return this.jdbcClient.sql("""
+				SELECT
+				    COALESCE(SUM(count) FILTER (WHERE state = 'active'), 0) AS active,
+				    COALESCE(SUM(count) FILTER (WHERE state = 'pending'), 0) AS pending,
+				    COALESCE(SUM(count) FILTER (WHERE state = 'deleted'), 0) AS deleted
+				FROM user_state_counts
+				""")
+			.query((rs, rowNum) -> new UserStateCounts(rs.getLong("active"), rs.getLong("pending"),
+					rs.getLong("deleted"), false))
+			.single();
+	}
+
+	/**
+	 * Reads the row estimates of the subtype tables as of their last {@code VACUUM} or
+	 * {@code ANALYZE}. A table that was never analyzed counts as empty.
+	 */
+	public UserStateCounts estimateUserStates() {
+		return this.jdbcClient
+			.sql("""
+					SELECT
+					    GREATEST((SELECT reltuples FROM pg_class WHERE oid = 'active_users'::regclass), 0)::BIGINT AS active,
+					    GREATEST((SELECT reltuples FROM pg_class WHERE oid = 'pending_users'::regclass), 0)::BIGINT AS pending,
+					    GREATEST((SELECT reltuples FROM pg_class WHERE oid = 'deleted_users'::regclass), 0)::BIGINT AS deleted
+					""")
+			.query((rs, rowNum) -> new UserStateCounts(rs.getLong("active"), rs.getLong("pending"),
+					rs.getLong("deleted"), true))
+			.single();
+	}
+
+}
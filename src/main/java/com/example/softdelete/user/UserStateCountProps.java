@@ -0,0 +1,16 @@
+package com.example.softdelete.user;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param estimated whether to report the planner estimates of the subtype tables instead
+ * of the exact counts maintained by triggers
+ * @param gaugeTimeToLive how long the {@code users} gauges reuse the counts they read
+ */
+@ConfigurationProperties(prefix = "user.state-counts")
+public record UserStateCountProps(@DefaultValue("false") boolean estimated,
+		@DefaultValue("10s") Duration gaugeTimeToLive) {
+
+}
@@ -0,0 +1,61 @@
+package com.example.softdelete.user;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Locale;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Number of users in each state, for the admin dashboard and the {@code users} gauges.
+ * <p>
+ * Exact counts come from {@code user_state_counts}, which triggers keep up to date in the
+ * same transaction as every state transition. Planner estimates are available as a
+ * cheaper alternative that needs no counters, but may lag behind by the changes since the
+ * last {@code ANALYZE}.
+ */
+@Component
+public class UserStateCounter {
+
+	private final UserStateCountMapper userStateCountMapper;
+
+	private final UserStateCountProps props;
+
+	@Nullable
+	private volatile GaugeSnapshot gaugeSnapshot;
+
+	public UserStateCounter(UserStateCountMapper userStateCountMapper, UserStateCountProps props,
+			MeterRegistry meterRegistry) {
+		this.userStateCountMapper = userStateCountMapper;
+		this.props = props;
+		for (UserType type : UserType.values()) {
+			Gauge.builder("users", this, counter -> counter.gaugeCounts().count(type))
+				.description("Number of users in the state")
+				.tag("state", type.name().toLowerCase(Locale.ROOT))
+				.register(meterRegistry);
+		}
+	}
+
+	public UserStateCounts counts() {
+		return this.props.estimated() ? this.userStateCountMapper.estimateUserStates()
+				: this.userStateCountMapper.countUserStates();
+	}
+
+	/**
+	 * Returns counts shared by the gauges of all states, so that a scrape reads them only
+	 * once.
+	 */
+	private UserStateCounts gaugeCounts() {
+		GaugeSnapshot snapshot = this.gaugeSnapshot;
+		long now = System.nanoTime();
+		if (snapshot == null || now - snapshot.readAt() > this.props.gaugeTimeToLive().toNanos()) {
+			snapshot = new GaugeSnapshot(counts(), now);
+			this.gaugeSnapshot = snapshot;
+		}
+		return snapshot.counts();
+	}
+
+	private record GaugeSnapshot(UserStateCounts counts, long readAt) {
+	}
+
+}
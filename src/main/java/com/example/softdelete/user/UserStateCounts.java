@@ -0,0 +1,18 @@
+package com.example.softdelete.user;
+
+/**
+ * Number of users in each state.
+ *
+ * @param estimated whether the numbers are planner estimates rather than exact counts
+ */
+public record UserStateCounts(long active, long pending, long deleted, boolean estimated) {
+
+	public long count(UserType type) {
+		return switch (type) {
+			case ACTIVE -> this.active;
+			case PENDING -> this.pending;
+			case DELETED -> this.deleted;
+		};
+	}
+
+}
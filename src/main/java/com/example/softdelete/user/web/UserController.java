@@ -1,11 +1,10 @@
 package com.example.softdelete.user.web;
 
 import com.example.softdelete.security.ActiveUserDetails;
-import com.example.softdelete.user.ActiveUser;
+import com.example.softdelete.security.CurrentUser;
 import com.example.softdelete.user.Email;
 import com.example.softdelete.user.UserService;
 import java.util.UUID;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
@@ -20,8 +19,11 @@ public class UserController {
 
 	private final UserService userService;
 
-	public UserController(UserService userService) {
+	private final CurrentUser currentUser;
+
+	public UserController(UserService userService, CurrentUser currentUser) {
 		this.userService = userService;
+		this.currentUser = currentUser;
 	}
 
 	@GetMapping(path = "/")
@@ -30,9 +32,9 @@ public class UserController {
 	}
 
 	@GetMapping(path = "/account")
-	public String showUserAccount(@AuthenticationPrincipal ActiveUserDetails userDetails, Model model,
-			@RequestParam(required = false) String emailError, @RequestParam(required = false) String emailSuccess) {
-		model.addAttribute("user", userDetails.getActiveUser());
+	public String showUserAccount(Model model, @RequestParam(required = false) String emailError,
+			@RequestParam(required = false) String emailSuccess) {
+		model.addAttribute("user", this.currentUser.get());
 		if (emailError != null) {
 			model.addAttribute("emailError", emailError);
 		}
@@ -84,8 +86,7 @@ public class UserController {
 
 	@PostMapping(path = "/delete")
 	public String processDeleteUser(@AuthenticationPrincipal ActiveUserDetails userDetails) {
-		ActiveUser activeUser = userDetails.getActiveUser();
-		this.userService.deleteUser(activeUser.userId());
+		this.userService.deleteUser(userDetails.getUserId());
 		return "redirect:/goodbye";
 	}
 
@@ -99,16 +100,8 @@ public class UserController {
 	public String addEmail(@AuthenticationPrincipal ActiveUserDetails userDetails, @RequestParam String email,
 			@RequestParam(required = false) boolean isPrimary) {
 		try {
-			ActiveUser activeUser = userDetails.getActiveUser();
 			Email emailToAdd = new Email(email, isPrimary);
-			ActiveUser updatedUser = this.userService.addEmail(activeUser.userId(), emailToAdd);
-
-			// Update security context with updated user information
-			ActiveUserDetails updatedUserDetails = new ActiveUserDetails(updatedUser);
-			UsernamePasswordAuthenticationToken updatedAuth = new UsernamePasswordAuthenticationToken(
-					updatedUserDetails, null, updatedUserDetails.getAuthorities());
-			SecurityContextHolder.getContext().setAuthentication(updatedAuth);
-
+			this.userService.addEmail(userDetails.getUserId(), emailToAdd);
 			return "redirect:/account?emailSuccess=Email+address+added+successfully";
 		}
 		catch (UserService.UserException e) {
@@ -119,15 +112,7 @@ public class UserController {
 	@PostMapping(path = "/account/remove-email")
 	public String removeEmail(@AuthenticationPrincipal ActiveUserDetails userDetails, @RequestParam String email) {
 		try {
-			ActiveUser activeUser = userDetails.getActiveUser();
-			ActiveUser updatedUser = this.userService.removeEmail(activeUser.userId(), email);
-
-			// Update security context with updated user information
-			ActiveUserDetails updatedUserDetails = new ActiveUserDetails(updatedUser);
-			UsernamePasswordAuthenticationToken updatedAuth = new UsernamePasswordAuthenticationToken(
-					updatedUserDetails, null, updatedUserDetails.getAuthorities());
-			SecurityContextHolder.getContext().setAuthentication(updatedAuth);
-
+			this.userService.removeEmail(userDetails.getUserId(), email);
 			return "redirect:/account?emailSuccess=Email+address+removed+successfully";
 		}
 		catch (UserService.UserException e) {
@@ -138,15 +123,7 @@ public class UserController {
 	@PostMapping(path = "/account/set-primary-email")
 	public String setPrimaryEmail(@AuthenticationPrincipal ActiveUserDetails userDetails, @RequestParam String email) {
 		try {
-			ActiveUser activeUser = userDetails.getActiveUser();
-			ActiveUser updatedUser = this.userService.setPrimaryEmail(activeUser.userId(), email);
-
-			// Update security context with updated user information
-			ActiveUserDetails updatedUserDetails = new ActiveUserDetails(updatedUser);
-			UsernamePasswordAuthenticationToken updatedAuth = new UsernamePasswordAuthenticationToken(
-					updatedUserDetails, null, updatedUserDetails.getAuthorities());
-			SecurityContextHolder.getContext().setAuthentication(updatedAuth);
-
+			this.userService.setPrimaryEmail(userDetails.getUserId(), email);
 			return "redirect:/account?emailSuccess=Primary+email+updated+successfully";
 		}
 		catch (UserService.UserException e) {
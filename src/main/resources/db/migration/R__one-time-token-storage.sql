@@ -0,0 +1,117 @@
+-- Storage of one_time_tokens, chosen by ott.token.storage:
+--   logged       a regular table
+--   unlogged     skips the WAL, so tokens are neither replicated nor kept after a crash,
+--                which only costs users a new magic link
+--   partitioned  hourly partitions by expiry, which are dropped as a whole once expired
+--                instead of deleting and vacuuming the rows one by one
+-- Flyway reapplies this migration whenever the setting changes, since the placeholder is
+-- part of its checksum. Unexpired tokens are kept when the table is rebuilt.
+
+-- Creates the hourly partitions up to the given time. A range whose tokens already went
+-- to the default partition is skipped, they are purged from there.
+CREATE OR REPLACE FUNCTION create_one_time_token_partitions(until TIMESTAMP WITH TIME ZONE)
+    RETURNS VOID AS
+$$
+DECLARE
+    hour_start TIMESTAMP WITH TIME ZONE := date_trunc('hour', now(), 'UTC');
+BEGIN
+    WHILE hour_start < until LOOP
+        IF to_regclass('one_time_tokens_p' || to_char(hour_start AT TIME ZONE 'UTC', 'YYYYMMDDHH24')) IS NULL
+            AND NOT EXISTS (SELECT 1 FROM one_time_tokens_default
+                            WHERE expires_at >= hour_start AND expires_at < hour_start + interval '1 hour') THEN
+            EXECUTE format('CREATE TABLE %I PARTITION OF one_time_tokens FOR VALUES FROM (%L) TO (%L)',
+                           'one_time_tokens_p' || to_char(hour_start AT TIME ZONE 'UTC', 'YYYYMMDDHH24'),
+                           hour_start, hour_start + interval '1 hour');
+        END IF;
+        hour_start := hour_start + interval '1 hour';
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Drops the partitions whose tokens all expired before the given time and deletes the
+-- expired tokens of the default partition. Returns the number of purged tokens, estimated
+-- from the statistics for dropped partitions. Dropping a partition briefly locks the
+-- whole table, so it gives up instead of queueing behind token lookups and retries on
+-- the next run.
+CREATE OR REPLACE FUNCTION purge_one_time_token_partitions(expired_before TIMESTAMP WITH TIME ZONE)
+    RETURNS BIGINT AS
+$$
+DECLARE
+    partition_name TEXT;
+    purged BIGINT := 0;
+    deleted BIGINT;
+BEGIN
+    PERFORM set_config('lock_timeout', '1s', TRUE);
+    FOR partition_name, deleted IN
+        SELECT c.relname, greatest(c.reltuples, 0)::BIGINT
+        FROM pg_inherits i
+                 JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'one_time_tokens'::regclass
+          AND c.relname ~ '^one_time_tokens_p[0-9]{10}$'
+          AND to_timestamp(substr(c.relname, 18), 'YYYYMMDDHH24')::TIMESTAMP AT TIME ZONE 'UTC'
+                  + interval '1 hour' <= expired_before
+        ORDER BY c.relname
+    LOOP
+        BEGIN
+            EXECUTE format('DROP TABLE %I', partition_name);
+            purged := purged + deleted;
+        EXCEPTION
+            WHEN lock_not_available THEN
+                RAISE NOTICE 'Skipped dropping % because one_time_tokens is busy', partition_name;
+                EXIT;
+        END;
+    END LOOP;
+    DELETE FROM one_time_tokens_default WHERE expires_at < expired_before;
+    GET DIAGNOSTICS deleted = ROW_COUNT;
+    RETURN purged + deleted;
+END;
+$$ LANGUAGE plpgsql;
+
+DO
+$$
+DECLARE
+    storage TEXT := lower('${ott_token_storage}');
+    is_partitioned BOOLEAN := EXISTS (SELECT 1 FROM pg_partitioned_table
+                                      WHERE partrelid = 'one_time_tokens'::regclass);
+BEGIN
+    IF storage NOT IN ('logged', 'unlogged', 'partitioned') THEN
+        RAISE EXCEPTION 'Unsupported one_time_tokens storage: %', storage;
+    END IF;
+    IF (storage = 'partitioned') <> is_partitioned THEN
+        IF storage = 'partitioned' THEN
+            -- The primary key of a partitioned table must contain the partition key
+            CREATE TABLE one_time_tokens_new (
+                token_value VARCHAR(36) NOT NULL,
+                username VARCHAR(128) NOT NULL,
+                expires_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                CONSTRAINT one_time_tokens_new_pkey PRIMARY KEY (token_value, expires_at)
+            ) PARTITION BY RANGE (expires_at);
+            CREATE TABLE one_time_tokens_default PARTITION OF one_time_tokens_new DEFAULT;
+        ELSE
+            CREATE TABLE one_time_tokens_new (
+                token_value VARCHAR(36) NOT NULL,
+                username VARCHAR(128) NOT NULL,
+                expires_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                CONSTRAINT one_time_tokens_new_pkey PRIMARY KEY (token_value)
+            );
+        END IF;
+        INSERT INTO one_time_tokens_new (token_value, username, expires_at)
+        SELECT token_value, username, expires_at FROM one_time_tokens WHERE expires_at > now();
+        DROP TABLE one_time_tokens;
+        ALTER TABLE one_time_tokens_new RENAME TO one_time_tokens;
+        ALTER TABLE one_time_tokens RENAME CONSTRAINT one_time_tokens_new_pkey TO one_time_tokens_pkey;
+        CREATE INDEX idx_one_time_tokens_username ON one_time_tokens (username);
+        CREATE INDEX idx_one_time_tokens_expires_at ON one_time_tokens (expires_at);
+    END IF;
+    IF storage = 'partitioned' THEN
+        -- Rows moved from the old table went to the default partition
+        PERFORM create_one_time_token_partitions(now() + interval '3 hours');
+    ELSIF storage = 'unlogged'
+        AND (SELECT relpersistence FROM pg_class WHERE oid = 'one_time_tokens'::regclass) = 'p' THEN
+        ALTER TABLE one_time_tokens SET UNLOGGED;
+    ELSIF storage = 'logged'
+        AND (SELECT relpersistence FROM pg_class WHERE oid = 'one_time_tokens'::regclass) = 'u' THEN
+        ALTER TABLE one_time_tokens SET LOGGED;
+    END IF;
+END
+$$;
@@ -0,0 +1,71 @@
+-- Triggers that keep user_read_model up to date, installed only when user.mapper.read-model
+-- is enabled. Every write to a table that makes up a user costs one aggregate query and one
+-- upsert per changed row, which is not worth paying while nothing reads the table.
+-- Enabling the read model rebuilds the table from user_read_model_source, disabling it
+-- drops the triggers and empties the table.
+-- Flyway reapplies this migration whenever the setting changes, since the placeholder is
+-- part of its checksum. The setting must therefore be the same on all nodes, otherwise
+-- every restarted node rebuilds or empties the table in turn. A node that reads the read
+-- model fails to sign users in while the table is empty, so to turn the read model off in
+-- a rolling deployment, first roll out user.mapper.read-model=false together with
+-- user.mapper.read-model-triggers=true, and remove the override once no node reads the
+-- table any more.
+
+-- Locks the users row first, so that concurrent transactions changing the same user
+-- refresh one after the other and the last one sees the committed state of the others.
+-- FOR NO KEY UPDATE does not conflict with the key share locks that foreign keys to users
+-- take, which would otherwise deadlock two transactions inserting emails of the same user.
+CREATE OR REPLACE FUNCTION refresh_user_read_model(p_user_id BIGINT)
+    RETURNS VOID AS
+$$
+BEGIN
+    PERFORM 1 FROM users WHERE user_id = p_user_id FOR NO KEY UPDATE;
+    INSERT INTO user_read_model (user_id, type, is_admin, username, display_name, activation_token, expires_at,
+                                 deleted_at, emails)
+    SELECT *
+    FROM user_read_model_source
+    WHERE user_id = p_user_id
+    ON CONFLICT (user_id) DO UPDATE SET
+        type = EXCLUDED.type,
+        is_admin = EXCLUDED.is_admin,
+        username = EXCLUDED.username,
+        display_name = EXCLUDED.display_name,
+        activation_token = EXCLUDED.activation_token,
+        expires_at = EXCLUDED.expires_at,
+        deleted_at = EXCLUDED.deleted_at,
+        emails = EXCLUDED.emails;
+    IF NOT FOUND
+    THEN
+        DELETE FROM user_read_model WHERE user_id = p_user_id;
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+DO
+$$
+DECLARE
+    read_model TEXT := lower('${user_read_model}');
+    table_name TEXT;
+BEGIN
+    IF read_model NOT IN ('true', 'false') THEN
+        RAISE EXCEPTION 'Unsupported user_read_model setting: %', read_model;
+    END IF;
+    FOREACH table_name IN ARRAY ARRAY ['users', 'pending_users', 'active_users', 'deleted_users', 'admin_users',
+        'user_profiles', 'user_emails', 'user_primary_emails']
+    LOOP
+        EXECUTE format('DROP TRIGGER IF EXISTS %I ON %I', 'refresh_read_model_' || table_name, table_name);
+        IF read_model = 'true' THEN
+            EXECUTE format('CREATE TRIGGER %I AFTER INSERT OR UPDATE OR DELETE ON %I FOR EACH ROW '
+                               || 'EXECUTE FUNCTION user_read_model_trigger()',
+                           'refresh_read_model_' || table_name, table_name);
+        END IF;
+    END LOOP;
+    TRUNCATE user_read_model;
+    IF read_model = 'true' THEN
+        INSERT INTO user_read_model (user_id, type, is_admin, username, display_name, activation_token, expires_at,
+                                     deleted_at, emails)
+        SELECT *
+        FROM user_read_model_source;
+    END IF;
+END
+$$;
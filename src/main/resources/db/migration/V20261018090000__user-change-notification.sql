@@ -0,0 +1,58 @@
+-- Broadcast the affected user_id on every change to the tables that make up a user.
+-- Notifications are delivered on commit only, so listeners never observe uncommitted state.
+
+CREATE OR REPLACE FUNCTION notify_user_changed()
+    RETURNS TRIGGER AS
+$$
+BEGIN
+    IF TG_OP = 'DELETE'
+    THEN
+        PERFORM pg_notify('user_changed', OLD.user_id::text);
+    ELSE
+        PERFORM pg_notify('user_changed', NEW.user_id::text);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER notify_pending_users_changed
+    AFTER INSERT OR UPDATE OR DELETE
+    ON pending_users
+    FOR EACH ROW
+EXECUTE FUNCTION notify_user_changed();
+
+CREATE TRIGGER notify_active_users_changed
+    AFTER INSERT OR UPDATE OR DELETE
+    ON active_users
+    FOR EACH ROW
+EXECUTE FUNCTION notify_user_changed();
+
+CREATE TRIGGER notify_deleted_users_changed
+    AFTER INSERT OR UPDATE OR DELETE
+    ON deleted_users
+    FOR EACH ROW
+EXECUTE FUNCTION notify_user_changed();
+
+CREATE TRIGGER notify_admin_users_changed
+    AFTER INSERT OR UPDATE OR DELETE
+    ON admin_users
+    FOR EACH ROW
+EXECUTE FUNCTION notify_user_changed();
+
+CREATE TRIGGER notify_user_profiles_changed
+    AFTER INSERT OR UPDATE OR DELETE
+    ON user_profiles
+    FOR EACH ROW
+EXECUTE FUNCTION notify_user_changed();
+
+CREATE TRIGGER notify_user_emails_changed
+    AFTER INSERT OR UPDATE OR DELETE
+    ON user_emails
+    FOR EACH ROW
+EXECUTE FUNCTION notify_user_changed();
+
+CREATE TRIGGER notify_user_primary_emails_changed
+    AFTER INSERT OR UPDATE OR DELETE
+    ON user_primary_emails
+    FOR EACH ROW
+EXECUTE FUNCTION notify_user_changed();
@@ -0,0 +1,88 @@
+-- Denormalized read model: one row per user with the same shape as UserMapper#findUser.
+-- Kept up to date transactionally by row triggers on every table that makes up a user,
+-- so reads within the writing transaction already see the new state. The triggers are
+-- installed and the table is filled by R__user-read-model.sql, only while the read model
+-- is enabled.
+CREATE TABLE user_read_model (
+    user_id BIGINT PRIMARY KEY,
+    type VARCHAR(16) NOT NULL,
+    is_admin BOOLEAN NOT NULL DEFAULT FALSE,
+    username VARCHAR(50),
+    display_name VARCHAR(100),
+    activation_token UUID,
+    expires_at TIMESTAMP WITH TIME ZONE,
+    deleted_at TIMESTAMP WITH TIME ZONE,
+    emails JSONB NOT NULL DEFAULT '[]'::jsonb
+);
+
+CREATE INDEX idx_user_read_model_type_user_id ON user_read_model(type, user_id);
+CREATE INDEX idx_user_read_model_username ON user_read_model(username);
+CREATE INDEX idx_user_read_model_activation_token ON user_read_model(activation_token);
+
+-- Same aggregate as UserMapper#findUser, for all users
+CREATE VIEW user_read_model_source AS
+SELECT
+    u.user_id,
+    CASE
+        WHEN au.user_id IS NOT NULL THEN 'active'
+        WHEN pu.user_id IS NOT NULL THEN 'pending'
+        WHEN du.user_id IS NOT NULL THEN 'deleted'
+        ELSE 'unknown'
+    END AS type,
+    CASE
+        WHEN adu.user_id IS NOT NULL THEN TRUE
+        ELSE FALSE
+    END AS is_admin,
+    up.username,
+    up.display_name,
+    pu.activation_token,
+    pu.expires_at,
+    du.deleted_at,
+    COALESCE(
+        jsonb_agg(
+            jsonb_build_object(
+                'email', ue.email,
+                'isPrimary', CASE WHEN upe.email = ue.email THEN TRUE ELSE FALSE END
+            ) ORDER BY
+                CASE WHEN upe.email = ue.email THEN 0 ELSE 1 END,  -- Primary first
+                ue.created_at
+        ) FILTER (WHERE ue.email IS NOT NULL),
+        '[]'::jsonb
+    ) AS emails
+FROM
+    users u
+    LEFT JOIN pending_users pu ON u.user_id = pu.user_id
+    LEFT JOIN active_users au ON u.user_id = au.user_id
+    LEFT JOIN admin_users adu ON au.user_id = adu.user_id
+    LEFT JOIN deleted_users du ON u.user_id = du.user_id
+    LEFT JOIN user_profiles up ON u.user_id = up.user_id
+    LEFT JOIN user_emails ue ON u.user_id = ue.user_id
+    LEFT JOIN user_primary_emails upe ON u.user_id = upe.user_id
+GROUP BY
+    u.user_id,
+    au.user_id,
+    pu.user_id,
+    du.user_id,
+    adu.user_id,
+    up.username,
+    up.display_name,
+    pu.activation_token,
+    pu.expires_at,
+    du.deleted_at;
+
+-- Calls refresh_user_read_model(BIGINT), which R__user-read-model.sql defines
+CREATE OR REPLACE FUNCTION user_read_model_trigger()
+    RETURNS TRIGGER AS
+$$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE')
+    THEN
+        PERFORM refresh_user_read_model(OLD.user_id);
+    END IF;
+    IF TG_OP = 'INSERT' OR (TG_OP = 'UPDATE' AND NEW.user_id <> OLD.user_id)
+    THEN
+        PERFORM refresh_user_read_model(NEW.user_id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
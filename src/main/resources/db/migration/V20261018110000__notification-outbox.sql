@@ -0,0 +1,15 @@
+-- Notifications written in the same transaction as the state change that triggers them
+-- and delivered afterwards by NotificationOutboxDispatcher
+CREATE TABLE notification_outbox (
+    outbox_id BIGSERIAL PRIMARY KEY,
+    recipient VARCHAR(255) NOT NULL,
+    subject VARCHAR(255) NOT NULL,
+    content TEXT NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    -- Also used as the lease of a claimed notification; NULL once delivery was given up
+    next_attempt_at TIMESTAMP WITH TIME ZONE,
+    last_error TEXT,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX idx_notification_outbox_next_attempt_at ON notification_outbox(next_attempt_at)
+    WHERE next_attempt_at IS NOT NULL;
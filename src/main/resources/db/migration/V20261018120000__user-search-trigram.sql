@@ -0,0 +1,8 @@
+-- Substring search on the admin dashboard
+-- B-tree indexes only serve equality and left-anchored patterns in the C locale, whereas
+-- trigram GIN indexes serve ILIKE '%term%' for any term of at least three characters
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX idx_user_profiles_username_trgm ON user_profiles USING GIN(username gin_trgm_ops);
+CREATE INDEX idx_user_profiles_display_name_trgm ON user_profiles USING GIN(display_name gin_trgm_ops);
+CREATE INDEX idx_user_emails_email_trgm ON user_emails USING GIN(email gin_trgm_ops);
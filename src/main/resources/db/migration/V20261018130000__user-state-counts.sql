@@ -0,0 +1,91 @@
+-- Number of users per state, so that the admin dashboard does not have to count the
+-- subtype tables. Each state is split into shard rows and every backend updates the shard
+-- of its process id, so that concurrent state transitions rarely wait for the same row
+-- lock. The count of a state is the sum of its shards.
+CREATE TABLE user_state_counts (
+    state VARCHAR(16) NOT NULL,
+    shard SMALLINT NOT NULL,
+    count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (state, shard)
+);
+
+-- Statement triggers with transition tables update the counter once per statement,
+-- however many rows it inserts or deletes
+CREATE OR REPLACE FUNCTION count_user_state_changes()
+    RETURNS TRIGGER AS
+$$
+DECLARE
+    delta BIGINT;
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        SELECT count(*) INTO delta FROM new_rows;
+    ELSE
+        SELECT -count(*) INTO delta FROM old_rows;
+    END IF;
+    IF delta <> 0 THEN
+        INSERT INTO user_state_counts (state, shard, count)
+        VALUES (TG_ARGV[0], pg_backend_pid() % 16, delta)
+        ON CONFLICT (state, shard) DO UPDATE SET count = user_state_counts.count + EXCLUDED.count;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER count_pending_users_insert
+    AFTER INSERT
+    ON pending_users
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION count_user_state_changes('pending');
+
+CREATE TRIGGER count_pending_users_delete
+    AFTER DELETE
+    ON pending_users
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION count_user_state_changes('pending');
+
+CREATE TRIGGER count_active_users_insert
+    AFTER INSERT
+    ON active_users
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION count_user_state_changes('active');
+
+CREATE TRIGGER count_active_users_delete
+    AFTER DELETE
+    ON active_users
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION count_user_state_changes('active');
+
+CREATE TRIGGER count_deleted_users_insert
+    AFTER INSERT
+    ON deleted_users
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION count_user_state_changes('deleted');
+
+CREATE TRIGGER count_deleted_users_delete
+    AFTER DELETE
+    ON deleted_users
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION count_user_state_changes('deleted');
+
+-- Resets the counters from the subtype tables, e.g. after loading data with triggers
+-- disabled or truncating a table
+CREATE OR REPLACE FUNCTION recount_user_states()
+    RETURNS VOID AS
+$$
+BEGIN
+    LOCK TABLE pending_users, active_users, deleted_users IN SHARE MODE;
+    DELETE FROM user_state_counts;
+    INSERT INTO user_state_counts (state, shard, count)
+    VALUES ('pending', 0, (SELECT count(*) FROM pending_users)),
+        ('active', 0, (SELECT count(*) FROM active_users)),
+        ('deleted', 0, (SELECT count(*) FROM deleted_users));
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT recount_user_states();
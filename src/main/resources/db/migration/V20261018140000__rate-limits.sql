@@ -0,0 +1,8 @@
+-- Buckets of the rate limits shared by all nodes, see PostgresRateLimiter. Each bucket
+-- is the theoretical arrival time of the next request of its key, a bucket whose time
+-- has passed is full and can be deleted. Unlogged, since losing the buckets on a crash
+-- only resets the limits.
+CREATE UNLOGGED TABLE rate_limits (
+    key TEXT PRIMARY KEY,
+    theoretical_arrival_time TIMESTAMP WITH TIME ZONE NOT NULL
+);
@@ -0,0 +1,14 @@
+-- HTTP sessions shared by all nodes, see JdbcSessionRepository. The attributes are
+-- encoded by SessionAttributesCodec. The expiry time is derived from the last access
+-- time and the timeout in seconds, so that expired sessions can be purged in bulk
+-- through its index.
+CREATE TABLE http_sessions (
+    session_id TEXT PRIMARY KEY,
+    creation_time TIMESTAMP WITH TIME ZONE NOT NULL,
+    last_accessed_time TIMESTAMP WITH TIME ZONE NOT NULL,
+    max_inactive_interval INTEGER NOT NULL,
+    expiry_time TIMESTAMP WITH TIME ZONE NOT NULL,
+    attributes BYTEA NOT NULL
+);
+
+CREATE INDEX http_sessions_expiry_time_idx ON http_sessions (expiry_time);
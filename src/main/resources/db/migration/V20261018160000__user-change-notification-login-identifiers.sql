@@ -0,0 +1,32 @@
+-- Flag notifications of changes that may give a user a new login identifier, i.e. a new or
+-- renamed username or a new email address, with a ",login" suffix. Listeners only forget the
+-- login identifiers they remembered as unknown for those.
+
+CREATE OR REPLACE FUNCTION notify_user_changed()
+    RETURNS TRIGGER AS
+$$
+DECLARE
+    adds_login_identifier BOOLEAN := FALSE;
+BEGIN
+    IF TG_OP = 'DELETE'
+    THEN
+        PERFORM pg_notify('user_changed', OLD.user_id::text);
+        RETURN NULL;
+    END IF;
+    -- Nested, since the columns only exist on their own table
+    IF TG_TABLE_NAME = 'user_profiles'
+    THEN
+        adds_login_identifier := TG_OP = 'INSERT' OR NEW.username IS DISTINCT FROM OLD.username;
+    ELSIF TG_TABLE_NAME = 'user_emails'
+    THEN
+        adds_login_identifier := TG_OP = 'INSERT' OR NEW.email IS DISTINCT FROM OLD.email;
+    END IF;
+    IF adds_login_identifier
+    THEN
+        PERFORM pg_notify('user_changed', NEW.user_id::text || ',login');
+    ELSE
+        PERFORM pg_notify('user_changed', NEW.user_id::text);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,4 @@
+-- Notifications that were given up are purged by NotificationOutboxHouseKeeper once their
+-- retention has passed
+CREATE INDEX idx_notification_outbox_abandoned_created_at ON notification_outbox(created_at)
+    WHERE next_attempt_at IS NULL;
@@ -24,6 +24,7 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.web.client.RestClient;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
 
 @Import(TestcontainersConfiguration.class)
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
@@ -136,14 +137,15 @@ class SoftDeleteApplicationTests {
 		assertThat(page.title()).isEqualTo("Account Registration");
 		assertThat(page.locator("h3.header").textContent()).isEqualTo("Check your email to activate the account.");
 
-		// Check activation email was sent
-		ResponseEntity<JsonNode> emailsResponse = restClient.get()
-			.uri("http://127.0.0.1:" + maildevPort + "/email")
-			.retrieve()
-			.toEntity(JsonNode.class);
-		assertThat(emailsResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
-		JsonNode emails = emailsResponse.getBody();
-		assertThat(emails).isNotNull();
+		// Check activation email was sent (asynchronously through the outbox)
+		JsonNode emails = await().until(() -> {
+			ResponseEntity<JsonNode> emailsResponse = restClient.get()
+				.uri("http://127.0.0.1:" + maildevPort + "/email")
+				.retrieve()
+				.toEntity(JsonNode.class);
+			assertThat(emailsResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+			return emailsResponse.getBody();
+		}, body -> body != null && !body.isEmpty());
 		assertThat(emails.size()).isEqualTo(1);
 
 		JsonNode activationEmail = emails.get(0);
@@ -264,14 +266,15 @@ class SoftDeleteApplicationTests {
 		assertThat(page.title()).isEqualTo("Account Registration");
 		assertThat(page.locator("h3.header").textContent()).isEqualTo("Check your email to activate the account.");
 
-		// Check activation email was sent
-		ResponseEntity<JsonNode> emailsResponse = restClient.get()
-			.uri("http://127.0.0.1:" + maildevPort + "/email")
-			.retrieve()
-			.toEntity(JsonNode.class);
-		assertThat(emailsResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
-		JsonNode emails = emailsResponse.getBody();
-		assertThat(emails).isNotNull();
+		// Check activation email was sent (asynchronously through the outbox)
+		JsonNode emails = await().until(() -> {
+			ResponseEntity<JsonNode> emailsResponse = restClient.get()
+				.uri("http://127.0.0.1:" + maildevPort + "/email")
+				.retrieve()
+				.toEntity(JsonNode.class);
+			assertThat(emailsResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+			return emailsResponse.getBody();
+		}, body -> body != null && !body.isEmpty());
 		assertThat(emails.size()).isEqualTo(1);
 
 		JsonNode activationEmail = emails.get(0);
@@ -785,14 +788,15 @@ class SoftDeleteApplicationTests {
 		assertThat(page.title()).isEqualTo("Account Registration");
 		assertThat(page.locator("h3.header").textContent()).isEqualTo("Check your email to activate the account.");
 
-		// Check activation email was sent
-		ResponseEntity<JsonNode> emailsResponse = restClient.get()
-			.uri("http://127.0.0.1:" + maildevPort + "/email")
-			.retrieve()
-			.toEntity(JsonNode.class);
-		assertThat(emailsResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
-		JsonNode emails = emailsResponse.getBody();
-		assertThat(emails).isNotNull();
+		// Check activation email was sent (asynchronously through the outbox)
+		JsonNode emails = await().until(() -> {
+			ResponseEntity<JsonNode> emailsResponse = restClient.get()
+				.uri("http://127.0.0.1:" + maildevPort + "/email")
+				.retrieve()
+				.toEntity(JsonNode.class);
+			assertThat(emailsResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+			return emailsResponse.getBody();
+		}, body -> body != null && !body.isEmpty());
 		assertThat(emails.size()).isEqualTo(1);
 
 		JsonNode activationEmail = emails.get(0);
@@ -909,14 +913,15 @@ class SoftDeleteApplicationTests {
 		assertThat(page.title()).isEqualTo("Account Registration");
 		assertThat(page.locator("h3.header").textContent()).isEqualTo("Check your email to activate the account.");
 
-		// Check activation email was sent
-		ResponseEntity<JsonNode> emailsResponse = restClient.get()
-			.uri("http://127.0.0.1:" + maildevPort + "/email")
-			.retrieve()
-			.toEntity(JsonNode.class);
-		assertThat(emailsResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
-		JsonNode emails = emailsResponse.getBody();
-		assertThat(emails).isNotNull();
+		// Check activation email was sent (asynchronously through the outbox)
+		JsonNode emails = await().until(() -> {
+			ResponseEntity<JsonNode> emailsResponse = restClient.get()
+				.uri("http://127.0.0.1:" + maildevPort + "/email")
+				.retrieve()
+				.toEntity(JsonNode.class);
+			assertThat(emailsResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+			return emailsResponse.getBody();
+		}, body -> body != null && !body.isEmpty());
 		assertThat(emails.size()).isEqualTo(1);
 
 		JsonNode activationEmail = emails.get(0);
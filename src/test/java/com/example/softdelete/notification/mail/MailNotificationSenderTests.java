@@ -0,0 +1,151 @@
+package com.example.softdelete.notification.mail;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import com.example.softdelete.notification.Notification;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.client.RestClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = { "maildev.port=0", "spring.http.client.factory=simple", "mail.pool.enabled=true" })
+@ActiveProfiles("mail")
+class MailNotificationSenderTests {
+
+	@Autowired
+	MailNotificationSender mailNotificationSender;
+
+	@Autowired
+	JavaMailSender mailSender;
+
+	RestClient restClient;
+
+	@BeforeEach
+	void setUp(@Autowired RestClient.Builder restClientBuilder, @Value("${maildev.port}") int maildevPort) {
+		this.restClient = restClientBuilder.baseUrl("http://127.0.0.1:" + maildevPort).build();
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.restClient.delete().uri("/email/all").retrieve().toBodilessEntity();
+	}
+
+	@Test
+	void sendNotificationsOverPooledConnections() {
+		assertThat(this.mailSender).isInstanceOf(PooledJavaMailSender.class);
+
+		this.mailNotificationSender.sendNotification(new Notification("single@example.com", "Single", "Hello"));
+		Map<Integer, RuntimeException> failures = this.mailNotificationSender
+			.sendNotifications(List.of(new Notification("batch1@example.com", "Batch", "Hello 1"),
+					new Notification("batch2@example.com", "Batch", "Hello 2"),
+					new Notification("batch3@example.com", "Batch", "Hello 3")));
+		this.mailNotificationSender.sendNotification(new Notification("reused@example.com", "Single", "Hello again"));
+
+		assertThat(failures).isEmpty();
+		JsonNode emails = this.restClient.get().uri("/email").retrieve().body(JsonNode.class);
+		assertThat(emails).isNotNull();
+		List<String> recipients = new ArrayList<>();
+		emails.forEach(email -> recipients.add(email.get("to").get(0).get("address").asText()));
+		assertThat(recipients).containsExactlyInAnyOrder("single@example.com", "batch1@example.com",
+				"batch2@example.com", "batch3@example.com", "reused@example.com");
+	}
+
+	@Test
+	void reusesOneSmtpConnectionAcrossSends(@Value("${spring.mail.port}") int smtpPort) {
+		AtomicInteger connections = new AtomicInteger();
+		PooledJavaMailSender mailSender = new PooledJavaMailSender(new MailPoolProps(true, 4, Duration.ofMinutes(1))) {
+			@Override
+			protected Transport connectTransport() throws MessagingException {
+				connections.incrementAndGet();
+				return super.connectTransport();
+			}
+		};
+		mailSender.setHost("localhost");
+		mailSender.setPort(smtpPort);
+		MailNotificationSender mailNotificationSender = new MailNotificationSender(mailSender);
+		try {
+			mailNotificationSender.sendNotification(new Notification("first@example.com", "Single", "Hello"));
+			assertThat(mailNotificationSender
+				.sendNotifications(List.of(new Notification("batch1@example.com", "Batch", "Hello 1"),
+						new Notification("batch2@example.com", "Batch", "Hello 2"))))
+				.isEmpty();
+			mailNotificationSender.sendNotification(new Notification("last@example.com", "Single", "Hello again"));
+		}
+		finally {
+			mailSender.destroy();
+		}
+
+		assertThat(connections).hasValue(1);
+	}
+
+	@Test
+	void closesExpiredConnectionsLeftBehindByBurst(@Value("${spring.mail.port}") int smtpPort) {
+		List<Transport> transports = new ArrayList<>();
+		// Every returned connection has expired by the next borrow or return
+		PooledJavaMailSender mailSender = new PooledJavaMailSender(new MailPoolProps(true, 4, Duration.ZERO)) {
+			@Override
+			protected Transport connectTransport() throws MessagingException {
+				Transport transport = super.connectTransport();
+				transports.add(transport);
+				if (transports.size() == 1) {
+					// A concurrent send opens a second connection, which is returned first
+					// and therefore ends up behind the first one
+					new MailNotificationSender(this)
+						.sendNotification(new Notification("concurrent@example.com", "Single", "Hello"));
+				}
+				return transport;
+			}
+		};
+		mailSender.setHost("localhost");
+		mailSender.setPort(smtpPort);
+		try {
+			new MailNotificationSender(mailSender)
+				.sendNotification(new Notification("first@example.com", "Single", "Hello"));
+
+			assertThat(transports).hasSize(2);
+			assertThat(transports.getFirst().isConnected()).isTrue();
+			assertThat(transports.getLast().isConnected()).isFalse();
+		}
+		finally {
+			mailSender.destroy();
+		}
+	}
+
+	@Test
+	void reportsFailuresOfIdenticalNotificationsByIndex() {
+		JavaMailSenderImpl failingSecondMessage = new JavaMailSenderImpl() {
+			@Override
+			protected void doSend(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) {
+				throw new MailSendException(
+						Map.<Object, Exception>of(mimeMessages[1], new MessagingException("Rejected")));
+			}
+		};
+		Notification notification = new Notification("same@example.com", "Same", "Same content");
+
+		Map<Integer, RuntimeException> failures = new MailNotificationSender(failingSecondMessage)
+			.sendNotifications(List.of(notification, notification, notification));
+
+		assertThat(failures).containsOnlyKeys(1);
+	}
+
+}
@@ -0,0 +1,192 @@
+package com.example.softdelete.notification.outbox;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import com.example.softdelete.notification.BatchNotificationSender;
+import com.example.softdelete.notification.Notification;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class NotificationOutboxDispatcherTests {
+
+	static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+	static final NotificationOutboxProps PROPS = new NotificationOutboxProps(10, Duration.ofSeconds(5),
+			Duration.ofMinutes(5), 3, Duration.ofSeconds(10), Duration.ofHours(1), Duration.ofDays(7));
+
+	static final Notification NOTIFICATION = new Notification("outbox@example.com", "Outbox", "Hello");
+
+	@Autowired
+	NotificationOutboxMapper notificationOutboxMapper;
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	MeterRegistry meterRegistry;
+
+	RecordingNotificationSender notificationSender;
+
+	long outboxId;
+
+	@BeforeEach
+	void enqueueNotification() {
+		// Leaves notifications of other tests to the dispatcher of the application
+		this.jdbcClient.sql("DELETE FROM notification_outbox").update();
+		this.meterRegistry = new SimpleMeterRegistry();
+		this.notificationSender = new RecordingNotificationSender();
+		this.outboxId = this.notificationOutboxMapper.insertNotification(NOTIFICATION,
+				OffsetDateTime.ofInstant(NOW, ZoneOffset.UTC));
+	}
+
+	@Test
+	void deletesSentNotification() {
+		assertThat(dispatcher(NOW).dispatch()).isOne();
+
+		assertThat(this.notificationSender.sent).containsExactly(NOTIFICATION);
+		assertThat(outboxIds()).isEmpty();
+		assertThat(counter("notification_outbox.sent")).isOne();
+	}
+
+	@Test
+	void retriesFailedNotificationWithExponentialBackoff() {
+		this.notificationSender.failing = true;
+		assertThat(dispatcher(NOW).dispatch()).isOne();
+		assertThat(attempts()).isOne();
+		assertThat(nextAttemptAt()).isEqualTo(NOW.plusSeconds(10));
+		assertThat(lastError()).contains("SMTP is down");
+
+		assertThat(dispatcher(NOW.plusSeconds(9)).dispatch()).isZero();
+		assertThat(dispatcher(NOW.plusSeconds(10)).dispatch()).isOne();
+		assertThat(attempts()).isEqualTo(2);
+		// Doubled for the second retry
+		assertThat(nextAttemptAt()).isEqualTo(NOW.plusSeconds(30));
+
+		this.notificationSender.failing = false;
+		assertThat(dispatcher(NOW.plusSeconds(30)).dispatch()).isOne();
+		assertThat(this.notificationSender.sent).containsExactly(NOTIFICATION);
+		assertThat(outboxIds()).isEmpty();
+		assertThat(counter("notification_outbox.failed")).isEqualTo(2);
+		assertThat(counter("notification_outbox.sent")).isOne();
+	}
+
+	@Test
+	void retriesNotificationOnceLeaseOfCrashedNodeExpired() {
+		// Claimed by a node that never reports back
+		assertThat(this.notificationOutboxMapper.claimNotifications(OffsetDateTime.ofInstant(NOW, ZoneOffset.UTC),
+				OffsetDateTime.ofInstant(NOW.plus(PROPS.lease()), ZoneOffset.UTC), 10))
+			.extracting(OutboxNotification::outboxId)
+			.containsExactly(this.outboxId);
+
+		assertThat(dispatcher(NOW.plus(PROPS.lease()).minusSeconds(1)).dispatch()).isZero();
+		assertThat(dispatcher(NOW.plus(PROPS.lease())).dispatch()).isOne();
+		assertThat(this.notificationSender.sent).containsExactly(NOTIFICATION);
+		assertThat(outboxIds()).isEmpty();
+	}
+
+	@Test
+	void abandonsNotificationAfterMaxAttempts() {
+		this.notificationSender.failing = true;
+		dispatcher(NOW).dispatch();
+		dispatcher(NOW.plusSeconds(10)).dispatch();
+		dispatcher(NOW.plusSeconds(30)).dispatch();
+
+		assertThat(attempts()).isEqualTo(3);
+		assertThat(nextAttemptAt()).isNull();
+		assertThat(counter("notification_outbox.abandoned")).isOne();
+		// Kept for inspection, but never claimed again
+		assertThat(dispatcher(NOW.plus(Duration.ofDays(1))).dispatch()).isZero();
+		assertThat(outboxIds()).containsExactly(this.outboxId);
+	}
+
+	NotificationOutboxDispatcher dispatcher(Instant now) {
+		return new NotificationOutboxDispatcher(this.notificationOutboxMapper, this.notificationSender, PROPS,
+				Clock.fixed(now, ZoneOffset.UTC), this.meterRegistry);
+	}
+
+	double counter(String name) {
+		return this.meterRegistry.get(name).counter().count();
+	}
+
+	List<Long> outboxIds() {
+		return this.jdbcClient.sql("SELECT outbox_id FROM notification_outbox").query(Long.class).list();
+	}
+
+	int attempts() {
+		return this.jdbcClient.sql("SELECT attempts FROM notification_outbox WHERE outbox_id = :outboxId")
+			.param("outboxId", this.outboxId)
+			.query(Integer.class)
+			.single();
+	}
+
+	Instant nextAttemptAt() {
+		OffsetDateTime nextAttemptAt = this.jdbcClient
+			.sql("SELECT next_attempt_at FROM notification_outbox WHERE outbox_id = :outboxId")
+			.param("outboxId", this.outboxId)
+			.query(OffsetDateTime.class)
+			.list()
+			.getFirst();
+		return nextAttemptAt != null ? nextAttemptAt.toInstant() : null;
+	}
+
+	String lastError() {
+		return this.jdbcClient.sql("SELECT last_error FROM notification_outbox WHERE outbox_id = :outboxId")
+			.param("outboxId", this.outboxId)
+			.query(String.class)
+			.single();
+	}
+
+	/**
+	 * Sends on the calling thread, so that the whole dispatch joins the test transaction.
+	 */
+	static class RecordingNotificationSender implements BatchNotificationSender {
+
+		final List<Notification> sent = new ArrayList<>();
+
+		boolean failing = false;
+
+		@Override
+		public void sendNotification(Notification notification) {
+			RuntimeException failure = this.sendNotifications(List.of(notification)).get(0);
+			if (failure != null) {
+				throw failure;
+			}
+		}
+
+		@Override
+		public Map<Integer, RuntimeException> sendNotifications(List<Notification> notifications) {
+			Map<Integer, RuntimeException> failures = new HashMap<>();
+			for (int i = 0; i < notifications.size(); i++) {
+				if (this.failing) {
+					failures.put(i, new IllegalStateException("SMTP is down"));
+				}
+				else {
+					this.sent.add(notifications.get(i));
+				}
+			}
+			return failures;
+		}
+
+	}
+
+}
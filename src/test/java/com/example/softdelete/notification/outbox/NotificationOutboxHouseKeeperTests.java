@@ -0,0 +1,84 @@
+package com.example.softdelete.notification.outbox;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import com.example.softdelete.notification.Notification;
+import com.example.softdelete.scheduling.ClusterJobRunner;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class NotificationOutboxHouseKeeperTests {
+
+	static final NotificationOutboxProps PROPS = new NotificationOutboxProps(10, Duration.ofSeconds(5),
+			Duration.ofMinutes(5), 3, Duration.ofSeconds(10), Duration.ofHours(1), Duration.ofDays(7));
+
+	@Autowired
+	NotificationOutboxMapper notificationOutboxMapper;
+
+	@Autowired
+	ClusterJobRunner clusterJobRunner;
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	MeterRegistry meterRegistry;
+
+	long abandonedId;
+
+	long pendingId;
+
+	@BeforeEach
+	void enqueueNotifications() {
+		this.meterRegistry = new SimpleMeterRegistry();
+		Notification notification = new Notification("outbox@example.com", "Outbox", "Hello");
+		this.abandonedId = this.notificationOutboxMapper.insertNotification(notification,
+				OffsetDateTime.now().plusDays(30));
+		this.notificationOutboxMapper.rescheduleNotification(this.abandonedId, null, "Gave up");
+		// Not due for a long time, but not given up either
+		this.pendingId = this.notificationOutboxMapper.insertNotification(notification,
+				OffsetDateTime.now().plusDays(30));
+	}
+
+	@Test
+	void keepsAbandonedNotificationsDuringRetention() {
+		houseKeeper(Instant.now().plus(Duration.ofDays(6))).purgeAbandonedNotifications();
+
+		assertThat(outboxIds()).contains(this.abandonedId, this.pendingId);
+		assertThat(this.meterRegistry.get("notification_outbox.purged").counter().count()).isZero();
+	}
+
+	@Test
+	void purgesAbandonedNotificationsAfterRetention() {
+		houseKeeper(Instant.now().plus(Duration.ofDays(8))).purgeAbandonedNotifications();
+
+		assertThat(outboxIds()).doesNotContain(this.abandonedId).contains(this.pendingId);
+		assertThat(this.meterRegistry.get("notification_outbox.purged").counter().count()).isOne();
+	}
+
+	NotificationOutboxHouseKeeper houseKeeper(Instant now) {
+		return new NotificationOutboxHouseKeeper(this.notificationOutboxMapper, this.clusterJobRunner, PROPS,
+				Clock.fixed(now, ZoneOffset.UTC), this.meterRegistry);
+	}
+
+	List<Long> outboxIds() {
+		return this.jdbcClient.sql("SELECT outbox_id FROM notification_outbox").query(Long.class).list();
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.example.softdelete.notification.sendgrid;
+
+import com.example.softdelete.notification.Notification;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.jsonPath;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class SendGridNotificationSenderTests {
+
+	MockRestServiceServer server;
+
+	SendGridNotificationSender sender;
+
+	@BeforeEach
+	void setUp() {
+		RestClient.Builder restClientBuilder = RestClient.builder();
+		this.server = MockRestServiceServer.bindTo(restClientBuilder).build();
+		this.sender = new SendGridNotificationSender(restClientBuilder,
+				new SendGridProps("SG.test", URI.create("http://sendgrid.example.com"), "noreply@example.com", 2));
+	}
+
+	@Test
+	void sendNotificationsCoalescesRecipientsBySubject() {
+		this.server.expect(requestTo("http://sendgrid.example.com/v3/mail/send"))
+			.andExpect(method(HttpMethod.POST))
+			.andExpect(jsonPath("$.subject").value("Activate your account"))
+			.andExpect(jsonPath("$.personalizations.length()").value(2))
+			.andExpect(jsonPath("$.personalizations[0].to[0].email").value("a@example.com"))
+			.andExpect(jsonPath("$.personalizations[0].substitutions['-content-']").value("Hello a"))
+			.andExpect(jsonPath("$.personalizations[1].to[0].email").value("c@example.com"))
+			.andExpect(jsonPath("$.personalizations[1].substitutions['-content-']").value("Hello c"))
+			.andExpect(jsonPath("$.content[0].value").value("-content-"))
+			.andRespond(withStatus(HttpStatus.ACCEPTED));
+		this.server.expect(requestTo("http://sendgrid.example.com/v3/mail/send"))
+			.andExpect(jsonPath("$.personalizations.length()").value(1))
+			.andExpect(jsonPath("$.personalizations[0].subject").value("Your One Time Token"))
+			.andRespond(withStatus(HttpStatus.ACCEPTED));
+		this.server.expect(requestTo("http://sendgrid.example.com/v3/mail/send"))
+			.andExpect(jsonPath("$.personalizations.length()").value(1))
+			.andExpect(jsonPath("$.personalizations[0].to[0].email").value("d@example.com"))
+			.andExpect(jsonPath("$.personalizations[0].subject").value("Activate your account"))
+			.andRespond(withStatus(HttpStatus.ACCEPTED));
+
+		Map<Integer, RuntimeException> failures = this.sender
+			.sendNotifications(List.of(new Notification("a@example.com", "Activate your account", "Hello a"),
+					new Notification("b@example.com", "Your One Time Token", "Hello b"),
+					new Notification("c@example.com", "Activate your account", "Hello c"),
+					new Notification("d@example.com", "Activate your account", "Hello d")));
+
+		assertThat(failures).isEmpty();
+		this.server.verify();
+	}
+
+	@Test
+	void sendNotificationsSendsIdenticalContentWithoutSubstitutions() {
+		this.server.expect(requestTo("http://sendgrid.example.com/v3/mail/send"))
+			.andExpect(jsonPath("$.personalizations.length()").value(2))
+			.andExpect(jsonPath("$.personalizations[0].substitutions").doesNotExist())
+			.andExpect(jsonPath("$.content[0].value").value("Hello"))
+			.andRespond(withSuccess());
+
+		Map<Integer, RuntimeException> failures = this.sender
+			.sendNotifications(List.of(new Notification("a@example.com", "News", "Hello"),
+					new Notification("b@example.com", "News", "Hello")));
+
+		assertThat(failures).isEmpty();
+		this.server.verify();
+	}
+
+	@Test
+	void sendNotificationsFallsBackToIndividualRequestsWhenBatchIsRejected() {
+		this.server.expect(jsonPath("$.personalizations.length()").value(2))
+			.andRespond(withStatus(HttpStatus.BAD_REQUEST).body("invalid email"));
+		this.server.expect(jsonPath("$.personalizations[0].to[0].email").value("invalid"))
+			.andRespond(withStatus(HttpStatus.BAD_REQUEST).body("invalid email"));
+		this.server.expect(jsonPath("$.personalizations[0].to[0].email").value("b@example.com"))
+			.andRespond(withStatus(HttpStatus.ACCEPTED));
+
+		Map<Integer, RuntimeException> failures = this.sender.sendNotifications(List
+			.of(new Notification("invalid", "News", "Hello a"), new Notification("b@example.com", "News", "Hello b")));
+
+		assertThat(failures).containsOnlyKeys(0);
+		assertThat(failures.get(0)).hasMessageContaining("invalid email");
+		this.server.verify();
+	}
+
+	@Test
+	void sendNotificationsFailsWholeBatchWhenRateLimited() {
+		this.server.expect(jsonPath("$.personalizations.length()").value(2))
+			.andRespond(withStatus(HttpStatus.TOO_MANY_REQUESTS));
+
+		Map<Integer, RuntimeException> failures = this.sender
+			.sendNotifications(List.of(new Notification("a@example.com", "News", "Hello a"),
+					new Notification("b@example.com", "News", "Hello b")));
+
+		assertThat(failures).containsOnlyKeys(0, 1);
+		this.server.verify();
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.example.softdelete.ott.token;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.ott.GenerateOneTimeTokenRequest;
+import org.springframework.security.authentication.ott.OneTimeToken;
+import org.springframework.security.authentication.ott.OneTimeTokenAuthenticationToken;
+import org.springframework.util.JdkIdGenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class CaffeineOneTimeTokenServiceTests {
+
+	final AtomicReference<Instant> now = new AtomicReference<>(Instant.parse("2026-10-18T12:00:00Z"));
+
+	final CaffeineOneTimeTokenService oneTimeTokenService = new CaffeineOneTimeTokenService(new JdkIdGenerator(),
+			new OneTimeTokenProps(OneTimeTokenProps.Store.IN_MEMORY, OneTimeTokenProps.Storage.LOGGED, 2, 1000),
+			new Clock() {
+
+				@Override
+				public ZoneOffset getZone() {
+					return ZoneOffset.UTC;
+				}
+
+				@Override
+				public Clock withZone(ZoneId zone) {
+					throw new UnsupportedOperationException();
+				}
+
+				@Override
+				public Instant instant() {
+					return CaffeineOneTimeTokenServiceTests.this.now.get();
+				}
+
+			});
+
+	@Test
+	void consumeReturnsTokenOnlyOnceAndFreesItsSlot() {
+		OneTimeToken first = this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("ott-user"));
+		assertThat(this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("ott-user"))).isNotNull();
+		assertThatExceptionOfType(TooManyOneTimeTokensException.class)
+			.isThrownBy(() -> this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("ott-user")));
+
+		assertThat(consume(first)).extracting(OneTimeToken::getUsername).isEqualTo("ott-user");
+		assertThat(consume(first)).isNull();
+		assertThat(this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("ott-user"))).isNotNull();
+	}
+
+	@Test
+	void expiredTokensAreRejectedAndFreeTheirSlots() {
+		OneTimeToken token = this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("ott-user"));
+		this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("ott-user"));
+
+		this.now.set(this.now.get().plus(Duration.ofMinutes(6)));
+
+		assertThat(consume(token)).isNull();
+		assertThat(this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("ott-user"))).isNotNull();
+		assertThat(this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("ott-user"))).isNotNull();
+	}
+
+	OneTimeToken consume(OneTimeToken token) {
+		return this.oneTimeTokenService.consume(OneTimeTokenAuthenticationToken.unauthenticated(token.getTokenValue()));
+	}
+
+}
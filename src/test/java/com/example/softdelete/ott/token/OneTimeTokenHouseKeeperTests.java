@@ -0,0 +1,118 @@
+package com.example.softdelete.ott.token;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import com.example.softdelete.scheduling.ClusterJobRunner;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.security.authentication.ott.GenerateOneTimeTokenRequest;
+import org.springframework.util.JdkIdGenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Not transactional, since the tokens must be committed to be locked by another
+ * connection.
+ */
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+class OneTimeTokenHouseKeeperTests {
+
+	static final Instant NOW = Instant.parse("2026-10-18T12:00:00Z");
+
+	static final OneTimeTokenProps PROPS = new OneTimeTokenProps(OneTimeTokenProps.Store.JDBC,
+			OneTimeTokenProps.Storage.LOGGED, 3, 2);
+
+	@Autowired
+	ClusterJobRunner clusterJobRunner;
+
+	@Autowired
+	DataSource dataSource;
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	MeterRegistry meterRegistry;
+
+	OneTimeTokenHouseKeeper houseKeeper;
+
+	@BeforeEach
+	void createHouseKeeper() {
+		this.meterRegistry = new SimpleMeterRegistry();
+		this.houseKeeper = new OneTimeTokenHouseKeeper(service(NOW), this.clusterJobRunner, PROPS,
+				Clock.fixed(NOW, ZoneOffset.UTC), this.meterRegistry);
+	}
+
+	@AfterEach
+	void deleteTokens() {
+		this.jdbcClient.sql("DELETE FROM one_time_tokens WHERE username LIKE 'purge-%'").update();
+	}
+
+	@Test
+	void purgesExpiredTokensInSeveralChunks() {
+		generateTokens("purge-expired-", 5, NOW.minus(Duration.ofMinutes(10)));
+		generateTokens("purge-active-", 1, NOW);
+
+		this.houseKeeper.purgeExpiredTokens();
+
+		assertThat(usernames()).containsExactly("purge-active-0");
+		assertThat(this.meterRegistry.get("one_time_tokens.purged").counter().count()).isEqualTo(5);
+		assertThat(this.meterRegistry.get("one_time_tokens.purge").timer().count()).isOne();
+	}
+
+	@Test
+	void skipsTokensLockedByAnotherTransaction() throws Exception {
+		generateTokens("purge-expired-", 4, NOW.minus(Duration.ofMinutes(10)));
+		try (Connection connection = this.dataSource.getConnection()) {
+			connection.setAutoCommit(false);
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("SELECT 1 FROM one_time_tokens WHERE username = 'purge-expired-0' FOR UPDATE");
+			}
+			try {
+				this.houseKeeper.purgeExpiredTokens();
+			}
+			finally {
+				connection.rollback();
+			}
+		}
+
+		assertThat(usernames()).containsExactly("purge-expired-0");
+		assertThat(this.meterRegistry.get("one_time_tokens.purged").counter().count()).isEqualTo(3);
+	}
+
+	/**
+	 * Generates tokens that are valid for five minutes from {@code generatedAt}.
+	 */
+	void generateTokens(String usernamePrefix, int count, Instant generatedAt) {
+		PostgresOneTimeTokenService service = service(generatedAt);
+		for (int i = 0; i < count; i++) {
+			service.generate(new GenerateOneTimeTokenRequest(usernamePrefix + i));
+		}
+	}
+
+	PostgresOneTimeTokenService service(Instant now) {
+		return new PostgresOneTimeTokenService(this.jdbcClient, new JdkIdGenerator(), PROPS,
+				Clock.fixed(now, ZoneOffset.UTC));
+	}
+
+	List<String> usernames() {
+		return this.jdbcClient.sql("SELECT username FROM one_time_tokens WHERE username LIKE 'purge-%'")
+			.query(String.class)
+			.list();
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.example.softdelete.ott.token;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.security.authentication.ott.GenerateOneTimeTokenRequest;
+import org.springframework.security.authentication.ott.OneTimeToken;
+import org.springframework.security.authentication.ott.OneTimeTokenAuthenticationToken;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = "ott.token.storage=partitioned")
+@Transactional
+class PartitionedOneTimeTokenStorageTests {
+
+	@Autowired
+	PostgresOneTimeTokenService oneTimeTokenService;
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	@Test
+	void tokensAreStoredInHourlyPartitions() {
+		OneTimeToken token = this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("ott-user"));
+
+		assertThat(
+				this.jdbcClient.sql("SELECT tableoid::regclass::text FROM one_time_tokens WHERE token_value = :token")
+					.param("token", token.getTokenValue())
+					.query(String.class)
+					.single())
+			.matches("one_time_tokens_p\\d{10}");
+		assertThat(this.oneTimeTokenService
+			.consume(OneTimeTokenAuthenticationToken.unauthenticated(token.getTokenValue()))).isNotNull();
+		assertThat(this.oneTimeTokenService
+			.consume(OneTimeTokenAuthenticationToken.unauthenticated(token.getTokenValue()))).isNull();
+	}
+
+	@Test
+	void expiredPartitionsAreDroppedAndCreatedAhead() {
+		this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("ott-user"));
+		// Beyond the partitions created ahead
+		this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("ott-user", Duration.ofDays(1)));
+
+		this.oneTimeTokenService.dropExpiredPartitions(Instant.now().plus(Duration.ofHours(4)));
+
+		assertThat(partitions()).containsExactly("one_time_tokens_default");
+		assertThat(this.jdbcClient.sql("SELECT count(*) FROM one_time_tokens").query(Long.class).single()).isOne();
+
+		this.oneTimeTokenService.createPartitions(Instant.now().plus(Duration.ofHours(3)));
+
+		assertThat(partitions()).hasSizeGreaterThanOrEqualTo(4);
+	}
+
+	List<String> partitions() {
+		return this.jdbcClient.sql("""
+				SELECT inhrelid::regclass::text FROM pg_inherits
+				WHERE inhparent = 'one_time_tokens'::regclass
+				ORDER BY 1
+				""").query(String.class).list();
+	}
+
+}
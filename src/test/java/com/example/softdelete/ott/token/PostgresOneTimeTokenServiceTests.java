@@ -0,0 +1,105 @@
+package com.example.softdelete.ott.token;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.security.authentication.ott.GenerateOneTimeTokenRequest;
+import org.springframework.security.authentication.ott.OneTimeToken;
+import org.springframework.security.authentication.ott.OneTimeTokenAuthenticationToken;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.JdkIdGenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class PostgresOneTimeTokenServiceTests {
+
+	static final Instant NOW = Instant.parse("2026-10-18T12:00:00Z");
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	PostgresOneTimeTokenService oneTimeTokenService;
+
+	@BeforeEach
+	void setUp() {
+		this.oneTimeTokenService = service(NOW);
+	}
+
+	@Test
+	void consumeReturnsTokenOnlyOnce() {
+		OneTimeToken token = this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("ott-user"));
+
+		OneTimeToken consumed = this.oneTimeTokenService
+			.consume(OneTimeTokenAuthenticationToken.unauthenticated(token.getTokenValue()));
+
+		assertThat(consumed).isNotNull();
+		assertThat(consumed.getUsername()).isEqualTo("ott-user");
+		assertThat(consumed.getExpiresAt()).isEqualTo(NOW.plus(Duration.ofMinutes(5)));
+		assertThat(this.oneTimeTokenService
+			.consume(OneTimeTokenAuthenticationToken.unauthenticated(token.getTokenValue()))).isNull();
+	}
+
+	@Test
+	void consumeDeletesButRejectsExpiredToken() {
+		OneTimeToken token = this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("ott-user"));
+
+		OneTimeToken consumed = service(NOW.plus(Duration.ofMinutes(6)))
+			.consume(OneTimeTokenAuthenticationToken.unauthenticated(token.getTokenValue()));
+
+		assertThat(consumed).isNull();
+		assertThat(countTokens("ott-user")).isZero();
+	}
+
+	@Test
+	void generateRejectsUsernameHoldingTooManyActiveTokens() {
+		for (int i = 0; i < 3; i++) {
+			assertThat(this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("ott-user"))).isNotNull();
+		}
+
+		assertThatExceptionOfType(TooManyOneTimeTokensException.class)
+			.isThrownBy(() -> this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("ott-user")));
+		assertThat(countTokens("ott-user")).isEqualTo(3);
+		assertThat(this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("other-user"))).isNotNull();
+		// Expired tokens do not count
+		assertThat(service(NOW.plus(Duration.ofMinutes(6))).generate(new GenerateOneTimeTokenRequest("ott-user")))
+			.isNotNull();
+	}
+
+	@Test
+	void deleteExpiredTokensDeletesInChunks() {
+		for (int i = 0; i < 3; i++) {
+			this.oneTimeTokenService.generate(new GenerateOneTimeTokenRequest("ott-user" + i, Duration.ofMinutes(i)));
+		}
+
+		assertThat(this.oneTimeTokenService.deleteExpiredTokens(NOW.plus(Duration.ofSeconds(90)), 1)).isOne();
+		assertThat(this.oneTimeTokenService.deleteExpiredTokens(NOW.plus(Duration.ofSeconds(90)), 1)).isOne();
+		assertThat(this.oneTimeTokenService.deleteExpiredTokens(NOW.plus(Duration.ofSeconds(90)), 1)).isZero();
+		assertThat(countTokens("ott-user2")).isOne();
+	}
+
+	PostgresOneTimeTokenService service(Instant now) {
+		return new PostgresOneTimeTokenService(this.jdbcClient, new JdkIdGenerator(),
+				new OneTimeTokenProps(OneTimeTokenProps.Store.JDBC, OneTimeTokenProps.Storage.LOGGED, 3, 1000),
+				Clock.fixed(now, ZoneOffset.UTC));
+	}
+
+	long countTokens(String username) {
+		return this.jdbcClient.sql("SELECT count(*) FROM one_time_tokens WHERE username = :username")
+			.param("username", username)
+			.query(Long.class)
+			.single();
+	}
+
+}
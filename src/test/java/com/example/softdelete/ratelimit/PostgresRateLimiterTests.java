@@ -0,0 +1,59 @@
+package com.example.softdelete.ratelimit;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import com.example.softdelete.scheduling.ClusterJobRunner;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class PostgresRateLimiterTests {
+
+	static final Instant NOW = Instant.parse("2026-10-18T12:00:00Z");
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	@Autowired
+	ClusterJobRunner clusterJobRunner;
+
+	@Test
+	void admitsBurstThenOneRequestPerRefillInterval() {
+		for (int i = 0; i < 3; i++) {
+			assertThat(rateLimiter(NOW).tryAcquire("ip:10.0.0.1", 3, Duration.ofSeconds(2))).isZero();
+		}
+		assertThat(rateLimiter(NOW).tryAcquire("ip:10.0.0.1", 3, Duration.ofSeconds(2)))
+			.isEqualTo(Duration.ofSeconds(2));
+		assertThat(rateLimiter(NOW).tryAcquire("ip:10.0.0.2", 3, Duration.ofSeconds(2))).isZero();
+
+		assertThat(rateLimiter(NOW.plusMillis(1500)).tryAcquire("ip:10.0.0.1", 3, Duration.ofSeconds(2))).isPositive();
+		assertThat(rateLimiter(NOW.plusSeconds(2)).tryAcquire("ip:10.0.0.1", 3, Duration.ofSeconds(2))).isZero();
+	}
+
+	@Test
+	void deletesFullBuckets() {
+		rateLimiter(NOW).tryAcquire("ip:10.0.0.1", 3, Duration.ofSeconds(2));
+		rateLimiter(NOW).tryAcquire("ip:10.0.0.2", 3, Duration.ofMinutes(1));
+
+		rateLimiter(NOW.plusSeconds(10)).deleteFullBuckets();
+
+		assertThat(this.jdbcClient.sql("SELECT key FROM rate_limits").query(String.class).list())
+			.containsExactly("ip:10.0.0.2");
+	}
+
+	PostgresRateLimiter rateLimiter(Instant now) {
+		return new PostgresRateLimiter(this.jdbcClient, this.clusterJobRunner, Clock.fixed(now, ZoneOffset.UTC));
+	}
+
+}
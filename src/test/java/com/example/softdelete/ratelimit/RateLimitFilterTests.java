@@ -0,0 +1,73 @@
+package com.example.softdelete.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTests {
+
+	final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	final RateLimitFilter filter = new RateLimitFilter(
+			new RateLimitProps(true, 4, Duration.ofMinutes(1), 2, Duration.ofMinutes(1), 1024, false), null,
+			this.meterRegistry);
+
+	@Test
+	void rejectsRequestsForSameUsername() throws Exception {
+		assertThat(generateToken("10.0.0.1", "johndoe").getStatus()).isEqualTo(200);
+		assertThat(generateToken("10.0.0.2", " JohnDoe ").getStatus()).isEqualTo(200);
+
+		MockHttpServletResponse response = generateToken("10.0.0.3", "johndoe");
+
+		assertThat(response.getStatus()).isEqualTo(429);
+		assertThat(response.getHeader("Retry-After")).isEqualTo("60");
+		assertThat(generateToken("10.0.0.3", "janedoe").getStatus()).isEqualTo(200);
+		assertThat(this.meterRegistry.get("rate_limit.rejected")
+			.tag("path", "/ott/generate")
+			.tag("key", "identifier")
+			.counter()
+			.count()).isOne();
+	}
+
+	@Test
+	void rejectsRequestsFromSameIpAddress() throws Exception {
+		for (int i = 0; i < 4; i++) {
+			assertThat(generateToken("10.0.0.1", "user" + i).getStatus()).isEqualTo(200);
+		}
+
+		assertThat(generateToken("10.0.0.1", "user4").getStatus()).isEqualTo(429);
+		assertThat(generateToken("10.0.0.2", "user4").getStatus()).isEqualTo(200);
+		assertThat(this.meterRegistry.get("rate_limit.rejected").tag("key", "ip").counter().count()).isOne();
+	}
+
+	@Test
+	void registersRejectionCountersUpFront() {
+		assertThat(this.meterRegistry.get("rate_limit.rejected").counters()).hasSize(6)
+			.allSatisfy(counter -> assertThat(counter.count()).isZero());
+	}
+
+	@Test
+	void ignoresOtherRequests() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ott/generate");
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			this.filter.doFilter(request, response, new MockFilterChain());
+			assertThat(response.getStatus()).isEqualTo(200);
+		}
+	}
+
+	MockHttpServletResponse generateToken(String remoteAddr, String username) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/ott/generate");
+		request.setRemoteAddr(remoteAddr);
+		request.addParameter("username", username);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		this.filter.doFilter(request, response, new MockFilterChain());
+		return response;
+	}
+
+}
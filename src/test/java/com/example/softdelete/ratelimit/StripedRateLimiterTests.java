@@ -0,0 +1,54 @@
+package com.example.softdelete.ratelimit;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedRateLimiterTests {
+
+	final AtomicLong nanoTime = new AtomicLong(-5_000_000_000L);
+
+	final StripedRateLimiter rateLimiter = new StripedRateLimiter(3, Duration.ofSeconds(2), 1024, this.nanoTime::get);
+
+	@Test
+	void admitsBurstThenOneRequestPerRefillInterval() {
+		assertThat(this.rateLimiter.tryAcquire("alice")).isZero();
+		assertThat(this.rateLimiter.tryAcquire("alice")).isZero();
+		assertThat(this.rateLimiter.tryAcquire("alice")).isZero();
+		assertThat(this.rateLimiter.tryAcquire("alice")).isEqualTo(Duration.ofSeconds(2));
+
+		this.nanoTime.addAndGet(Duration.ofMillis(1500).toNanos());
+		assertThat(this.rateLimiter.tryAcquire("alice")).isEqualTo(Duration.ofMillis(500));
+
+		this.nanoTime.addAndGet(Duration.ofMillis(500).toNanos());
+		assertThat(this.rateLimiter.tryAcquire("alice")).isZero();
+		assertThat(this.rateLimiter.tryAcquire("alice")).isEqualTo(Duration.ofSeconds(2));
+	}
+
+	@Test
+	void refillsUpToCapacity() {
+		for (int i = 0; i < 3; i++) {
+			this.rateLimiter.tryAcquire("alice");
+		}
+
+		this.nanoTime.addAndGet(Duration.ofMinutes(1).toNanos());
+
+		for (int i = 0; i < 3; i++) {
+			assertThat(this.rateLimiter.tryAcquire("alice")).isZero();
+		}
+		assertThat(this.rateLimiter.tryAcquire("alice")).isPositive();
+	}
+
+	@Test
+	void keysHaveSeparateBuckets() {
+		for (int i = 0; i < 3; i++) {
+			this.rateLimiter.tryAcquire("alice");
+		}
+
+		assertThat(this.rateLimiter.tryAcquire("alice")).isPositive();
+		assertThat(this.rateLimiter.tryAcquire("bob")).isZero();
+	}
+
+}
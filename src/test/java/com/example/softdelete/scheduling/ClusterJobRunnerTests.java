@@ -0,0 +1,75 @@
+package com.example.softdelete.scheduling;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+class ClusterJobRunnerTests {
+
+	@Autowired
+	ClusterJobRunner clusterJobRunner;
+
+	@Autowired
+	DataSource dataSource;
+
+	@Test
+	void runsJobWhenLockIsFree() {
+		AtomicBoolean ran = new AtomicBoolean();
+
+		assertThat(this.clusterJobRunner.runExclusively("test-job", () -> ran.set(true))).isTrue();
+		assertThat(ran).isTrue();
+	}
+
+	@Test
+	void skipsJobWhileAnotherNodeHoldsLock() throws SQLException {
+		AtomicBoolean ran = new AtomicBoolean();
+		try (Connection otherNode = this.dataSource.getConnection()) {
+			assertThat(advisoryLock(otherNode, "pg_try_advisory_lock", "test-job")).isTrue();
+
+			assertThat(this.clusterJobRunner.runExclusively("test-job", () -> ran.set(true))).isFalse();
+			// Other jobs are not affected
+			assertThat(this.clusterJobRunner.runExclusively("other-job", () -> {
+			})).isTrue();
+
+			advisoryLock(otherNode, "pg_advisory_unlock", "test-job");
+		}
+		assertThat(ran).isFalse();
+	}
+
+	@Test
+	void releasesLockWhenJobThrows() throws SQLException {
+		assertThatIllegalStateException().isThrownBy(() -> this.clusterJobRunner.runExclusively("test-job", () -> {
+			throw new IllegalStateException("Job failed");
+		})).withMessage("Job failed");
+
+		try (Connection otherNode = this.dataSource.getConnection()) {
+			assertThat(advisoryLock(otherNode, "pg_try_advisory_lock", "test-job")).isTrue();
+			advisoryLock(otherNode, "pg_advisory_unlock", "test-job");
+		}
+	}
+
+	boolean advisoryLock(Connection connection, String function, String jobName) throws SQLException {
+		try (PreparedStatement statement = connection
+			.prepareStatement("SELECT %s(?, hashtext(?))".formatted(function))) {
+			statement.setInt(1, ClusterJobRunner.LOCK_NAMESPACE);
+			statement.setString(2, jobName);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				return resultSet.next() && resultSet.getBoolean(1);
+			}
+		}
+	}
+
+}
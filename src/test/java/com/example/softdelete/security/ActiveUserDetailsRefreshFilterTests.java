@@ -0,0 +1,99 @@
+package com.example.softdelete.security;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import com.example.softdelete.user.ActiveUser;
+import com.example.softdelete.user.UserCache;
+import com.example.softdelete.user.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class ActiveUserDetailsRefreshFilterTests {
+
+	@Autowired
+	UserService userService;
+
+	@Autowired
+	UserCache userCache;
+
+	ActiveUserDetailsRefreshFilter filter;
+
+	MockHttpSession session;
+
+	@BeforeEach
+	void signIn() {
+		this.filter = new ActiveUserDetailsRefreshFilter(new CurrentUser(this.userCache));
+		this.session = new MockHttpSession();
+		ActiveUserDetails details = new ActiveUserDetails((ActiveUser) this.userCache.findUser(4).orElseThrow());
+		SecurityContext context = SecurityContextHolder.createEmptyContext();
+		context.setAuthentication(
+				UsernamePasswordAuthenticationToken.authenticated(details, null, details.getAuthorities()));
+		SecurityContextHolder.setContext(context);
+		this.session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, context);
+	}
+
+	@AfterEach
+	void signOut() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void keepsPrincipalOfUnchangedUser() throws Exception {
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+		doFilter();
+
+		assertThat(SecurityContextHolder.getContext().getAuthentication()).isSameAs(authentication);
+	}
+
+	@Test
+	void refreshesPrincipalOfPromotedUser() throws Exception {
+		this.userService.promoteToAdmin(4);
+
+		doFilter();
+
+		SecurityContext context = SecurityContextHolder.getContext();
+		ActiveUserDetails details = (ActiveUserDetails) context.getAuthentication().getPrincipal();
+		assertThat(details.getUserId()).isEqualTo(4);
+		assertThat(AuthorityUtils.authorityListToSet(context.getAuthentication().getAuthorities()))
+			.containsExactlyInAnyOrder("ROLE_USER", "ROLE_ADMIN");
+		assertThat(this.session.getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY))
+			.isSameAs(context);
+	}
+
+	@Test
+	void signsOutBannedUser() throws Exception {
+		this.userService.banUser(4, 1, "Spam");
+
+		doFilter();
+
+		assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+		assertThat(this.session.isInvalid()).isTrue();
+	}
+
+	void doFilter() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/account");
+		request.setSession(this.session);
+		this.filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+	}
+
+}
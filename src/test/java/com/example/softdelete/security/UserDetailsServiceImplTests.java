@@ -0,0 +1,156 @@
+package com.example.softdelete.security;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import com.example.softdelete.user.ActiveUser;
+import com.example.softdelete.user.PendingUser;
+import com.example.softdelete.user.StatementRecorder;
+import com.example.softdelete.user.User;
+import com.example.softdelete.user.UserCacheProps;
+import com.example.softdelete.user.UserChangedEvent;
+import com.example.softdelete.user.UserMapper;
+import com.example.softdelete.user.UserMapperProps;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = "user.mapper.read-model=true")
+@Transactional
+class UserDetailsServiceImplTests {
+
+	@Autowired
+	DataSource dataSource;
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	StatementRecorder recorder;
+
+	@BeforeEach
+	void createRecorder() {
+		this.recorder = new StatementRecorder(this.dataSource);
+	}
+
+	UserMapper userMapper(boolean readModel) {
+		return this.recorder.userMapper(this.objectMapper,
+				new UserMapperProps(readModel, UserMapperProps.EmailsFormat.JSON));
+	}
+
+	UserDetailsServiceImpl userDetailsService() {
+		return new UserDetailsServiceImpl(userMapper(false),
+				new UserCacheProps(100, Duration.ofMinutes(10), 100, Duration.ofMinutes(1)), new SimpleMeterRegistry());
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void findUserByLoginIdentifierResolvesUsernameOrEmailWithOneStatement(boolean readModel) {
+		UserMapper userMapper = userMapper(readModel);
+
+		User byUsername = userMapper.findUserByLoginIdentifier("johndoe").orElseThrow();
+		assertThat(this.recorder.statements()).isEqualTo(1);
+		assertThat(byUsername).isInstanceOfSatisfying(ActiveUser.class, user -> {
+			assertThat(user.userId()).isEqualTo(1L);
+			assertThat(user.isAdmin()).isTrue();
+			assertThat(user.emails()).hasSize(3);
+		});
+		// Any email address of the user, not only the primary one
+		assertThat(userMapper.findUserByLoginIdentifier("j.doe@example.net")).contains(byUsername);
+		assertThat(userMapper.findUserByLoginIdentifier("pendinguser1")).containsInstanceOf(PendingUser.class);
+		assertThat(userMapper.findUserByLoginIdentifier("pending2@example.org")).containsInstanceOf(PendingUser.class);
+		// Deleted users no longer have a username or email address
+		assertThat(userMapper.findUserByLoginIdentifier("baduser1")).isEmpty();
+		assertThat(userMapper.findUserByLoginIdentifier("bad.user1@example.com")).isEmpty();
+		assertThat(userMapper.findUserByLoginIdentifier("nobody@example.com")).isEmpty();
+		assertThat(this.recorder.statements()).isEqualTo(7);
+	}
+
+	@Test
+	void cachesActiveUsersByEveryLoginIdentifier() {
+		UserDetailsServiceImpl userDetailsService = userDetailsService();
+		ActiveUserDetails byUsername = (ActiveUserDetails) userDetailsService.loadUserByUsername("sarahjones");
+		ActiveUserDetails byEmail = (ActiveUserDetails) userDetailsService
+			.loadUserByUsername("sarah.jones@test.example");
+		assertThat(byEmail.getUserId()).isEqualTo(byUsername.getUserId()).isEqualTo(4L);
+		assertThat(this.recorder.statements()).isEqualTo(2);
+
+		// One entry per user, which the last load replaced
+		assertThat(userDetailsService.loadUserByUsername("sarahjones")).isSameAs(byEmail);
+		assertThat(userDetailsService.loadUserByUsername("sarah.jones@test.example")).isSameAs(byEmail);
+		assertThat(this.recorder.statements()).isEqualTo(2);
+	}
+
+	@Test
+	void evictsOnlyTheChangedUser() {
+		UserDetailsServiceImpl userDetailsService = userDetailsService();
+		userDetailsService.loadUserByUsername("sarahjones");
+		userDetailsService.loadUserByUsername("alexwilson");
+		this.recorder.reset();
+
+		userDetailsService.onUserChanged(new UserChangedEvent(4L));
+
+		userDetailsService.loadUserByUsername("sarahjones");
+		userDetailsService.loadUserByUsername("alexwilson");
+		assertThat(this.recorder.statements()).isEqualTo(1);
+	}
+
+	@Test
+	void doesNotResolveRemovedEmailFromCache() {
+		UserDetailsServiceImpl userDetailsService = userDetailsService();
+		userDetailsService.loadUserByUsername("j.doe@example.net");
+		this.jdbcClient.sql("DELETE FROM user_emails WHERE email = 'j.doe@example.net'").update();
+		userDetailsService.onUserChanged(new UserChangedEvent(1L));
+		// Caches John Doe again without the removed email address
+		userDetailsService.loadUserByUsername("johndoe");
+
+		assertThatExceptionOfType(UsernameNotFoundException.class)
+			.isThrownBy(() -> userDetailsService.loadUserByUsername("j.doe@example.net"));
+	}
+
+	@Test
+	void remembersUnknownLoginIdentifiers() {
+		UserDetailsServiceImpl userDetailsService = userDetailsService();
+		assertThatExceptionOfType(UsernameNotFoundException.class)
+			.isThrownBy(() -> userDetailsService.loadUserByUsername("nobody"));
+		assertThatExceptionOfType(UsernameNotFoundException.class)
+			.isThrownBy(() -> userDetailsService.loadUserByUsername("nobody"));
+		assertThat(this.recorder.statements()).isEqualTo(1);
+
+		// A change that cannot add a login identifier keeps them
+		userDetailsService.onUserChanged(new UserChangedEvent(4L));
+		assertThatExceptionOfType(UsernameNotFoundException.class)
+			.isThrownBy(() -> userDetailsService.loadUserByUsername("nobody"));
+		assertThat(this.recorder.statements()).isEqualTo(1);
+	}
+
+	@Test
+	void forgetsUnknownLoginIdentifiersWhenOneIsAdded() {
+		UserDetailsServiceImpl userDetailsService = userDetailsService();
+		assertThatExceptionOfType(UsernameNotFoundException.class)
+			.isThrownBy(() -> userDetailsService.loadUserByUsername("sarah@example.com"));
+		this.jdbcClient.sql("INSERT INTO user_emails (email, user_id) VALUES ('sarah@example.com', 4)").update();
+
+		userDetailsService.afterUserChanged(new UserChangedEvent(4L, true));
+
+		assertThat(userDetailsService.loadUserByUsername("sarah@example.com")).isInstanceOfSatisfying(
+				ActiveUserDetails.class, userDetails -> assertThat(userDetails.getUserId()).isEqualTo(4L));
+		assertThat(this.recorder.statements()).isEqualTo(2);
+	}
+
+}
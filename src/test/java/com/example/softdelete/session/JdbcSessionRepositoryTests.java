@@ -0,0 +1,144 @@
+package com.example.softdelete.session;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class JdbcSessionRepositoryTests {
+
+	static final Instant NOW = Instant.parse("2026-10-18T12:00:00Z");
+
+	static final SessionProps PROPS = new SessionProps(SessionProps.Store.JDBC, Duration.ofMinutes(1),
+			Duration.ofSeconds(1), 1000);
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	JdbcSessionRepository repository(Instant now) {
+		return new JdbcSessionRepository(this.jdbcClient, new SessionAttributesCodec(), PROPS, Duration.ofHours(3),
+				Clock.fixed(now, ZoneOffset.UTC), this.meterRegistry);
+	}
+
+	@Test
+	void writesOnlyChangedSessions() {
+		JdbcSessionRepository repository = repository(NOW);
+		JdbcSessionRepository.JdbcSession session = repository.createSession();
+		session.setAttribute("theme", "dark");
+		repository.save(session);
+
+		JdbcSessionRepository.JdbcSession found = repository(NOW.plusSeconds(10)).findById(session.getId());
+		assertThat(found).isNotNull();
+		assertThat(found.<String>getAttribute("theme")).isEqualTo("dark");
+		found.setLastAccessedTime(NOW.plusSeconds(10));
+		found.setAttribute("theme", "dark");
+		repository.save(found);
+		assertThat(repository.flush()).isZero();
+		assertThat(lastAccessedTime(session.getId())).isEqualTo(NOW);
+
+		found.setAttribute("theme", "light");
+		repository.save(found);
+
+		assertThat(lastAccessedTime(session.getId())).isEqualTo(NOW.plusSeconds(10));
+		assertThat(repository.findById(session.getId()).<String>getAttribute("theme")).isEqualTo("light");
+		assertThat(writes("created")).isOne();
+		assertThat(writes("changed")).isOne();
+		assertThat(writes("touched")).isZero();
+	}
+
+	@Test
+	void buffersLastAccessTimeUntilFlushed() {
+		JdbcSessionRepository repository = repository(NOW);
+		JdbcSessionRepository.JdbcSession session = repository.createSession();
+		repository.save(session);
+
+		JdbcSessionRepository.JdbcSession found = repository.findById(session.getId());
+		found.setLastAccessedTime(NOW.plus(Duration.ofMinutes(2)));
+		repository.save(found);
+
+		assertThat(lastAccessedTime(session.getId())).isEqualTo(NOW);
+		assertThat(repository.findById(session.getId()).getLastAccessedTime())
+			.isEqualTo(NOW.plus(Duration.ofMinutes(2)));
+		assertThat(repository.flush()).isOne();
+		assertThat(lastAccessedTime(session.getId())).isEqualTo(NOW.plus(Duration.ofMinutes(2)));
+		assertThat(this.jdbcClient.sql("SELECT expiry_time FROM http_sessions WHERE session_id = :sessionId")
+			.param("sessionId", session.getId())
+			.query(OffsetDateTime.class)
+			.single()
+			.toInstant()).isEqualTo(NOW.plus(Duration.ofMinutes(2)).plus(Duration.ofHours(3)));
+		assertThat(writes("touched")).isOne();
+	}
+
+	@Test
+	void renamesSessionWhenIdChanges() {
+		JdbcSessionRepository repository = repository(NOW);
+		JdbcSessionRepository.JdbcSession session = repository.createSession();
+		repository.save(session);
+		String previousId = session.getId();
+
+		session.changeSessionId();
+		repository.save(session);
+
+		assertThat(repository.findById(previousId)).isNull();
+		assertThat(repository.findById(session.getId())).isNotNull();
+	}
+
+	@Test
+	void expiredSessionsAreNotFoundAndPurgedInBulk() {
+		this.jdbcClient.sql("DELETE FROM http_sessions").update();
+		JdbcSessionRepository repository = repository(NOW);
+		for (int i = 0; i < 3; i++) {
+			repository.save(repository.createSession());
+		}
+		JdbcSessionRepository.JdbcSession session = repository.createSession();
+		repository.save(session);
+		Instant expired = NOW.plus(Duration.ofHours(4));
+
+		assertThat(repository(expired).findById(session.getId())).isNull();
+		assertThat(repository.deleteExpiredSessions(expired, 2)).isEqualTo(2);
+		assertThat(repository.deleteExpiredSessions(expired, 2)).isOne();
+		assertThat(this.jdbcClient.sql("SELECT count(*) FROM http_sessions").query(Long.class).single()).isZero();
+	}
+
+	@Test
+	void sessionExpiresByClockOfRepository() {
+		// Long expired by the wall clock
+		Instant past = Instant.parse("2020-01-01T00:00:00Z");
+		JdbcSessionRepository repository = repository(past);
+		JdbcSessionRepository.JdbcSession session = repository.createSession();
+		repository.save(session);
+
+		assertThat(session.isExpired()).isFalse();
+		assertThat(repository.findById(session.getId()).isExpired()).isFalse();
+		assertThat(repository(past.plus(Duration.ofHours(3))).findById(session.getId())).isNull();
+	}
+
+	Instant lastAccessedTime(String sessionId) {
+		return this.jdbcClient.sql("SELECT last_accessed_time FROM http_sessions WHERE session_id = :sessionId")
+			.param("sessionId", sessionId)
+			.query(OffsetDateTime.class)
+			.single()
+			.toInstant();
+	}
+
+	double writes(String kind) {
+		return this.meterRegistry.get("http_sessions.writes").tag("kind", kind).counter().count();
+	}
+
+}
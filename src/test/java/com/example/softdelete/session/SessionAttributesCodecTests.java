@@ -0,0 +1,64 @@
+package com.example.softdelete.session;
+
+import com.example.softdelete.security.ActiveUserDetails;
+import com.example.softdelete.user.ActiveUser;
+import com.example.softdelete.user.Email;
+import com.example.softdelete.user.UserProfile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.ott.OneTimeTokenAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionAttributesCodecTests {
+
+	final SessionAttributesCodec codec = new SessionAttributesCodec();
+
+	@Test
+	void encodesSignedInSessionCompactly() {
+		ActiveUserDetails details = new ActiveUserDetails(new ActiveUser(42, new UserProfile("johndoe", "John Doe"),
+				List.of(new Email("john.doe@example.com", true)), true));
+		Map<String, Object> attributes = new LinkedHashMap<>();
+		attributes.put(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, new SecurityContextImpl(
+				OneTimeTokenAuthenticationToken.authenticated(details, details.getAuthorities())));
+		attributes.put("org.springframework.security.web.csrf.HttpSessionCsrfTokenRepository.CSRF_TOKEN",
+				new DefaultCsrfToken("X-CSRF-TOKEN", "_csrf", "2a4f31c0-1c4e-4c52-9a8c-6d0c1f0f3c8e"));
+
+		byte[] encoded = this.codec.encode(attributes);
+		Map<String, Object> decoded = this.codec.decode(encoded);
+
+		assertThat(encoded).hasSizeLessThan(100);
+		SecurityContext context = (SecurityContext) decoded
+			.get(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY);
+		ActiveUserDetails decodedDetails = (ActiveUserDetails) context.getAuthentication().getPrincipal();
+		assertThat(decodedDetails.getUserId()).isEqualTo(42);
+		assertThat(decodedDetails.getUsername()).isEqualTo("johndoe");
+		assertThat(decodedDetails.getAuthorities()).isEqualTo(details.getAuthorities());
+		assertThat(context.getAuthentication().isAuthenticated()).isTrue();
+		assertThat(decoded.get("org.springframework.security.web.csrf.HttpSessionCsrfTokenRepository.CSRF_TOKEN"))
+			.usingRecursiveComparison()
+			.isEqualTo(
+					attributes.get("org.springframework.security.web.csrf.HttpSessionCsrfTokenRepository.CSRF_TOKEN"));
+	}
+
+	@Test
+	void fallsBackToJavaSerialization() {
+		Map<String, Object> attributes = new LinkedHashMap<>();
+		attributes.put("theme", "dark");
+		attributes.put("visits", 3);
+		attributes.put("recent", new ArrayList<>(List.of("a", "b")));
+		attributes.put("emptyContext", new SecurityContextImpl());
+
+		Map<String, Object> decoded = this.codec.decode(this.codec.encode(attributes));
+
+		assertThat(decoded).isEqualTo(attributes);
+	}
+
+}
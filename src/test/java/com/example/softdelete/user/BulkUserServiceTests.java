@@ -0,0 +1,156 @@
+package com.example.softdelete.user;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class BulkUserServiceTests {
+
+	@Autowired
+	UserMapper userMapper;
+
+	@Autowired
+	UserBanEventMapper userBanEventMapper;
+
+	@Autowired
+	UserDeletionEventMapper userDeletionEventMapper;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	BulkUserService bulkUserService;
+
+	long firstUserId;
+
+	@BeforeEach
+	void seed() {
+		this.bulkUserService = new BulkUserService(this.userMapper, this.userBanEventMapper,
+				this.userDeletionEventMapper, this.eventPublisher, this.transactionTemplate, new BulkUserProps(2),
+				Clock.systemUTC(), new SimpleMeterRegistry());
+		// Five active users, the first of them an admin, followed by a pending user
+		this.firstUserId = this.jdbcClient.sql("SELECT COALESCE(MAX(user_id), 0) + 1000 FROM users")
+			.query(Long.class)
+			.single();
+		for (String sql : new String[] { """
+				INSERT INTO users (user_id) SELECT g FROM generate_series(:first, :first + 5) g
+				""", """
+				INSERT INTO user_profiles (user_id, username, display_name)
+				SELECT g, 'bulk' || g, 'Bulk User ' || g FROM generate_series(:first, :first + 5) g
+				""", """
+				INSERT INTO user_emails (email, user_id)
+				SELECT 'bulk' || g || '@example.com', g FROM generate_series(:first, :first + 5) g
+				UNION ALL
+				SELECT 'bulk' || g || '@example.org', g FROM generate_series(:first, :first + 5) g
+				""", """
+				INSERT INTO user_primary_emails (user_id, email)
+				SELECT g, 'bulk' || g || '@example.com' FROM generate_series(:first, :first + 5) g
+				""", """
+				INSERT INTO active_users (user_id) SELECT g FROM generate_series(:first, :first + 4) g
+				""", """
+				INSERT INTO admin_users (user_id) VALUES (:first)
+				""", """
+				INSERT INTO pending_users (user_id, activation_token, expires_at)
+				VALUES (:first + 5, gen_random_uuid(), now() + interval '1 day')
+				""" }) {
+			this.jdbcClient.sql(sql).param("first", this.firstUserId).update();
+		}
+	}
+
+	@Test
+	void banUsersBansActiveUsersInChunksAndSkipsOthers() {
+		long first = this.firstUserId;
+		// Duplicates, a pending user and an unknown id
+		List<Long> userIds = List.of(first + 3, first, first + 1, first + 3, first + 5, first + 100, first + 2);
+		List<BulkUserProgress> progress = new ArrayList<>();
+
+		BulkUserProgress result = this.bulkUserService.banUsers(userIds, 1L, "spam", progress::add);
+
+		assertThat(result).isEqualTo(new BulkUserProgress(6, 6, 4));
+		assertThat(result.skipped()).isEqualTo(2);
+		assertThat(progress).containsExactly(new BulkUserProgress(6, 2, 2), new BulkUserProgress(6, 4, 4),
+				new BulkUserProgress(6, 6, 4));
+		assertThat(progress.getLast().isDone()).isTrue();
+		assertThat(this.userMapper.findUsers(LongStream.rangeClosed(first, first + 5).boxed().toList()))
+			.extracting(User::userId, user -> user.getClass().getSimpleName())
+			.containsExactlyInAnyOrder(tuple(first, "DeletedUser"), tuple(first + 1, "DeletedUser"),
+					tuple(first + 2, "DeletedUser"), tuple(first + 3, "DeletedUser"), tuple(first + 4, "ActiveUser"),
+					tuple(first + 5, "PendingUser"));
+		assertThat(this.jdbcClient.sql("""
+				SELECT count(*) FROM user_emails WHERE user_id BETWEEN :first AND :first + 3
+				""").param("first", first).query(Long.class).single()).isZero();
+
+		List<Map<String, Object>> events = this.jdbcClient.sql("""
+				SELECT user_id, admin_user_id, ban_reason, user_info_at_ban::text AS user_info
+				FROM user_ban_events WHERE user_id BETWEEN :first AND :first + 5 ORDER BY user_id
+				""").param("first", first).query().listOfRows();
+		assertThat(events).extracting(event -> event.get("user_id"))
+			.containsExactly(first, first + 1, first + 2, first + 3);
+		assertThat(events).allSatisfy(event -> {
+			assertThat(event.get("admin_user_id")).isEqualTo(1L);
+			assertThat(event.get("ban_reason")).isEqualTo("spam");
+		});
+		assertThat(userInfo(events.getFirst())).containsEntry("username", "bulk" + first)
+			.containsEntry("displayName", "Bulk User " + first)
+			.containsEntry("emails", List.of(Map.of("email", "bulk" + first + "@example.com", "isPrimary", true),
+					Map.of("email", "bulk" + first + "@example.org", "isPrimary", false)));
+	}
+
+	@Test
+	void deleteUsersRecordsDeletionEvents() {
+		long first = this.firstUserId;
+
+		BulkUserProgress result = this.bulkUserService.deleteUsers(List.of(first + 4, first + 5), progress -> {
+		});
+
+		assertThat(result).isEqualTo(new BulkUserProgress(2, 2, 1));
+		assertThat(this.userMapper.findUser(first + 4)).containsInstanceOf(DeletedUser.class);
+		assertThat(this.jdbcClient.sql("""
+				SELECT user_id FROM user_deletion_events WHERE user_id BETWEEN :first AND :first + 5
+				""").param("first", first).query(Long.class).list()).containsExactly(first + 4);
+		assertThat(this.jdbcClient.sql("""
+				SELECT count(*) FROM user_ban_events WHERE user_id BETWEEN :first AND :first + 5
+				""").param("first", first).query(Long.class).single()).isZero();
+	}
+
+	@SuppressWarnings("unchecked")
+	Map<String, Object> userInfo(Map<String, Object> event) {
+		try {
+			return this.objectMapper.readValue((String) event.get("user_info"), Map.class);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.example.softdelete.user;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class EmailsReaderTests {
+
+	final EmailsReader emailsReader = new EmailsReader(new JsonFactory());
+
+	@Test
+	void readsEmailsInOrder() throws IOException {
+		assertThat(this.emailsReader.read("""
+				[{"email": "a@example.com", "isPrimary": true}, {"email": "b@example.com", "isPrimary": false}]
+				""")).containsExactly(new Email("a@example.com", true), new Email("b@example.com", false));
+	}
+
+	@Test
+	void readsEmptyArray() throws IOException {
+		assertThat(this.emailsReader.read("[]")).isEmpty();
+	}
+
+	@Test
+	void readsReorderedFieldsAndSkipsUnknownOnes() throws IOException {
+		assertThat(this.emailsReader.read("""
+				[{"verified": {"at": [2024, 1, 1]}, "isPrimary": true, "email": "a@example.com", "note": null}]
+				""")).containsExactly(new Email("a@example.com", true));
+	}
+
+	@Test
+	void treatsMissingIsPrimaryAsFalse() throws IOException {
+		assertThat(this.emailsReader.read("[{\"email\": \"a@example.com\"}]"))
+			.containsExactly(new Email("a@example.com", false));
+	}
+
+	@Test
+	void rejectsNull() {
+		assertThatExceptionOfType(JsonProcessingException.class).isThrownBy(() -> this.emailsReader.read(null));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "", "null", "{}", "[{\"email\": \"a@example.com\"}, 42]",
+			"[{\"email\": \"a@example.com\"}, {\"email\": ", "[{\"email\": \"a@example.com\"}",
+			"[{\"email\": \"a@example.com\"}] []", "[{\"isPrimary\": true}]", "[{\"email\": 42}]" })
+	void rejectsMalformedJson(String json) {
+		assertThatExceptionOfType(JsonProcessingException.class).isThrownBy(() -> this.emailsReader.read(json));
+	}
+
+}
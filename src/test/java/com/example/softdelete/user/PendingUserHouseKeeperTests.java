@@ -0,0 +1,112 @@
+package com.example.softdelete.user;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import com.example.softdelete.scheduling.ClusterJobRunner;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class PendingUserHouseKeeperTests {
+
+	static final int CHUNK_SIZE = 2;
+
+	@Autowired
+	UserMapper userMapper;
+
+	@Autowired
+	ClusterJobRunner clusterJobRunner;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	@Autowired
+	DataSource dataSource;
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	MeterRegistry meterRegistry;
+
+	PendingUserHouseKeeper houseKeeper;
+
+	@BeforeEach
+	void createHouseKeeper() {
+		this.meterRegistry = new SimpleMeterRegistry();
+		this.houseKeeper = new PendingUserHouseKeeper(this.userMapper, this.clusterJobRunner, this.eventPublisher,
+				this.transactionTemplate, new PendingUserHouseKeeperProps(CHUNK_SIZE), Clock.systemUTC(),
+				this.meterRegistry);
+	}
+
+	@Test
+	void purgesExpiredPendingUsersInSeveralChunks() {
+		// Users 13 and 14 of the test data expired as well
+		List<Long> expired = insertPendingUsers(5, OffsetDateTime.now().minusHours(1));
+		List<Long> unexpired = insertPendingUsers(1, OffsetDateTime.now().plusHours(1));
+
+		this.houseKeeper.purgeExpiredPendingUsers();
+
+		assertThat(pendingUserIds()).containsExactlyElementsOf(unexpired);
+		assertThat(this.userMapper.findUser(expired.getFirst())).isEmpty();
+		assertThat(this.meterRegistry.get("pending_users.purged").counter().count()).isEqualTo(7);
+		assertThat(this.meterRegistry.get("pending_users.purge").timer().count()).isOne();
+	}
+
+	@Test
+	void skipsPendingUsersLockedByAnotherTransaction() throws Exception {
+		insertPendingUsers(3, OffsetDateTime.now().minusHours(1));
+		try (Connection connection = this.dataSource.getConnection()) {
+			connection.setAutoCommit(false);
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("SELECT 1 FROM pending_users WHERE user_id = 13 FOR UPDATE");
+			}
+			try {
+				this.houseKeeper.purgeExpiredPendingUsers();
+			}
+			finally {
+				connection.rollback();
+			}
+		}
+
+		assertThat(pendingUserIds()).containsExactly(13L);
+		assertThat(this.meterRegistry.get("pending_users.purged").counter().count()).isEqualTo(4);
+	}
+
+	List<Long> insertPendingUsers(int count, OffsetDateTime expiresAt) {
+		List<Long> userIds = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			UUID token = UUID.randomUUID();
+			userIds.add(this.userMapper.insertPendingUser(new UserProfile("purge-" + token, "Purge Test"),
+					token + "@example.com", token, expiresAt));
+		}
+		return userIds;
+	}
+
+	List<Long> pendingUserIds() {
+		return this.jdbcClient.sql("SELECT user_id FROM pending_users ORDER BY user_id").query(Long.class).list();
+	}
+
+}
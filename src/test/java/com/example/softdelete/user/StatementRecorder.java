@@ -0,0 +1,54 @@
+package com.example.softdelete.user;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+
+/**
+ * Records the statements executed through a {@link UserMapper}, which takes part in the
+ * test transaction like the application's own mapper.
+ */
+public class StatementRecorder {
+
+	private final AtomicInteger statements = new AtomicInteger();
+
+	private final List<QueryInfo> queries = new CopyOnWriteArrayList<>();
+
+	private final DataSource dataSource;
+
+	public StatementRecorder(DataSource dataSource) {
+		this.dataSource = ProxyDataSourceBuilder.create(new TransactionAwareDataSourceProxy(dataSource))
+			.afterQuery((execInfo, queryInfoList) -> {
+				this.statements.incrementAndGet();
+				this.queries.addAll(queryInfoList);
+			})
+			.build();
+	}
+
+	public UserMapper userMapper(ObjectMapper objectMapper, UserMapperProps props) {
+		return new UserMapper(JdbcClient.create(this.dataSource), objectMapper, props);
+	}
+
+	/**
+	 * Number of statements executed so far, counting a JDBC batch as one.
+	 */
+	public int statements() {
+		return this.statements.get();
+	}
+
+	public List<QueryInfo> queries() {
+		return List.copyOf(this.queries);
+	}
+
+	public void reset() {
+		this.statements.set(0);
+		this.queries.clear();
+	}
+
+}
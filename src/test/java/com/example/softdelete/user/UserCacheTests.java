@@ -0,0 +1,120 @@
+package com.example.softdelete.user;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+class UserCacheTests {
+
+	@Autowired
+	DataSource dataSource;
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	StatementRecorder recorder;
+
+	MeterRegistry meterRegistry;
+
+	UserCache userCache;
+
+	@BeforeEach
+	void createCache() {
+		this.recorder = new StatementRecorder(this.dataSource);
+		this.meterRegistry = new SimpleMeterRegistry();
+		UserMapper userMapper = this.recorder.userMapper(this.objectMapper,
+				new UserMapperProps(false, UserMapperProps.EmailsFormat.JSON));
+		this.userCache = new UserCache(userMapper,
+				new UserCacheProps(100, Duration.ofMinutes(10), 100, Duration.ofMinutes(1)), this.meterRegistry);
+	}
+
+	@Test
+	void servesRepeatedLookupsFromCache() {
+		User first = this.userCache.findUser(4).orElseThrow();
+		assertThat(this.recorder.statements()).isEqualTo(1);
+
+		assertThat(this.userCache.findUser(4)).contains(first);
+		assertThat(this.recorder.statements()).isEqualTo(1);
+		assertThat(cacheGets("hit")).isEqualTo(1);
+		assertThat(cacheGets("miss")).isEqualTo(1);
+	}
+
+	@Test
+	void evictsChangedUser() {
+		this.userCache.findUser(4);
+		this.userCache.findUser(5);
+
+		this.userCache.onUserChanged(new UserChangedEvent(4L));
+
+		this.userCache.findUser(4);
+		this.userCache.findUser(5);
+		assertThat(this.recorder.statements()).isEqualTo(3);
+		assertThat(cacheGets("miss")).isEqualTo(3);
+	}
+
+	@Test
+	void evictsAllUsers() {
+		this.userCache.findUser(4);
+		this.userCache.findUser(5);
+
+		this.userCache.afterUserChanged(UserChangedEvent.ALL);
+
+		this.userCache.findUser(4);
+		this.userCache.findUser(5);
+		assertThat(this.recorder.statements()).isEqualTo(4);
+	}
+
+	@Test
+	void bypassesCacheInReadWriteTransaction() {
+		User cached = this.userCache.findUser(4).orElseThrow();
+		TransactionTemplate transactionTemplate = new TransactionTemplate(this.transactionManager);
+		transactionTemplate.executeWithoutResult(status -> {
+			this.jdbcClient.sql("UPDATE user_profiles SET display_name = 'Sarah J.' WHERE user_id = 4").update();
+			// Reads its own write although the user is cached and no event was published
+			ActiveUser user = (ActiveUser) this.userCache.findUser(4).orElseThrow();
+			assertThat(user.userProfile().displayName()).isEqualTo("Sarah J.");
+			status.setRollbackOnly();
+		});
+		assertThat(this.userCache.findUser(4)).contains(cached);
+		assertThat(this.recorder.statements()).isEqualTo(2);
+	}
+
+	@Test
+	void usesCacheInReadOnlyTransaction() {
+		User cached = this.userCache.findUser(4).orElseThrow();
+		TransactionTemplate transactionTemplate = new TransactionTemplate(this.transactionManager);
+		transactionTemplate.setReadOnly(true);
+		transactionTemplate.executeWithoutResult(status -> assertThat(this.userCache.findUser(4)).contains(cached));
+		assertThat(this.recorder.statements()).isEqualTo(1);
+	}
+
+	double cacheGets(String result) {
+		return this.meterRegistry.get("cache.gets")
+			.tag("cache", "users")
+			.tag("result", result)
+			.functionCounter()
+			.count();
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.example.softdelete.user;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.awaitility.Awaitility.await;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+class UserChangeNotificationListenerTests {
+
+	@Autowired
+	UserCache userCache;
+
+	@Autowired
+	UserDetailsService userDetailsService;
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	@Test
+	void evictsCachedUserChangedByAnotherNode() {
+		ActiveUser before = (ActiveUser) this.userCache.findUser(4).orElseThrow();
+		assertThat(before.userProfile().displayName()).isEqualTo("Sarah Jones");
+		// Write directly as another node would, bypassing UserService
+		this.jdbcClient.sql("UPDATE user_profiles SET display_name = 'Sarah J.' WHERE user_id = 4").update();
+		try {
+			await().atMost(Duration.ofSeconds(5))
+				.untilAsserted(() -> assertThat(
+						((ActiveUser) this.userCache.findUser(4).orElseThrow()).userProfile().displayName())
+					.isEqualTo("Sarah J."));
+		}
+		finally {
+			this.jdbcClient.sql("UPDATE user_profiles SET display_name = 'Sarah Jones' WHERE user_id = 4").update();
+		}
+	}
+
+	@Test
+	void evictsCachedUserDetailsChangedByAnotherNode() {
+		assertThat(this.userDetailsService.loadUserByUsername("sarahjones").getAuthorities())
+			.extracting(GrantedAuthority::getAuthority)
+			.containsExactly("ROLE_USER");
+		this.jdbcClient.sql("INSERT INTO admin_users (user_id) VALUES (4)").update();
+		try {
+			await().atMost(Duration.ofSeconds(5))
+				.untilAsserted(
+						() -> assertThat(this.userDetailsService.loadUserByUsername("sarahjones").getAuthorities())
+							.extracting(GrantedAuthority::getAuthority)
+							.containsExactly("ROLE_USER", "ROLE_ADMIN"));
+		}
+		finally {
+			this.jdbcClient.sql("DELETE FROM admin_users WHERE user_id = 4").update();
+		}
+	}
+
+	@Test
+	void forgetsUnknownLoginIdentifierAddedByAnotherNode() {
+		assertThatExceptionOfType(UsernameNotFoundException.class)
+			.isThrownBy(() -> this.userDetailsService.loadUserByUsername("sarah.j@example.com"));
+		this.jdbcClient.sql("INSERT INTO user_emails (email, user_id) VALUES ('sarah.j@example.com', 4)").update();
+		try {
+			await().atMost(Duration.ofSeconds(5))
+				.untilAsserted(() -> assertThat(
+						this.userDetailsService.loadUserByUsername("sarah.j@example.com").getUsername())
+					.isEqualTo("sarahjones"));
+		}
+		finally {
+			this.jdbcClient.sql("DELETE FROM user_emails WHERE email = 'sarah.j@example.com'").update();
+		}
+	}
+
+	@Test
+	void keepsListeningAfterMalformedNotification() {
+		ActiveUser before = (ActiveUser) this.userCache.findUser(5).orElseThrow();
+		this.jdbcClient.sql("SELECT pg_notify('user_changed', 'not-a-user-id')").query().singleRow();
+		this.jdbcClient.sql("UPDATE user_profiles SET display_name = 'Changed' WHERE user_id = 5").update();
+		try {
+			await().atMost(Duration.ofSeconds(5))
+				.untilAsserted(() -> assertThat(
+						((ActiveUser) this.userCache.findUser(5).orElseThrow()).userProfile().displayName())
+					.isEqualTo("Changed"));
+		}
+		finally {
+			this.jdbcClient.sql("UPDATE user_profiles SET display_name = :displayName WHERE user_id = 5")
+				.param("displayName", before.userProfile().displayName())
+				.update();
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.example.softdelete.user;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class UserImporterTests {
+
+	@Autowired
+	UserImporter userImporter;
+
+	@Autowired
+	UserMapper userMapper;
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	@Test
+	void importCsvRejectsInvalidAndConflictingRecords() {
+		String csv = """
+				email,username,display_name,state
+				import1@example.com,import1,Import One,active
+				import2@example.com,import2,"Import, Two",
+				import3@example.com,import1,Import Three,active
+				import2@example.com,import4,Import Four,pending
+				john.doe@example.com,import5,Import Five,active
+				import6@example.com,johndoe,Import Six,active
+				import7@example.com,import7,,active
+				import8@example.com,import8,Import Eight,banned
+				""";
+		StringWriter report = new StringWriter();
+
+		UserImportResult result = this.userImporter.importUsers(input(csv), UserImportFormat.CSV,
+				URI.create("http://localhost"), report);
+
+		assertThat(result).isEqualTo(new UserImportResult(8, 1, 1, 6));
+		assertThat(findUser("import1")).isInstanceOfSatisfying(ActiveUser.class, user -> {
+			assertThat(user.userProfile()).isEqualTo(new UserProfile("import1", "Import One"));
+			assertThat(user.primaryEmail()).isEqualTo("import1@example.com");
+		});
+		assertThat(findUser("import2")).isInstanceOfSatisfying(PendingUser.class, user -> {
+			assertThat(user.userProfile()).isEqualTo(new UserProfile("import2", "Import, Two"));
+			assertThat(user.emails()).extracting(Email::email).containsExactly("import2@example.com");
+		});
+		assertThat(report.toString()).isEqualTo("""
+				record,email,username,reason
+				3,import3@example.com,import1,duplicate username in file
+				4,import2@example.com,import4,duplicate email in file
+				5,john.doe@example.com,import5,email already taken
+				6,import6@example.com,johndoe,username already taken
+				7,import7@example.com,import7,"missing email, username or display name"
+				8,import8@example.com,import8,invalid state
+				""");
+		List<Map<String, Object>> notifications = this.jdbcClient.sql("""
+				SELECT recipient, content FROM notification_outbox WHERE recipient LIKE 'import%@example.com'
+				""").query().listOfRows();
+		assertThat(notifications).singleElement().satisfies(notification -> {
+			assertThat(notification.get("recipient")).isEqualTo("import2@example.com");
+			assertThat((String) notification.get("content")).contains("http://localhost/activation?token=");
+		});
+	}
+
+	@Test
+	void importNdjsonRejectsInvalidLines() {
+		String ndjson = """
+				{"email": "ndjson1@example.com", "username": "ndjson1", "displayName": "NDJSON One", "state": "Active"}
+
+				{"email": "ndjson2@example.com", "username": "ndjson2", "displayName": "NDJSON \\"Two\\""}
+				not json
+				["ndjson3@example.com"]
+				""";
+		StringWriter report = new StringWriter();
+
+		UserImportResult result = this.userImporter.importUsers(input(ndjson), UserImportFormat.NDJSON,
+				URI.create("http://localhost"), report);
+
+		assertThat(result).isEqualTo(new UserImportResult(4, 1, 1, 2));
+		assertThat(findUser("ndjson1")).isInstanceOf(ActiveUser.class);
+		assertThat(findUser("ndjson2")).isInstanceOfSatisfying(PendingUser.class,
+				user -> assertThat(user.userProfile().displayName()).isEqualTo("NDJSON \"Two\""));
+		assertThat(report.toString()).isEqualTo("""
+				record,email,username,reason
+				4,,,invalid JSON object
+				5,,,invalid JSON object
+				""");
+	}
+
+	@Test
+	void importCsvWithUnexpectedHeaderFails() {
+		assertThatIllegalArgumentException()
+			.isThrownBy(() -> this.userImporter.importUsers(input("username,email\nfoo,foo@example.com\n"),
+					UserImportFormat.CSV, URI.create("http://localhost"), new StringWriter()))
+			.withMessageStartingWith("Malformed import file");
+	}
+
+	User findUser(String username) {
+		return this.userMapper.findUser(this.userMapper.findUserIdByUsername(username).orElseThrow()).orElseThrow();
+	}
+
+	static ByteArrayInputStream input(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
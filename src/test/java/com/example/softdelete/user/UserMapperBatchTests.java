@@ -0,0 +1,67 @@
+package com.example.softdelete.user;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class UserMapperBatchTests {
+
+	static final int USERS = 50;
+
+	@Autowired
+	DataSource dataSource;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@Test
+	void insertsPendingUsersWithOneStatementPerTable() {
+		StatementRecorder recorder = new StatementRecorder(this.dataSource);
+		UserMapper userMapper = recorder.userMapper(this.objectMapper,
+				new UserMapperProps(false, UserMapperProps.EmailsFormat.JSON));
+
+		List<Long> userIds = userMapper.insertUsers(USERS);
+		assertThat(userIds).hasSize(USERS).isSorted().doesNotHaveDuplicates();
+		OffsetDateTime expiresAt = OffsetDateTime.of(2026, 10, 18, 12, 0, 0, 0, ZoneOffset.UTC);
+		List<PendingUser> pendingUsers = new ArrayList<>();
+		for (long userId : userIds) {
+			List<Email> emails = userId % 2 == 0
+					? List.of(new Email("batch" + userId + "@example.com", true),
+							new Email("batch" + userId + "@example.org", false))
+					: List.of(new Email("batch" + userId + "@example.com", true));
+			pendingUsers.add(new PendingUser(userId, new UserProfile("batch" + userId, "Batch User " + userId), emails,
+					UUID.randomUUID(), expiresAt));
+		}
+		Map<Long, UserProfile> userProfiles = new LinkedHashMap<>();
+		Map<Long, List<Email>> userEmails = new LinkedHashMap<>();
+		pendingUsers.forEach(pendingUser -> {
+			userProfiles.put(pendingUser.userId(), pendingUser.userProfile());
+			userEmails.put(pendingUser.userId(), pendingUser.emails());
+		});
+		assertThat(userMapper.insertUserProfiles(userProfiles)).isEqualTo(USERS);
+		userMapper.insertUserEmails(userEmails);
+		assertThat(userMapper.insertPendingUsers(pendingUsers)).isEqualTo(USERS);
+
+		// users, user_profiles, user_emails, user_primary_emails and pending_users
+		assertThat(recorder.statements()).isEqualTo(5);
+		assertThat(userMapper.findUsers(userIds)).containsExactlyInAnyOrderElementsOf(pendingUsers);
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.example.softdelete.user;
+
+import am.ik.pagination.CursorPageRequest;
+import am.ik.pagination.CursorPageRequest.Navigation;
+import com.example.softdelete.TestcontainersConfiguration;
+import com.example.softdelete.user.UserMapperProps.EmailsFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class UserMapperEmailsFormatTests {
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	UserMapper arrayUserMapper;
+
+	UserMapper jsonUserMapper;
+
+	@BeforeEach
+	void createMappers() {
+		this.arrayUserMapper = new UserMapper(this.jdbcClient, this.objectMapper,
+				new UserMapperProps(false, EmailsFormat.ARRAY));
+		this.jsonUserMapper = new UserMapper(this.jdbcClient, this.objectMapper,
+				new UserMapperProps(false, EmailsFormat.JSON));
+	}
+
+	@Test
+	void findUserReadsEmailsPrimaryFirst() {
+		assertThat(this.arrayUserMapper.findUser(1)).get().isInstanceOfSatisfying(ActiveUser.class, user -> {
+			assertThat(user.emails()).hasSize(3);
+			assertThat(user.emails().getFirst().isPrimary()).isTrue();
+			assertThat(user.emails().subList(1, 3)).noneMatch(Email::isPrimary);
+		});
+		assertThat(this.arrayUserMapper.findUser(13)).get()
+			.isInstanceOfSatisfying(PendingUser.class, user -> assertThat(user.emails())
+				.containsExactly(new Email("pending1@example.com", true)));
+		assertThat(this.arrayUserMapper.findUser(9)).get().isInstanceOf(DeletedUser.class);
+		assertThat(this.arrayUserMapper.findUser(Long.MAX_VALUE)).isEmpty();
+	}
+
+	@Test
+	void findUserReadsUserWithoutEmails() {
+		this.jdbcClient.sql("DELETE FROM user_primary_emails WHERE user_id = 4").update();
+		this.jdbcClient.sql("DELETE FROM user_emails WHERE user_id = 4").update();
+
+		assertThat(this.arrayUserMapper.findUser(4)).get()
+			.isInstanceOfSatisfying(ActiveUser.class, user -> assertThat(user.emails()).isEmpty());
+		assertThat(this.arrayUserMapper.findUsers(List.of(4L))).singleElement()
+			.isInstanceOfSatisfying(ActiveUser.class, user -> assertThat(user.emails()).isEmpty());
+	}
+
+	@Test
+	void findUsersMatchesJsonFormat() {
+		List<Long> userIds = this.jdbcClient.sql("SELECT user_id FROM users").query(Long.class).list();
+
+		assertThat(this.arrayUserMapper.findUsers(userIds)).hasSize(userIds.size())
+			.containsExactlyInAnyOrderElementsOf(this.jsonUserMapper.findUsers(userIds));
+	}
+
+	@Test
+	void findActiveUsersMatchesJsonFormat() {
+		CursorPageRequest<Long> pageRequest = new CursorPageRequest<>(null, 5, Navigation.NEXT);
+
+		List<ActiveUser> content = this.arrayUserMapper.findActiveUsers(pageRequest).content();
+		assertThat(content).hasSize(5)
+			.containsExactlyElementsOf(this.jsonUserMapper.findActiveUsers(pageRequest).content())
+			.allSatisfy(user -> assertThat(user.emails()).isNotEmpty().first().returns(true, Email::isPrimary));
+		assertThat(this.arrayUserMapper.findUsers(pageRequest).content())
+			.containsExactlyElementsOf(this.jsonUserMapper.findUsers(pageRequest).content());
+	}
+
+}
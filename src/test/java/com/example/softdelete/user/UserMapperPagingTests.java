@@ -0,0 +1,220 @@
+package com.example.softdelete.user;
+
+import am.ik.pagination.CursorPage;
+import am.ik.pagination.CursorPageRequest;
+import am.ik.pagination.CursorPageRequest.Navigation;
+import com.example.softdelete.TestcontainersConfiguration;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the plans of the paging queries against a table much larger than a page, so that
+ * the cost of a page stays independent of the total number of users.
+ */
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class UserMapperPagingTests {
+
+	static final int USERS = 20_000;
+
+	static final int PAGE_SIZE = 10;
+
+	@Autowired
+	DataSource dataSource;
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	long firstUserId;
+
+	@BeforeEach
+	void seed() {
+		// Rolled back together with the statistics after each test
+		this.firstUserId = this.jdbcClient.sql("SELECT COALESCE(MAX(user_id), 0) + 1000 FROM users")
+			.query(Long.class)
+			.single();
+		long last = this.firstUserId + USERS - 1;
+		for (String sql : new String[] { """
+				INSERT INTO users (user_id) SELECT g FROM generate_series(:first, :last) g
+				""", """
+				INSERT INTO user_profiles (user_id, username, display_name)
+				SELECT g, 'paging' || g, 'Paging User ' || g FROM generate_series(:first, :last) g
+				""", """
+				INSERT INTO user_emails (email, user_id)
+				SELECT 'paging' || g || '@example.com', g FROM generate_series(:first, :last) g
+				UNION ALL
+				SELECT 'paging' || g || '@example.org', g FROM generate_series(:first, :last) g WHERE g % 2 = 0
+				""", """
+				INSERT INTO user_primary_emails (user_id, email)
+				SELECT g, 'paging' || g || '@example.com' FROM generate_series(:first, :last) g
+				""", """
+				INSERT INTO active_users (user_id) SELECT g FROM generate_series(:first, :last) g WHERE g % 10 <> 0
+				""", """
+				INSERT INTO pending_users (user_id, activation_token, expires_at)
+				SELECT g, gen_random_uuid(), now() + interval '1 day' FROM generate_series(:first, :last) g
+				WHERE g % 10 = 0
+				""", """
+				INSERT INTO admin_users (user_id) SELECT g FROM generate_series(:first, :last) g WHERE g % 100 = 1
+				""" }) {
+			this.jdbcClient.sql(sql).param("first", this.firstUserId).param("last", last).update();
+		}
+		this.jdbcClient.sql("ANALYZE").update();
+	}
+
+	@ParameterizedTest
+	@EnumSource(UserMapperProps.EmailsFormat.class)
+	void findActiveUsersHydratesOnlyOnePage(UserMapperProps.EmailsFormat emailsFormat) {
+		List<String> plans = explain(emailsFormat, userMapper -> {
+			for (CursorPageRequest<Long> pageRequest : pageRequests()) {
+				assertThat(userMapper.findActiveUsers(pageRequest).content()).hasSize(PAGE_SIZE);
+			}
+		});
+		assertThat(plans).hasSize(pageRequests().size()).allSatisfy(plan -> {
+			assertPageIdsFromPrimaryKey(plan);
+			assertHydratesOnlyOnePage(plan);
+		});
+	}
+
+	@ParameterizedTest
+	@EnumSource(UserMapperProps.EmailsFormat.class)
+	void findPendingUsersHydratesOnlyOnePage(UserMapperProps.EmailsFormat emailsFormat) {
+		List<String> plans = explain(emailsFormat, userMapper -> {
+			for (CursorPageRequest<Long> pageRequest : pageRequests()) {
+				assertThat(userMapper.findPendingUsers(pageRequest).content()).hasSize(PAGE_SIZE);
+			}
+		});
+		assertThat(plans).hasSize(pageRequests().size()).allSatisfy(plan -> {
+			assertPageIdsFromPrimaryKey(plan);
+			assertHydratesOnlyOnePage(plan);
+		});
+	}
+
+	@ParameterizedTest
+	@EnumSource(UserMapperProps.EmailsFormat.class)
+	void findUsersHydratesOnlyOnePage(UserMapperProps.EmailsFormat emailsFormat) {
+		List<String> plans = explain(emailsFormat, userMapper -> {
+			for (CursorPageRequest<Long> pageRequest : pageRequests()) {
+				assertThat(userMapper.findUsers(pageRequest).content()).hasSize(PAGE_SIZE);
+			}
+		});
+		assertThat(plans).hasSize(pageRequests().size()).allSatisfy(plan -> {
+			assertPageIdsFromPrimaryKey(plan);
+			assertHydratesOnlyOnePage(plan);
+		});
+	}
+
+	@ParameterizedTest
+	@EnumSource(UserMapperProps.EmailsFormat.class)
+	void findActiveUsersBySearchUsesTrigramIndexes(UserMapperProps.EmailsFormat emailsFormat) {
+		// Matches the usernames and email addresses of about ten users
+		String search = "PAGING" + (this.firstUserId + USERS / 2) / 10;
+		List<String> plans = explain(emailsFormat, userMapper -> {
+			CursorPage<ActiveUser, Long> firstPage = userMapper
+				.findActiveUsers(new CursorPageRequest<>(null, 3, Navigation.NEXT), search);
+			assertThat(firstPage.content()).hasSize(3)
+				.allSatisfy(user -> assertThat(user.userProfile().username()).containsIgnoringCase(search));
+			CursorPage<ActiveUser, Long> nextPage = userMapper.findActiveUsers(
+					new CursorPageRequest<>(firstPage.content().getLast().userId(), 3, Navigation.NEXT), search);
+			assertThat(nextPage.content()).hasSize(3)
+				.allSatisfy(user -> assertThat(user.userId()).isLessThan(firstPage.content().getLast().userId()));
+		});
+		assertThat(plans).hasSize(2).allSatisfy(plan -> {
+			assertThat(planNodes(plan)).as(plan)
+				.anySatisfy(node -> assertThat(node.path("Index Name").asText()).endsWith("_trgm"));
+			assertHydratesOnlyOnePage(plan);
+		});
+	}
+
+	List<CursorPageRequest<Long>> pageRequests() {
+		long middle = this.firstUserId + USERS / 2;
+		return List.of(new CursorPageRequest<>(null, PAGE_SIZE, Navigation.NEXT),
+				new CursorPageRequest<>(middle, PAGE_SIZE, Navigation.NEXT),
+				new CursorPageRequest<>(middle, PAGE_SIZE, Navigation.PREVIOUS));
+	}
+
+	/**
+	 * Runs the given pages through a {@link UserMapper} that records its queries, then
+	 * explains every recorded query with the same parameters.
+	 */
+	List<String> explain(UserMapperProps.EmailsFormat emailsFormat, Consumer<UserMapper> pages) {
+		StatementRecorder recorder = new StatementRecorder(this.dataSource);
+		pages.accept(recorder.userMapper(this.objectMapper, new UserMapperProps(false, emailsFormat)));
+		return recorder.queries().stream().map(query -> {
+			List<Object> params = query.getParametersList()
+				.getFirst()
+				.stream()
+				.sorted(Comparator.comparing(operation -> (Integer) operation.getArgs()[0]))
+				.map(operation -> operation.getArgs()[1])
+				.toList();
+			return this.jdbcClient.sql("EXPLAIN (ANALYZE, FORMAT JSON) " + query.getQuery())
+				.params(params)
+				.query(String.class)
+				.single();
+		}).toList();
+	}
+
+	/**
+	 * The page ids must come from a primary key index.
+	 */
+	void assertPageIdsFromPrimaryKey(String plan) {
+		assertThat(planNodes(plan)).as(plan)
+			.anySatisfy(node -> assertThat(node.path("Node Type").asText()).isEqualTo("Limit"))
+			.anySatisfy(node -> assertThat(node.path("Index Name").asText()).endsWith("_pkey"));
+	}
+
+	/**
+	 * Only the users of one page with their email addresses may reach the outermost
+	 * aggregation, which hydrates the page.
+	 */
+	void assertHydratesOnlyOnePage(String plan) {
+		assertThat(planNodes(plan)).filteredOn(node -> node.path("Node Type").asText().equals("Aggregate"))
+			.as(plan)
+			.first()
+			.satisfies(aggregate -> assertThat(actualRows(aggregate.path("Plans").path(0)))
+				.isLessThanOrEqualTo((PAGE_SIZE + 1) * 2.0));
+	}
+
+	double actualRows(JsonNode node) {
+		return node.path("Actual Rows").asDouble() * node.path("Actual Loops").asDouble(1);
+	}
+
+	List<JsonNode> planNodes(String plan) {
+		try {
+			List<JsonNode> nodes = new ArrayList<>();
+			collectPlanNodes(this.objectMapper.readTree(plan).path(0).path("Plan"), nodes);
+			return nodes;
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	void collectPlanNodes(JsonNode node, List<JsonNode> nodes) {
+		nodes.add(node);
+		for (JsonNode child : node.path("Plans")) {
+			collectPlanNodes(child, nodes);
+		}
+	}
+
+}
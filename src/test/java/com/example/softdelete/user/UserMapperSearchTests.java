@@ -0,0 +1,94 @@
+package com.example.softdelete.user;
+
+import am.ik.pagination.CursorPage;
+import am.ik.pagination.CursorPageRequest;
+import am.ik.pagination.CursorPageRequest.Navigation;
+import com.example.softdelete.TestcontainersConfiguration;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = "user.mapper.read-model=true")
+class UserMapperSearchTests {
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	UserMapper userMapper(boolean readModel) {
+		return new UserMapper(this.jdbcClient, this.objectMapper,
+				new UserMapperProps(readModel, UserMapperProps.EmailsFormat.JSON));
+	}
+
+	static CursorPageRequest<Long> firstPage(int pageSize) {
+		return new CursorPageRequest<>(null, pageSize, Navigation.NEXT);
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void findActiveUsersMatchesUsernameDisplayNameAndEmailSubstrings(boolean readModel) {
+		UserMapper userMapper = userMapper(readModel);
+		assertThat(userMapper.findActiveUsers(firstPage(20), "ARAHJ").content()).extracting(User::userId)
+			.containsExactly(4L);
+		assertThat(userMapper.findActiveUsers(firstPage(20), "ke Bro").content()).extracting(User::userId)
+			.containsExactly(3L);
+		assertThat(userMapper.findActiveUsers(firstPage(20), "doe.work@").content()).extracting(User::userId)
+			.containsExactly(1L);
+		// Matches the username, display name and all email addresses of the same user
+		assertThat(userMapper.findActiveUsers(firstPage(20), "john").content()).extracting(User::userId)
+			.containsExactly(1L);
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void findPendingUsersMatchesOnlyPendingUsers(boolean readModel) {
+		UserMapper userMapper = userMapper(readModel);
+		assertThat(userMapper.findPendingUsers(firstPage(20), "pending").content()).extracting(User::userId)
+			.containsExactly(14L, 13L);
+		assertThat(userMapper.findActiveUsers(firstPage(20), "pending").content()).isEmpty();
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void findActiveUsersBySearchPagesByKeyset(boolean readModel) {
+		UserMapper userMapper = userMapper(readModel);
+		CursorPage<ActiveUser, Long> first = userMapper.findActiveUsers(firstPage(2), "@test.example");
+		assertThat(first.content()).extracting(User::userId).containsExactly(8L, 5L);
+		assertThat(first.hasNext()).isTrue();
+		CursorPage<ActiveUser, Long> next = userMapper.findActiveUsers(new CursorPageRequest<>(5L, 2, Navigation.NEXT),
+				"@test.example");
+		assertThat(next.content()).extracting(User::userId).containsExactly(4L);
+		assertThat(next.hasNext()).isFalse();
+		CursorPage<ActiveUser, Long> previous = userMapper
+			.findActiveUsers(new CursorPageRequest<>(4L, 2, Navigation.PREVIOUS), "@test.example");
+		assertThat(previous.content()).extracting(User::userId).containsExactly(8L, 5L);
+		assertThat(previous.hasPrevious()).isFalse();
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void findActiveUsersEscapesLikeWildcards(boolean readModel) {
+		UserMapper userMapper = userMapper(readModel);
+		// "jane.smith" would match if the underscore were a wildcard
+		assertThat(userMapper.findActiveUsers(firstPage(20), "e_s").content()).isEmpty();
+		assertThat(userMapper.findActiveUsers(firstPage(20), "%%%").content()).isEmpty();
+	}
+
+	@Test
+	void searchPatternRejectsTermsShorterThanTrigram() {
+		assertThatIllegalArgumentException().isThrownBy(() -> UserMapper.searchPattern("jo"));
+		assertThat(UserMapper.searchPattern("a%_\\")).isEqualTo("%a\\%\\_\\\\%");
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.example.softdelete.user;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import java.util.List;
+import java.util.Map;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+class UserReadModelMigrationTests {
+
+	@Autowired
+	Flyway flyway;
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	@Test
+	void readModelIsNeitherMaintainedNorFilledByDefault() {
+		assertThat(readModelTriggers()).isEmpty();
+		assertThat(readModelRows()).isZero();
+	}
+
+	@Test
+	void turningReadModelOffDropsTriggersAndEmptiesTable() {
+		try {
+			migrate("true");
+			assertThat(readModelTriggers()).hasSize(8);
+			assertThat(readModelRows()).isEqualTo(
+					this.jdbcClient.sql("SELECT count(*) FROM users").query(Long.class).single());
+		}
+		finally {
+			migrate("false");
+		}
+		assertThat(readModelTriggers()).isEmpty();
+		assertThat(readModelRows()).isZero();
+	}
+
+	void migrate(String readModel) {
+		Flyway.configure()
+			.configuration(this.flyway.getConfiguration())
+			.placeholders(Map.of("ott_token_storage", "logged", "user_read_model", readModel))
+			.load()
+			.migrate();
+	}
+
+	List<String> readModelTriggers() {
+		return this.jdbcClient.sql("""
+				SELECT tgname FROM pg_trigger
+				WHERE tgname LIKE 'refresh\\_read\\_model\\_%' AND NOT tgisinternal
+				""").query(String.class).list();
+	}
+
+	long readModelRows() {
+		return this.jdbcClient.sql("SELECT count(*) FROM user_read_model").query(Long.class).single();
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.example.softdelete.user;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import java.net.URI;
+import java.time.OffsetDateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = "user.mapper.read-model=true")
+@Transactional
+class UserReadModelTests {
+
+	static final URI BASE_URL = URI.create("http://localhost:8080");
+
+	@Autowired
+	UserService userService;
+
+	@Autowired
+	UserMapper userMapper;
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	@BeforeEach
+	void readModelMatchesSourceInitially() {
+		assertReadModelMatchesSource();
+	}
+
+	@Test
+	void readModelFollowsEveryStateTransition() {
+		PendingUser pendingUser = this.userService.registerUser(
+				new UserService.UserRegistration("read.model@example.com", "readmodel", "Read Model"), BASE_URL);
+		assertReadModelMatchesSource();
+
+		this.userService.activateUser(pendingUser.activationToken());
+		assertReadModelMatchesSource();
+
+		this.userService.addEmail(pendingUser.userId(), new Email("read.model.2@example.com", false));
+		assertReadModelMatchesSource();
+
+		this.userService.setPrimaryEmail(pendingUser.userId(), "read.model.2@example.com");
+		assertReadModelMatchesSource();
+
+		this.userService.removeEmail(pendingUser.userId(), "read.model@example.com");
+		assertReadModelMatchesSource();
+
+		this.userService.promoteToAdmin(pendingUser.userId());
+		assertReadModelMatchesSource();
+
+		this.userService.banUser(pendingUser.userId(), 1, "Testing the read model");
+		assertReadModelMatchesSource();
+
+		this.userService.deleteUser(2);
+		assertReadModelMatchesSource();
+	}
+
+	@Test
+	void readModelDropsPurgedPendingUsers() {
+		assertThat(this.userMapper.deleteExpiredPendingUsers(OffsetDateTime.now().plusYears(100), 100)).isNotEmpty();
+		assertReadModelMatchesSource();
+	}
+
+	void assertReadModelMatchesSource() {
+		assertThat(this.jdbcClient.sql("""
+				SELECT count(*)
+				FROM ((TABLE user_read_model EXCEPT ALL TABLE user_read_model_source)
+				      UNION ALL
+				      (TABLE user_read_model_source EXCEPT ALL TABLE user_read_model)) AS difference
+				""").query(Long.class).single()).isZero();
+	}
+
+}
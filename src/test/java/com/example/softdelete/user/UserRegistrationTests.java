@@ -0,0 +1,108 @@
+package com.example.softdelete.user;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = "user.mapper.read-model=true")
+@Transactional
+class UserRegistrationTests {
+
+	static final OffsetDateTime EXPIRES_AT = OffsetDateTime.of(2026, 10, 18, 15, 0, 0, 0, ZoneOffset.UTC);
+
+	@Autowired
+	DataSource dataSource;
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void insertPendingUserWritesAllRowsWithOneStatement(boolean readModel) {
+		StatementRecorder recorder = new StatementRecorder(this.dataSource);
+		UserMapper userMapper = recorder.userMapper(this.objectMapper,
+				new UserMapperProps(readModel, UserMapperProps.EmailsFormat.JSON));
+		UserProfile userProfile = new UserProfile("signup", "Sign Up");
+		UUID activationToken = UUID.randomUUID();
+
+		long userId = userMapper.insertPendingUser(userProfile, "signup@example.com", activationToken, EXPIRES_AT);
+
+		assertThat(recorder.statements()).isOne();
+		assertThat(userMapper.findUser(userId)).contains(new PendingUser(userId, userProfile,
+				List.of(new Email("signup@example.com", true)), activationToken, EXPIRES_AT));
+		assertThat(userMapper.findUserIdByUsername("signup")).contains(userId);
+		assertThat(userMapper.findUserIdByEmail("signup@example.com")).contains(userId);
+	}
+
+	@Test
+	void insertPendingUserLeavesNoRowsBehindIfUsernameIsTaken() {
+		long users = countUsers();
+
+		assertThatExceptionOfType(DuplicateKeyException.class)
+			.isThrownBy(() -> insertPendingUserInSavepoint(new UserProfile("johndoe", "Another John"),
+					"another.john@example.com"));
+
+		assertThat(countUsers()).isEqualTo(users);
+		assertThat(this.jdbcClient.sql("SELECT count(*) FROM user_emails WHERE email = 'another.john@example.com'")
+			.query(Long.class)
+			.single()).isZero();
+	}
+
+	@Test
+	void insertPendingUserLeavesNoRowsBehindIfEmailIsTaken() {
+		long users = countUsers();
+
+		assertThatExceptionOfType(DuplicateKeyException.class)
+			.isThrownBy(() -> insertPendingUserInSavepoint(new UserProfile("anotherjohn", "Another John"),
+					"john.doe@example.com"));
+
+		assertThat(countUsers()).isEqualTo(users);
+		assertThat(this.jdbcClient.sql("SELECT count(*) FROM user_profiles WHERE username = 'anotherjohn'")
+			.query(Long.class)
+			.single()).isZero();
+	}
+
+	/**
+	 * Runs the insert in a savepoint, so that the test transaction can still be used
+	 * after the insert failed.
+	 */
+	void insertPendingUserInSavepoint(UserProfile userProfile, String primaryEmail) {
+		UserMapper userMapper = new UserMapper(this.jdbcClient, this.objectMapper,
+				new UserMapperProps(false, UserMapperProps.EmailsFormat.JSON));
+		TransactionTemplate savepoint = new TransactionTemplate(this.transactionManager);
+		savepoint.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+		savepoint.executeWithoutResult(
+				status -> userMapper.insertPendingUser(userProfile, primaryEmail, UUID.randomUUID(), EXPIRES_AT));
+	}
+
+	long countUsers() {
+		return this.jdbcClient.sql("SELECT count(*) FROM users").query(Long.class).single();
+	}
+
+}
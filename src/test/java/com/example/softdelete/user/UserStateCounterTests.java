@@ -0,0 +1,107 @@
+package com.example.softdelete.user;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class UserStateCounterTests {
+
+	@Autowired
+	UserService userService;
+
+	@Autowired
+	UserStateCountMapper userStateCountMapper;
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	@Test
+	void countsFollowStateTransitions() {
+		UserStateCounts before = this.userStateCountMapper.countUserStates();
+		assertThat(before).isEqualTo(countSubtypeTables());
+
+		PendingUser pendingUser = this.userService.registerUser(
+				new UserService.UserRegistration("counter@example.com", "counter", "Counter"),
+				URI.create("http://localhost"));
+		assertThat(this.userStateCountMapper.countUserStates())
+			.isEqualTo(new UserStateCounts(before.active(), before.pending() + 1, before.deleted(), false));
+
+		this.userService.activateUser(pendingUser.activationToken());
+		assertThat(this.userStateCountMapper.countUserStates())
+			.isEqualTo(new UserStateCounts(before.active() + 1, before.pending(), before.deleted(), false));
+
+		this.userService.deleteUser(pendingUser.userId());
+		assertThat(this.userStateCountMapper.countUserStates())
+			.isEqualTo(new UserStateCounts(before.active(), before.pending(), before.deleted() + 1, false));
+		assertThat(this.userStateCountMapper.countUserStates()).isEqualTo(countSubtypeTables());
+	}
+
+	@Test
+	void countsRowsOfMultiRowStatements() {
+		UserStateCounts before = this.userStateCountMapper.countUserStates();
+		long first = this.jdbcClient.sql("SELECT COALESCE(MAX(user_id), 0) + 1000 FROM users")
+			.query(Long.class)
+			.single();
+		this.jdbcClient.sql("INSERT INTO users (user_id) SELECT g FROM generate_series(:first, :first + 99) g")
+			.param("first", first)
+			.update();
+		this.jdbcClient.sql("""
+				INSERT INTO pending_users (user_id, activation_token, expires_at)
+				SELECT g, gen_random_uuid(), now() FROM generate_series(:first, :first + 99) g
+				""").param("first", first).update();
+		this.jdbcClient.sql("DELETE FROM pending_users WHERE user_id >= :first AND user_id % 4 = 0")
+			.param("first", first)
+			.update();
+
+		assertThat(this.userStateCountMapper.countUserStates().pending()).isEqualTo(before.pending() + 75);
+		assertThat(this.userStateCountMapper.countUserStates()).isEqualTo(countSubtypeTables());
+	}
+
+	@Test
+	void estimatesCountsFromPlannerStatistics() {
+		this.jdbcClient.sql("ANALYZE pending_users, active_users, deleted_users").update();
+
+		UserStateCounts estimated = this.userStateCountMapper.estimateUserStates();
+
+		UserStateCounts exact = countSubtypeTables();
+		assertThat(estimated).isEqualTo(new UserStateCounts(exact.active(), exact.pending(), exact.deleted(), true));
+	}
+
+	@Test
+	void registersGaugePerState() {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		UserStateCounter userStateCounter = new UserStateCounter(this.userStateCountMapper,
+				new UserStateCountProps(false, Duration.ZERO), meterRegistry);
+
+		UserStateCounts exact = countSubtypeTables();
+		assertThat(userStateCounter.counts()).isEqualTo(exact);
+		assertThat(meterRegistry.get("users").tag("state", "active").gauge().value()).isEqualTo(exact.active());
+		assertThat(meterRegistry.get("users").tag("state", "pending").gauge().value()).isEqualTo(exact.pending());
+		assertThat(meterRegistry.get("users").tag("state", "deleted").gauge().value()).isEqualTo(exact.deleted());
+	}
+
+	UserStateCounts countSubtypeTables() {
+		return this.jdbcClient.sql("""
+				SELECT
+				    (SELECT count(*) FROM active_users) AS active,
+				    (SELECT count(*) FROM pending_users) AS pending,
+				    (SELECT count(*) FROM deleted_users) AS deleted
+				""")
+			.query((rs, rowNum) -> new UserStateCounts(rs.getLong("active"), rs.getLong("pending"),
+					rs.getLong("deleted"), false))
+			.single();
+	}
+
+}
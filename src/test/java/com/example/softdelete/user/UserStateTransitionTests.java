@@ -0,0 +1,125 @@
+package com.example.softdelete.user;
+
+import com.example.softdelete.TestcontainersConfiguration;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+@Transactional
+class UserStateTransitionTests {
+
+	static final OffsetDateTime NOW = OffsetDateTime.of(2026, 10, 18, 12, 0, 0, 0, ZoneOffset.UTC);
+
+	@Autowired
+	DataSource dataSource;
+
+	@Autowired
+	JdbcClient jdbcClient;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	StatementRecorder recorder;
+
+	@BeforeEach
+	void createRecorder() {
+		this.recorder = new StatementRecorder(this.dataSource);
+	}
+
+	UserMapper userMapper(UserMapperProps.EmailsFormat emailsFormat) {
+		return this.recorder.userMapper(this.objectMapper, new UserMapperProps(false, emailsFormat));
+	}
+
+	@ParameterizedTest
+	@EnumSource(UserMapperProps.EmailsFormat.class)
+	void deleteActiveUserAtomicallyReturnsSnapshotBeforeDeletion(UserMapperProps.EmailsFormat emailsFormat) {
+		UserMapper userMapper = userMapper(emailsFormat);
+		// John Doe is an admin with several email addresses
+		ActiveUser before = (ActiveUser) userMapper.findUser(1L).orElseThrow();
+		assertThat(before.isAdmin()).isTrue();
+		assertThat(before.emails()).hasSizeGreaterThan(1);
+		this.recorder.reset();
+
+		assertThat(userMapper.deleteActiveUserAtomically(1L)).contains(before);
+
+		assertThat(this.recorder.statements()).isOne();
+		assertThat(userMapper.findUser(1L)).containsInstanceOf(DeletedUser.class);
+		assertThat(userMapper.findUserIdByUsername("johndoe")).isEmpty();
+		assertThat(userMapper.findUserIdByEmail("john.doe@example.com")).isEmpty();
+		assertThat(this.jdbcClient.sql("SELECT count(*) FROM admin_users WHERE user_id = 1").query(Long.class).single())
+			.isZero();
+	}
+
+	@Test
+	void deleteActiveUserAtomicallyIgnoresUsersThatAreNotActive() {
+		UserMapper userMapper = userMapper(UserMapperProps.EmailsFormat.JSON);
+		long pendingUserId = insertPendingUser(NOW.plusHours(1)).userId();
+
+		assertThat(userMapper.deleteActiveUserAtomically(pendingUserId)).isEmpty();
+		assertThat(userMapper.deleteActiveUserAtomically(Long.MAX_VALUE)).isEmpty();
+		assertThat(userMapper.findUser(pendingUserId)).containsInstanceOf(PendingUser.class);
+	}
+
+	@Test
+	void activatePendingUserActivatesUserWithValidToken() {
+		UserMapper userMapper = userMapper(UserMapperProps.EmailsFormat.JSON);
+		PendingUser pendingUser = insertPendingUser(NOW);
+		this.recorder.reset();
+
+		assertThat(userMapper.activatePendingUser(pendingUser.activationToken(), NOW))
+			.contains(new UserMapper.Activation(pendingUser.userId(), true));
+
+		assertThat(this.recorder.statements()).isOne();
+		assertThat(userMapper.findUser(pendingUser.userId()))
+			.contains(new ActiveUser(pendingUser.userId(), pendingUser.userProfile(), pendingUser.emails(), false));
+		assertThat(userMapper.activatePendingUser(pendingUser.activationToken(), NOW)).isEmpty();
+	}
+
+	@Test
+	void activatePendingUserRemovesUserWithExpiredToken() {
+		UserMapper userMapper = userMapper(UserMapperProps.EmailsFormat.JSON);
+		PendingUser pendingUser = insertPendingUser(NOW.minusNanos(1000));
+		this.recorder.reset();
+
+		assertThat(userMapper.activatePendingUser(pendingUser.activationToken(), NOW))
+			.contains(new UserMapper.Activation(pendingUser.userId(), false));
+
+		assertThat(this.recorder.statements()).isOne();
+		assertThat(userMapper.findUser(pendingUser.userId())).isEmpty();
+		assertThat(userMapper.findUserIdByUsername(pendingUser.userProfile().username())).isEmpty();
+		assertThat(userMapper.findUserIdByEmail(pendingUser.emails().getFirst().email())).isEmpty();
+	}
+
+	@Test
+	void activatePendingUserIgnoresUnknownToken() {
+		UserMapper userMapper = userMapper(UserMapperProps.EmailsFormat.JSON);
+
+		assertThat(userMapper.activatePendingUser(UUID.randomUUID(), NOW)).isEmpty();
+	}
+
+	PendingUser insertPendingUser(OffsetDateTime expiresAt) {
+		UserMapper userMapper = userMapper(UserMapperProps.EmailsFormat.JSON);
+		UserProfile userProfile = new UserProfile("transition", "Transition");
+		UUID activationToken = UUID.randomUUID();
+		long userId = userMapper.insertPendingUser(userProfile, "transition@example.com", activationToken, expiresAt);
+		return new PendingUser(userId, userProfile, List.of(new Email("transition@example.com", true)), activationToken,
+				expiresAt);
+	}
+
+}